@@ -0,0 +1,75 @@
+/*
+ * AsyncPathDirector.java
+ *
+ */
+
+import java.awt.Point;
+import util.*;
+
+/**
+ * A GridPathDirector that doesn't plan on the ticking thread, but asks the
+ * PathRequestService of the Universe for its path. The game object stands
+ * still until the path arrives, one tick later.
+ */
+public class AsyncPathDirector extends GridPathDirector implements PathListener {
+	PathRequestService mService;
+	// The request we're waiting for, null if we're not waiting
+	PathRequest mRequest = null;
+	// The target the request was made for
+	Point mRequestTarget = null;
+
+	public AsyncPathDirector(PathRequestService _service) {
+		mService = _service;
+	}
+
+	// Determines the direction to move in to get fastest from [_pos] to [_target] on [_map] at [_maxSpeed]
+	public FloatPoint determineDirection(FloatPoint _pos, Point _target, GameMap _map, double _maxSpeed) {
+		FloatPoint direction = super.determineDirection(_pos, _target, _map, _maxSpeed);
+		// don't go anywhere before we know the way
+		return (mRequest != null) ? null : direction;
+	}
+
+	// Asks for a new path from the Parcel at [_start] to the Parcel at [_goal], unless it's in the PathCache
+	void plan(Point _start, Point _goal, Point _target, GameMap _map) {
+		if ((mRequest != null) && _target.equals(mRequestTarget)) {
+			// the path is on its way
+			return;
+		}
+		ParcelMap parcels = _map.getParcelMap();
+		mlPathVersion = _map.getCostVersion();
+		int path[] = _map.getPathCache().get(
+			_start.y * parcels.getWidth() + _start.x,
+			_goal.y * parcels.getWidth() + _goal.x,
+			mlPathVersion
+		);
+		if (path != null) {
+			mRequest = null;
+			setPath(path, _target, _map);
+			return;
+		}
+		mRequest = new PathRequest(_map, _start.x, _start.y, _goal.x, _goal.y, this);
+		mRequestTarget = new Point(_target);
+		mvPath = null;
+		mnNext = 0;
+		mService.submit(mRequest);
+	}
+
+	// Called on the ticking thread when the path of a request was found
+	public void pathFound(PathRequest _request) {
+		if (_request != mRequest) {
+			// we asked for another path since
+			return;
+		}
+		mRequest = null;
+		setPath(_request.getPath(), mRequestTarget, _request.mMap);
+		if (_request.isFailed()) {
+			// not a path that doesn't exist, so ask again next tick
+			mlPathVersion = -1;
+		}
+		log("Received "+((mvPath != null) ? mvPath.length+" parcels" : "no path")+" to "+StringHelper.toString(mPathTarget));
+	}
+
+	public void log(String _line) {
+		Logger.info("AsyncPathDirector: "+_line);
+	}
+}
@@ -0,0 +1,471 @@
+/*
+ *  BatchSimulation.java
+ */
+
+import java.awt.Point;
+import java.util.Random;
+import java.util.Vector;
+
+import util.FloatPoint;
+import util.Profiler;
+
+/**
+ *  Runs a Universe without any windows and as fast as possible, to measure
+ *  how many ticks per second the game logic can handle. The objects are
+ *  spawned from a seed, so two runs with the same arguments simulate the
+ *  same game, no matter how many threads run the ticks.
+ *  <br>
+ *  Usage: BatchSimulation [-map name] [-finders n] [-movers n] [-seed n] [-ticks n] [-threads n]
+ *  [-director grid|async|flow|hpa|dstar|ant] [-target x,y] [-verbose] [-verify]
+ *  <br>
+ *  Without -target every path finder gets its own random target.
+ *  <br>
+ *  With -verify the simulation checks itself instead of measuring: it runs
+ *  the game serially and in parallel (on -threads threads, at least 2) and
+ *  compares where every object ends up. On the map as the game left it, it
+ *  then compares the paths of the different searches between random
+ *  Parcels, also while the costs change under a D* Lite search. Last it
+ *  runs the game with -director ant, to check that the searches keep to the
+ *  SearchBudget and their NodeArenas. The exit code is 1 when a check fails.
+ *
+ *@created    18 october 2026
+ */
+public class BatchSimulation {
+	// The number of random paths that -verify searches
+	final static int VERIFY_PATHS = 500;
+	// The number of D* Lite searches that -verify repairs, and how often
+	final static int VERIFY_REPAIRS = 50;
+	final static int VERIFY_ROUNDS = 10;
+
+	String mMapName = "Terrain.map";
+	int mnFinders = 100;
+	int mnMovers = 100;
+	long mlSeed = 1;
+	int mnTicks = 10000;
+	int mnThreads = 1;
+	boolean mbVerbose = false;
+	boolean mbVerify = false;
+	String mDirector = "grid";
+	Point mTarget = null;		// the target of all path finders, null for random targets
+
+	Universe mGame;
+	Vector mObjects = new Vector();	// the objects that were spawned, in the order they were spawned
+
+
+	/**
+	 *  Constructor for the BatchSimulation object
+	 *
+	 *@param  args  The command line arguments
+	 */
+	BatchSimulation(String args[]) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if ("-verbose".equals(arg)) {
+				mbVerbose = true;
+			} else if ("-verify".equals(arg)) {
+				mbVerify = true;
+			} else if (i + 1 < args.length) {
+				String value = args[++i];
+				if ("-map".equals(arg)) {
+					mMapName = value;
+				} else if ("-finders".equals(arg)) {
+					mnFinders = Integer.parseInt(value);
+				} else if ("-movers".equals(arg)) {
+					mnMovers = Integer.parseInt(value);
+				} else if ("-seed".equals(arg)) {
+					mlSeed = Long.parseLong(value);
+				} else if ("-ticks".equals(arg)) {
+					mnTicks = Integer.parseInt(value);
+				} else if ("-threads".equals(arg)) {
+					mnThreads = Integer.parseInt(value);
+				} else if ("-director".equals(arg)) {
+					mDirector = value;
+				} else if ("-target".equals(arg)) {
+					int comma = value.indexOf(',');
+					mTarget = new Point(Integer.parseInt(value.substring(0, comma).trim()), Integer.parseInt(value.substring(comma + 1).trim()));
+				} else {
+					throw new IllegalArgumentException("Unknown option: " + arg);
+				}
+			} else {
+				throw new IllegalArgumentException("Missing value for option: " + arg);
+			}
+		}
+	}
+
+
+	/**
+	 *  Creates the Director of a path finder
+	 *
+	 *@return    The Director that was asked for with -director
+	 */
+	Director createDirector() {
+		if ("grid".equals(mDirector)) {
+			return new GridPathDirector();
+		} else if ("async".equals(mDirector)) {
+			return new AsyncPathDirector(mGame.getPathRequests());
+		} else if ("flow".equals(mDirector)) {
+			return new FlowFieldDirector();
+		} else if ("hpa".equals(mDirector)) {
+			return new HierarchicalPathDirector();
+		} else if ("dstar".equals(mDirector)) {
+			return new DStarLiteDirector();
+		} else if ("ant".equals(mDirector)) {
+			return new PathFinderDirector(mGame.getSearchBudget());
+		}
+		throw new IllegalArgumentException("Unknown director: " + mDirector);
+	}
+
+
+	/**
+	 *  Creates the Universe and fills it with game objects
+	 */
+	void setUp() {
+		Logger.setEnabled(mbVerbose);
+		Profiler.setVerbose(mbVerbose);
+		if (mGame != null) {
+			// the Universe of the previous run
+			mGame.shutdown();
+		}
+		mGame = new Universe(mMapName);
+		if (mGame.getMap() == null) {
+			throw new IllegalStateException("Could not read map '" + mMapName + "'");
+		}
+		mGame.heartBeat.setParallelism(mnThreads);
+		mGame.random.setSeed(mlSeed);
+		if ("async".equals(mDirector)) {
+			// wait for the paths, so that every run of a seed plays out the same
+			mGame.getPathRequests().setWaiting(true);
+		}
+		mObjects.removeAllElements();
+		GameMap map = mGame.getMap();
+		Random random = mGame.random;
+		for (int i = 0; i < mnFinders; i++) {
+			PathFinder finder = new PathFinder(
+				"finder_" + i,
+				map,
+				mGame,
+				new Point(random.nextInt((int)map.getWidth()), random.nextInt((int)map.getHeight())),
+				createDirector()
+			);
+			Point target = new Point(random.nextInt((int)map.getWidth()), random.nextInt((int)map.getHeight()));
+			finder.setTarget((mTarget != null) ? mTarget : target);
+			mObjects.addElement(finder);
+		}
+		for (int i = 0; i < mnMovers; i++) {
+			BaseGameObject mover = new BaseGameObject(
+				"mover_" + i,
+				map,
+				random.nextInt((int)map.getWidth()),
+				random.nextInt((int)map.getHeight())
+			);
+			new RandomGameObjectMover(mover, mGame, random.nextInt(10));
+			mObjects.addElement(mover);
+		}
+	}
+
+
+	/**
+	 *  Runs the ticks and reports the throughput
+	 */
+	void run() {
+		int nTriggers = mGame.heartBeat.size();
+		long start = System.nanoTime();
+		for (int i = 0; i < mnTicks; i++) {
+			mGame.heartBeat.tick();
+		}
+		long elapsed = System.nanoTime() - start;
+		mGame.heartBeat.setParallelism(1);
+
+		double seconds = elapsed / 1e9;
+		double simulatedMinutes = mnTicks * (Universe.TICK_NANOS / 1e9) / 60;
+		System.out.println("map               : " + mMapName);
+		System.out.println("seed              : " + mlSeed);
+		System.out.println("threads           : " + mnThreads);
+		System.out.println("path finders      : " + mnFinders + " (" + mDirector + " director" + ((mTarget != null) ? ", all to " + mTarget.x + "," + mTarget.y : "") + ")");
+		if (mGame.getMap().mPathCache != null) {
+			System.out.println("path cache        : " + mGame.getMap().getPathCache().getHitCount() + " hits, " + mGame.getMap().getPathCache().getMissCount() + " misses");
+		}
+		if (mGame.getMap().mFlowFields != null) {
+			System.out.println("flow fields       : " + mGame.getMap().getFlowFields().getComputedCount() + " computed");
+		}
+		System.out.println("random movers     : " + mnMovers);
+		System.out.println("triggers          : " + nTriggers + " at start, " + mGame.heartBeat.size() + " at end");
+		System.out.println("ticks             : " + mnTicks);
+		System.out.println("elapsed           : " + Math.round(seconds * 1000) + " ms");
+		System.out.println("ticks per second  : " + Math.round(mnTicks / seconds));
+		System.out.println("simulated minutes : " + Math.round(simulatedMinutes * 10) / 10.0 + " (" + Math.round(simulatedMinutes * 60 / seconds) + "x real time)");
+	}
+
+
+	/**
+	 *  Gets where the spawned objects are
+	 *
+	 *@return    For every object its name and position, or that it's dead
+	 */
+	String[] getStates() {
+		String states[] = new String[mObjects.size()];
+		for (int i = 0; i < states.length; i++) {
+			GameObject obj = (GameObject)mObjects.elementAt(i);
+			FloatPoint position = obj.getPosition();
+			states[i] = obj.getName() + ((position != null) ? " at " + position.x + "," + position.y : " dead");
+		}
+		return states;
+	}
+
+
+	/**
+	 *  Sets up the game and runs the ticks on a number of threads
+	 *
+	 *@param  _threads  The number of threads
+	 *@return           Where the objects are after the last tick, see getStates()
+	 */
+	String[] simulate(int _threads) {
+		int threads = mnThreads;
+		mnThreads = _threads;
+		try {
+			setUp();
+			for (int i = 0; i < mnTicks; i++) {
+				mGame.heartBeat.tick();
+			}
+			mGame.heartBeat.setParallelism(1);
+			return getStates();
+		} finally {
+			mnThreads = threads;
+		}
+	}
+
+
+	/**
+	 *  Checks that ticking in parallel gives the same game as ticking serially
+	 *
+	 *@return    True if every object ends up in the same place
+	 */
+	boolean verifyParallel() {
+		int threads = Math.max(2, mnThreads);
+		String serial[] = simulate(1);
+		String parallel[] = simulate(threads);
+		int alive = 0;
+		for (int i = 0; i < serial.length; i++) {
+			if (!serial[i].equals(parallel[i])) {
+				System.out.println("verify parallel   : FAILED after " + mnTicks + " ticks, " + serial[i] + " on 1 thread, " + parallel[i] + " on " + threads);
+				return false;
+			}
+			if (!serial[i].endsWith(" dead")) {
+				alive++;
+			}
+		}
+		System.out.println("verify parallel   : ok, the same " + alive + " of " + serial.length + " objects alive and in the same places after " + mnTicks + " ticks on 1 and " + threads + " threads");
+		return true;
+	}
+
+
+	/**
+	 *  Checks that Jump Point Search finds paths that cost as much as those
+	 *  of plain A*, between random Parcels of the map as the game left it
+	 *
+	 *@return    True if all paths cost the same
+	 */
+	boolean verifyJumpPointSearch() {
+		GameMap map = mGame.getMap();
+		int width = map.getParcelMap().getWidth();
+		int height = map.getParcelMap().getHeight();
+		double step = Math.min(map.mParcelWidth, map.mParcelHeight);
+		CellCost cost = new CellCostSnapshot(map);
+		GridAStar engine = new GridAStar(width, height);
+		Random random = new Random(mlSeed);
+		long plain = 0;
+		long jumping = 0;
+		int found = 0;
+		for (int i = 0; i < VERIFY_PATHS; i++) {
+			int startX = random.nextInt(width);
+			int startY = random.nextInt(height);
+			int goalX = random.nextInt(width);
+			int goalY = random.nextInt(height);
+			double expected = GridAStar.getPathCost(engine.findPath(startX, startY, goalX, goalY, cost, step, false), width, cost, step);
+			plain += engine.getExpandedCount();
+			double actual = GridAStar.getPathCost(engine.findPath(startX, startY, goalX, goalY, cost, step, true), width, cost, step);
+			jumping += engine.getExpandedCount();
+			if (!isSameCost(expected, actual)) {
+				System.out.println("verify jump points: FAILED from " + startX + "," + startY + " to " + goalX + "," + goalY + ", A* cost " + expected + ", JPS cost " + actual);
+				return false;
+			}
+			if (expected != Double.POSITIVE_INFINITY) {
+				found++;
+			}
+		}
+		System.out.println("verify jump points: ok, " + VERIFY_PATHS + " paths (" + found + " found) cost the same with A* and JPS, which expanded " + plain + " and " + jumping + " Parcels");
+		return true;
+	}
+
+
+	/**
+	 *  Checks that D* Lite, after moving the start and changing the costs,
+	 *  finds paths that cost as much as those of a fresh A* search. Starts
+	 *  from the map as the game left it and then changes random Parcels the
+	 *  way the game does: objects die there or the terrain turns to water.
+	 *
+	 *@return    True if all paths cost the same
+	 */
+	boolean verifyDStarLite() {
+		GameMap map = mGame.getMap();
+		int width = map.getParcelMap().getWidth();
+		int height = map.getParcelMap().getHeight();
+		double step = Math.min(map.mParcelWidth, map.mParcelHeight);
+		GridAStar engine = new GridAStar(width, height);
+		Random random = new Random(mlSeed);
+		long fresh = 0;
+		long repaired = 0;
+		int repairs = 0;
+		for (int i = 0; i < VERIFY_REPAIRS; i++) {
+			// every search starts from the costs of the map
+			CellCostSnapshot cost = new CellCostSnapshot(map);
+			int startX = random.nextInt(width);
+			int startY = random.nextInt(height);
+			int goalX = random.nextInt(width);
+			int goalY = random.nextInt(height);
+			DStarLite search = new DStarLite(width, height, cost, step, goalX, goalY, startX, startY);
+			search.computeShortestPath();
+			for (int round = 0; ; round++) {
+				double expected = GridAStar.getPathCost(engine.findPath(startX, startY, goalX, goalY, cost, step, false), width, cost, step);
+				if (round > 0) {
+					fresh += engine.getExpandedCount();
+					repaired += search.getExpandedCount();
+					repairs++;
+				}
+				if (!isSameCost(expected, search.getCost())) {
+					System.out.println("verify D* Lite    : FAILED from " + startX + "," + startY + " to " + goalX + "," + goalY + " after " + round + " repairs, A* cost " + expected + ", D* Lite cost " + search.getCost());
+					return false;
+				}
+				int next = search.getNext();
+				if ((round == VERIFY_ROUNDS) || (expected == Double.POSITIVE_INFINITY) || (next < 0) || (next == goalY * width + goalX)) {
+					break;
+				}
+				// take a step and change a few Parcels, but not the ones of the start and the goal
+				startX = next % width;
+				startY = next / width;
+				search.moveTo(startX, startY);
+				for (int j = 0; j < 3; j++) {
+					int cell = random.nextInt(width * height);
+					if ((cell != next) && (cell != goalY * width + goalX)) {
+						cost.mvCosts[cell] = random.nextBoolean() ? cost.mvCosts[cell] + 1000 : Double.POSITIVE_INFINITY;
+					}
+				}
+				search.updateCosts();
+				search.computeShortestPath();
+			}
+		}
+		System.out.println("verify D* Lite    : ok, " + repairs + " repaired paths cost the same as fresh A* paths, D* Lite expanded " + repaired + " and A* " + fresh + " Parcels for them");
+		return true;
+	}
+
+
+	/**
+	 *  Checks that the PathFinderDirectors keep to their budgets: in every
+	 *  tick none expands more nodes than its share of the SearchBudget and
+	 *  together they expand no more than the budget (or 1 each, if there
+	 *  are more of them), and none ever creates more nodes than its
+	 *  NodeArena holds
+	 *
+	 *@return    True if the budgets were kept
+	 */
+	boolean verifySearchBudget() {
+		String director = mDirector;
+		mDirector = "ant";
+		try {
+			setUp();
+		} finally {
+			mDirector = director;
+		}
+		SearchBudget budget = mGame.getSearchBudget();
+		PathFinderDirector directors[] = new PathFinderDirector[mnFinders];
+		long expanded[] = new long[mnFinders];
+		for (int i = 0; i < mnFinders; i++) {
+			directors[i] = (PathFinderDirector)((PathFinder)mObjects.elementAt(i)).mDirector;
+		}
+		long most = 0;
+		long total = 0;
+		for (int tick = 1; tick <= mnTicks; tick++) {
+			mGame.heartBeat.tick();
+			// the budget shares out the tick when it starts
+			int share = Math.min(PathFinderDirector.MAX_EXPANSIONS_PER_TICK, budget.mnShare);
+			long expandedInTick = 0;
+			int searchers = 0;
+			for (int i = 0; i < mnFinders; i++) {
+				long count = directors[i].mExpandedCount - expanded[i];
+				expanded[i] = directors[i].mExpandedCount;
+				if (count > share) {
+					System.out.println("verify budget     : FAILED in tick " + tick + ", finder_" + i + " expanded " + count + " nodes, its share was " + share);
+					return false;
+				}
+				NodeArena arena = directors[i].mArena;
+				if ((arena.size() > arena.getCapacity()) || (arena.getCreatedCount() > arena.getCapacity())) {
+					System.out.println("verify budget     : FAILED in tick " + tick + ", finder_" + i + " created " + arena.getCreatedCount() + " nodes, its arena holds " + arena.getCapacity());
+					return false;
+				}
+				expandedInTick += count;
+				if (count > 0) {
+					searchers++;
+				}
+			}
+			if (expandedInTick > Math.max(budget.getExpansions(), searchers)) {
+				System.out.println("verify budget     : FAILED in tick " + tick + ", " + searchers + " finders expanded " + expandedInTick + " nodes, the budget is " + budget.getExpansions());
+				return false;
+			}
+			most = Math.max(most, expandedInTick);
+			total += expandedInTick;
+		}
+		mGame.heartBeat.setParallelism(1);
+		long created = 0;
+		for (int i = 0; i < mnFinders; i++) {
+			created += directors[i].mArena.getCreatedCount();
+		}
+		System.out.println("verify budget     : ok, " + total + " nodes expanded in " + mnTicks + " ticks, at most " + most + " in a tick (budget " + budget.getExpansions() + "), " + created + " nodes created for " + mnFinders + " arenas of " + PathFinderDirector.DEFAULT_NODE_BUDGET);
+		return true;
+	}
+
+
+	// Whether two path costs are the same, but for rounding
+	static boolean isSameCost(double _expected, double _actual) {
+		if (_expected == _actual) {
+			return true;
+		}
+		return Math.abs(_expected - _actual) <= 1e-9 * Math.abs(_expected);
+	}
+
+
+	/**
+	 *  Runs the checks of -verify
+	 *
+	 *@return    True if all checks passed
+	 */
+	boolean verify() {
+		System.out.println("map               : " + mMapName);
+		System.out.println("seed              : " + mlSeed);
+		System.out.println("path finders      : " + mnFinders + " (" + mDirector + " director)");
+		System.out.println("random movers     : " + mnMovers);
+		boolean ok = verifyParallel();
+		ok &= verifyJumpPointSearch();
+		ok &= verifyDStarLite();
+		ok &= verifySearchBudget();
+		return ok;
+	}
+
+
+	/**
+	 *  Entry point of the batch simulation
+	 *
+	 *@param  args  The arguments passed to the application
+	 */
+	public static void main(String args[]) {
+		if (System.getProperty("java.awt.headless") == null) {
+			System.setProperty("java.awt.headless", "true");
+		}
+		BatchSimulation simulation = new BatchSimulation(args);
+		if (simulation.mbVerify) {
+			System.exit(simulation.verify() ? 0 : 1);
+		}
+		simulation.setUp();
+		simulation.run();
+		System.exit(0);
+	}
+}
@@ -0,0 +1,584 @@
+/*
+ *  ClusterGraph.java
+ */
+
+import util.*;
+
+/**
+ *  The abstract graph of hierarchical path finding (HPA*). The ParcelMap is
+ *  cut into square clusters of Parcels. Where two clusters touch, every
+ *  stretch of Parcels that costs the same to cross gets one or two
+ *  entrances: a pair of Parcels, one on either side of the border. The
+ *  entrances are the nodes of the graph, and the cheapest way between every
+ *  two entrances of a cluster is computed in advance, inside the cluster.
+ *  <br>
+ *  A search on this graph only visits a handful of nodes per cluster, the
+ *  exact path is found later one cluster at a time (see refine()). When the
+ *  Terrain or height of a Parcel changes, or an object dies on it, only its
+ *  cluster is built again (and a cluster next to it, if the entrances on
+ *  their border moved), when the next path is asked for.
+ *
+ *@created    18 october 2026
+ */
+class ClusterGraph implements ParcelListener {
+	/**
+	 *  The default width and height of a cluster in Parcels, can be changed
+	 *  with the iSpecies.clusterSize system property
+	 */
+	public final static int DEFAULT_CLUSTER_SIZE = Integer.getInteger("iSpecies.clusterSize", 16).intValue();
+
+	// A stretch of Parcels that is longer than this gets an entrance at both ends, a shorter one gets it in the middle
+	final static int MAX_SINGLE_ENTRANCE = 6;
+
+	final static double INFINITY = Double.POSITIVE_INFINITY;
+
+
+	/**
+	 *  A cluster, with its entrances and the costs between them
+	 */
+	static class Cluster {
+		int mnLeft, mnTop, mnRight, mnBottom;	// the Parcels of the cluster, right and bottom are excluded
+		int mvNodes[] = new int[0];				// the Parcels (as y * width + x) of the entrances on this side of the borders
+		double mvCosts[][];						// mvCosts[i][j] is the cheapest way from node i to node j inside the cluster
+		int mvLinks[][];						// the Parcels on the other side of the border that every node leads to
+
+		Cluster(int _left, int _top, int _right, int _bottom) {
+			mnLeft = _left;
+			mnTop = _top;
+			mnRight = _right;
+			mnBottom = _bottom;
+		}
+
+		// Returns the index of a Parcel in mvNodes, -1 if it isn't an entrance
+		int indexOf(int _cell) {
+			for (int i = 0; i < mvNodes.length; i++) {
+				if (mvNodes[i] == _cell) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		boolean contains(int _x, int _y) {
+			return (_x >= mnLeft) && (_x < mnRight) && (_y >= mnTop) && (_y < mnBottom);
+		}
+	}
+
+
+	/**
+	 *  The cost of the Parcels of one cluster, all Parcels outside of it can't be entered
+	 */
+	static class ClusterCellCost implements CellCost {
+		Cluster mCluster;
+		CellCost mCost;
+
+		ClusterCellCost(Cluster _cluster, CellCost _cost) {
+			mCluster = _cluster;
+			mCost = _cost;
+		}
+
+		public double getCost(int _x, int _y) {
+			return mCluster.contains(_x, _y) ? mCost.getCost(_x, _y) : INFINITY;
+		}
+	}
+
+
+	GameMap mMap;
+	int mnWidth, mnHeight;			// size of the ParcelMap
+	int mnClusterSize;
+	int mnClustersX, mnClustersY;
+	double mnStepLength;
+	Cluster mvClusters[];			// indexed by cy * mnClustersX + cx
+	int mvEastBorders[][];			// the entrances between cluster (cx, cy) and (cx + 1, cy), as pairs of Parcels
+	int mvSouthBorders[][];			// the entrances between cluster (cx, cy) and (cx, cy + 1), as pairs of Parcels
+	boolean mvDirty[];				// clusters whose Parcels changed since they were built
+	boolean mbDirty = true;
+	long mlDecayCount = 0;			// the decays of the DangerMap that the clusters have seen
+	int mnVersion = 0;
+	long mlRebuiltCount = 0;
+
+	// search state, reused from one search to the next
+	double mvG[];
+	int mvParent[];
+	int mvSeen[];
+	int mvClosed[];
+	int mnGeneration = 0;
+	IndexedIntHeap mOpen;
+	int mnExpanded = 0;
+
+
+	/**
+	 *  Constructor for the ClusterGraph object, the graph is built when the first path is asked for
+	 *
+	 *@param  _map          The map whose Parcels are clustered
+	 *@param  _clusterSize  The width and height of a cluster in Parcels
+	 */
+	ClusterGraph(GameMap _map, int _clusterSize) {
+		mMap = _map;
+		ParcelMap parcels = _map.getParcelMap();
+		mnWidth = parcels.getWidth();
+		mnHeight = parcels.getHeight();
+		mnClusterSize = _clusterSize;
+		mnClustersX = (mnWidth + _clusterSize - 1) / _clusterSize;
+		mnClustersY = (mnHeight + _clusterSize - 1) / _clusterSize;
+		mnStepLength = Math.min(_map.mParcelWidth, _map.mParcelHeight);
+		mvClusters = new Cluster[mnClustersX * mnClustersY];
+		for (int cy = 0; cy < mnClustersY; cy++) {
+			for (int cx = 0; cx < mnClustersX; cx++) {
+				mvClusters[cy * mnClustersX + cx] = new Cluster(
+					cx * _clusterSize,
+					cy * _clusterSize,
+					Math.min((cx + 1) * _clusterSize, mnWidth),
+					Math.min((cy + 1) * _clusterSize, mnHeight)
+				);
+			}
+		}
+		mvEastBorders = new int[mvClusters.length][];
+		mvSouthBorders = new int[mvClusters.length][];
+		mvDirty = new boolean[mvClusters.length];
+		java.util.Arrays.fill(mvDirty, true);
+
+		int size = mnWidth * mnHeight;
+		mvG = new double[size];
+		mvParent = new int[size];
+		mvSeen = new int[size];
+		mvClosed = new int[size];
+		mOpen = new IndexedIntHeap(size);
+	}
+
+
+	/**
+	 *  Called when the Terrain or height of a Parcel changed
+	 *
+	 *@param  _e  The event
+	 */
+	public void parcelChanged(ParcelEvent _e) {
+		costChanged(_e.getX(), _e.getY());
+	}
+
+
+	/**
+	 *  Marks the cluster of a Parcel to be built again, because its cost changed
+	 *
+	 *@param  _x  The x coordinate of the Parcel in the ParcelMap
+	 *@param  _y  The y coordinate of the Parcel in the ParcelMap
+	 */
+	public synchronized void costChanged(int _x, int _y) {
+		mvDirty[getClusterIndex(_x, _y)] = true;
+		mbDirty = true;
+	}
+
+
+	/**
+	 *  Gets the version of the graph, which changes every time clusters are built again
+	 *
+	 *@return    The version
+	 */
+	public synchronized int getVersion() {
+		return mnVersion;
+	}
+
+
+	/**
+	 *  Gets the number of times a cluster was built
+	 *
+	 *@return    The number of clusters built
+	 */
+	public synchronized long getRebuiltCount() {
+		return mlRebuiltCount;
+	}
+
+
+	/**
+	 *  Gets the number of nodes that were expanded by the last search
+	 *
+	 *@return    The number of nodes
+	 */
+	public synchronized int getExpandedCount() {
+		return mnExpanded;
+	}
+
+
+	int getClusterIndex(int _x, int _y) {
+		return (_y / mnClusterSize) * mnClustersX + (_x / mnClusterSize);
+	}
+
+
+	Cluster getCluster(int _cell) {
+		return mvClusters[getClusterIndex(_cell % mnWidth, _cell / mnWidth)];
+	}
+
+
+	// Builds the dirty clusters again, with their borders and the clusters next to them whose entrances changed
+	void update() {
+		long decays = mMap.getDangerMap().getDecayCount();
+		if (decays != mlDecayCount) {
+			// the danger faded everywhere
+			java.util.Arrays.fill(mvDirty, true);
+			mbDirty = true;
+			mlDecayCount = decays;
+		}
+		if (!mbDirty) {
+			return;
+		}
+		CellCost cost = new MapCellCost(mMap);
+		boolean rebuild[] = new boolean[mvClusters.length];
+		for (int cy = 0; cy < mnClustersY; cy++) {
+			for (int cx = 0; cx < mnClustersX; cx++) {
+				int c = cy * mnClustersX + cx;
+				if (!mvDirty[c]) {
+					continue;
+				}
+				// the borders of this cluster, a cluster next to it changes only if the entrances on their border did
+				if (cx + 1 < mnClustersX) {
+					rebuild[c + 1] |= updateBorder(mvEastBorders, c, mvClusters[c + 1], cost);
+				}
+				if (cx > 0) {
+					rebuild[c - 1] |= updateBorder(mvEastBorders, c - 1, mvClusters[c], cost);
+				}
+				if (cy + 1 < mnClustersY) {
+					rebuild[c + mnClustersX] |= updateBorder(mvSouthBorders, c, mvClusters[c + mnClustersX], cost);
+				}
+				if (cy > 0) {
+					rebuild[c - mnClustersX] |= updateBorder(mvSouthBorders, c - mnClustersX, mvClusters[c], cost);
+				}
+				rebuild[c] = true;
+				mvDirty[c] = false;
+			}
+		}
+		for (int c = 0; c < mvClusters.length; c++) {
+			if (rebuild[c]) {
+				buildCluster(c, cost);
+			}
+		}
+		mbDirty = false;
+		mnVersion++;
+	}
+
+
+	// Finds the entrances on a border of cluster [_c] again, returns true if they changed
+	boolean updateBorder(int _borders[][], int _c, Cluster _second, CellCost _cost) {
+		int entrances[] = findEntrances(mvClusters[_c], _second, _cost);
+		boolean changed = !java.util.Arrays.equals(entrances, _borders[_c]);
+		_borders[_c] = entrances;
+		return changed;
+	}
+
+
+	// Finds the entrances on the border of two clusters, the second one is east or south of the first
+	int[] findEntrances(Cluster _first, Cluster _second, CellCost _cost) {
+		boolean east = (_second.mnLeft == _first.mnRight);
+		int length = east ? (_first.mnBottom - _first.mnTop) : (_first.mnRight - _first.mnLeft);
+		int entrances[] = new int[4 * length];
+		int count = 0;
+		int runStart = -1;
+		double runCost = INFINITY;
+		for (int i = 0; i <= length; i++) {
+			// the cost of crossing the border here, a stretch ends where it changes
+			double crossing = INFINITY;
+			if (i < length) {
+				int x = east ? _first.mnRight - 1 : _first.mnLeft + i;
+				int y = east ? _first.mnTop + i : _first.mnBottom - 1;
+				crossing = _cost.getCost(x, y) + _cost.getCost(east ? x + 1 : x, east ? y : y + 1);
+			}
+			if ((runStart >= 0) && (crossing != runCost)) {
+				int runLength = i - runStart;
+				if (runLength > MAX_SINGLE_ENTRANCE) {
+					count = addEntrance(entrances, count, _first, east, runStart);
+					count = addEntrance(entrances, count, _first, east, i - 1);
+				} else {
+					count = addEntrance(entrances, count, _first, east, runStart + runLength / 2);
+				}
+				runStart = -1;
+			}
+			if ((runStart < 0) && (crossing != INFINITY)) {
+				runStart = i;
+				runCost = crossing;
+			}
+		}
+		int result[] = new int[count];
+		System.arraycopy(entrances, 0, result, 0, count);
+		return result;
+	}
+
+
+	int addEntrance(int _entrances[], int _count, Cluster _first, boolean _east, int _offset) {
+		int x = _east ? _first.mnRight - 1 : _first.mnLeft + _offset;
+		int y = _east ? _first.mnTop + _offset : _first.mnBottom - 1;
+		_entrances[_count++] = y * mnWidth + x;
+		_entrances[_count++] = _east ? y * mnWidth + x + 1 : (y + 1) * mnWidth + x;
+		return _count;
+	}
+
+
+	// Collects the entrances of a cluster from its borders and computes the costs between them
+	void buildCluster(int _c, CellCost _cost) {
+		Cluster cluster = mvClusters[_c];
+		int cx = _c % mnClustersX;
+		int cy = _c / mnClustersX;
+		int nodes[] = new int[0];
+		int links[][] = new int[0][];
+		// on the east and south borders this cluster is the first of the pair, on the west and north the second
+		int borders[][] = {
+			(cx + 1 < mnClustersX) ? mvEastBorders[_c] : null,
+			(cy + 1 < mnClustersY) ? mvSouthBorders[_c] : null,
+			(cx > 0) ? mvEastBorders[_c - 1] : null,
+			(cy > 0) ? mvSouthBorders[_c - mnClustersX] : null
+		};
+		for (int b = 0; b < borders.length; b++) {
+			if (borders[b] == null) {
+				continue;
+			}
+			int side = (b < 2) ? 0 : 1;
+			for (int i = 0; i < borders[b].length; i += 2) {
+				int node = borders[b][i + side];
+				int link = borders[b][i + 1 - side];
+				int n = indexOf(nodes, node);
+				if (n < 0) {
+					// a Parcel in the corner of a cluster can be an entrance on two borders
+					n = nodes.length;
+					nodes = append(nodes, node);
+					int grown[][] = new int[n + 1][];
+					System.arraycopy(links, 0, grown, 0, n);
+					grown[n] = new int[0];
+					links = grown;
+				}
+				links[n] = append(links[n], link);
+			}
+		}
+		cluster.mvNodes = nodes;
+		cluster.mvLinks = links;
+		cluster.mvCosts = new double[nodes.length][];
+		double enter[] = getEnterCosts(cluster, _cost);
+		for (int i = 0; i < nodes.length; i++) {
+			double distances[] = search(cluster, nodes[i], true, enter);
+			cluster.mvCosts[i] = new double[nodes.length];
+			for (int j = 0; j < nodes.length; j++) {
+				cluster.mvCosts[i][j] = distances[toLocal(cluster, nodes[j])];
+			}
+		}
+		mlRebuiltCount++;
+	}
+
+
+	static int indexOf(int _array[], int _value) {
+		for (int i = 0; i < _array.length; i++) {
+			if (_array[i] == _value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+
+	static int[] append(int _array[], int _value) {
+		int result[] = new int[_array.length + 1];
+		System.arraycopy(_array, 0, result, 0, _array.length);
+		result[_array.length] = _value;
+		return result;
+	}
+
+
+	// The cost of entering every Parcel of a cluster, indexed by toLocal()
+	double[] getEnterCosts(Cluster _cluster, CellCost _cost) {
+		int width = _cluster.mnRight - _cluster.mnLeft;
+		double enter[] = new double[width * (_cluster.mnBottom - _cluster.mnTop)];
+		for (int y = _cluster.mnTop; y < _cluster.mnBottom; y++) {
+			for (int x = _cluster.mnLeft; x < _cluster.mnRight; x++) {
+				enter[(y - _cluster.mnTop) * width + (x - _cluster.mnLeft)] = _cost.getCost(x, y);
+			}
+		}
+		return enter;
+	}
+
+
+	// The index of a Parcel in the arrays of search()
+	int toLocal(Cluster _cluster, int _cell) {
+		return (_cell / mnWidth - _cluster.mnTop) * (_cluster.mnRight - _cluster.mnLeft) + (_cell % mnWidth - _cluster.mnLeft);
+	}
+
+
+	/**
+	 *  Dijkstra's algorithm inside a cluster. Going forward it finds the cost from
+	 *  a Parcel to all others, going backward the cost from all others to the Parcel.
+	 *
+	 *@param  _cluster  The cluster
+	 *@param  _cell     The Parcel to start from
+	 *@param  _forward  True to go forward, false to go backward
+	 *@param  _enter    The cost of entering the Parcels of the cluster, see getEnterCosts()
+	 *@return           The costs, indexed by toLocal()
+	 */
+	double[] search(Cluster _cluster, int _cell, boolean _forward, double _enter[]) {
+		int width = _cluster.mnRight - _cluster.mnLeft;
+		int height = _cluster.mnBottom - _cluster.mnTop;
+		double distances[] = new double[width * height];
+		java.util.Arrays.fill(distances, INFINITY);
+		boolean done[] = new boolean[width * height];
+		IndexedIntHeap open = new IndexedIntHeap(width * height);
+		int start = toLocal(_cluster, _cell);
+		distances[start] = 0;
+		open.add(start, 0);
+		while (!open.isEmpty()) {
+			int current = open.poll();
+			done[current] = true;
+			if (_enter[current] == INFINITY) {
+				continue;
+			}
+			int x = current % width;
+			int y = current / width;
+			for (int d = 0; d < 8; d++) {
+				int nx = x + GridAStar.DX[d];
+				int ny = y + GridAStar.DY[d];
+				if ((nx < 0) || (nx >= width) || (ny < 0) || (ny >= height)) {
+					continue;
+				}
+				int next = ny * width + nx;
+				if (done[next] || (_enter[next] == INFINITY)) {
+					continue;
+				}
+				boolean diagonal = (d & 1) != 0;
+				if (diagonal && ((_enter[y * width + nx] == INFINITY) || (_enter[ny * width + x] == INFINITY))) {
+					// don't cut the corner of a Parcel that can't be entered
+					continue;
+				}
+				// forward the step goes to next, backward it comes from next
+				double cost = distances[current] + (diagonal ? GridAStar.SQRT2 * mnStepLength : mnStepLength) + (_forward ? _enter[next] : _enter[current]);
+				if (cost < distances[next]) {
+					distances[next] = cost;
+					open.add(next, cost);
+				}
+			}
+		}
+		return distances;
+	}
+
+
+	/**
+	 *  Finds the cheapest way between two Parcels on the abstract graph
+	 *
+	 *@param  _startX  The x coordinate of the start Parcel
+	 *@param  _startY  The y coordinate of the start Parcel
+	 *@param  _goalX   The x coordinate of the goal Parcel
+	 *@param  _goalY   The y coordinate of the goal Parcel
+	 *@return          The start, the entrances on the way and the goal (as y * width + x),
+	 *      or null if the goal can't be reached
+	 */
+	public synchronized int[] findPath(int _startX, int _startY, int _goalX, int _goalY) {
+		update();
+		mnExpanded = 0;
+		int start = _startY * mnWidth + _startX;
+		int goal = _goalY * mnWidth + _goalX;
+		Cluster startCluster = getCluster(start);
+		Cluster goalCluster = getCluster(goal);
+		if (startCluster == goalCluster) {
+			// refine() will find the way, through the cluster or around it
+			return new int[] {start, goal};
+		}
+		CellCost cost = new MapCellCost(mMap);
+		double fromStart[] = search(startCluster, start, true, getEnterCosts(startCluster, cost));
+		double toGoal[] = search(goalCluster, goal, false, getEnterCosts(goalCluster, cost));
+
+		nextGeneration();
+		mvG[start] = 0;
+		mvParent[start] = -1;
+		mvSeen[start] = mnGeneration;
+		mOpen.add(start, heuristic(start, goal));
+		while (!mOpen.isEmpty()) {
+			int current = mOpen.poll();
+			if (current == goal) {
+				mOpen.clear();
+				return buildPath(goal);
+			}
+			mvClosed[current] = mnGeneration;
+			mnExpanded++;
+			Cluster cluster = getCluster(current);
+			int n = cluster.indexOf(current);
+			if (current == start) {
+				for (int j = 0; j < startCluster.mvNodes.length; j++) {
+					relax(current, startCluster.mvNodes[j], fromStart[toLocal(startCluster, startCluster.mvNodes[j])], goal);
+				}
+			} else if (n >= 0) {
+				for (int j = 0; j < cluster.mvNodes.length; j++) {
+					relax(current, cluster.mvNodes[j], cluster.mvCosts[n][j], goal);
+				}
+			}
+			if (n >= 0) {
+				// the entrances are pairs of Parcels side by side
+				for (int j = 0; j < cluster.mvLinks[n].length; j++) {
+					int link = cluster.mvLinks[n][j];
+					relax(current, link, mnStepLength + cost.getCost(link % mnWidth, link / mnWidth), goal);
+				}
+			}
+			if (cluster == goalCluster) {
+				relax(current, goal, toGoal[toLocal(goalCluster, current)], goal);
+			}
+		}
+		return null;
+	}
+
+
+	void relax(int _from, int _to, double _cost, int _goal) {
+		if ((_cost == INFINITY) || (_to == _from) || (mvClosed[_to] == mnGeneration)) {
+			return;
+		}
+		double g = mvG[_from] + _cost;
+		if ((mvSeen[_to] != mnGeneration) || (g < mvG[_to])) {
+			mvG[_to] = g;
+			mvParent[_to] = _from;
+			mvSeen[_to] = mnGeneration;
+			mOpen.add(_to, g + heuristic(_to, _goal));
+		}
+	}
+
+
+	double heuristic(int _cell, int _goal) {
+		return GridAStar.heuristic(_cell % mnWidth, _cell / mnWidth, _goal % mnWidth, _goal / mnWidth, mnStepLength);
+	}
+
+
+	// Follows the parents back from the goal
+	int[] buildPath(int _goal) {
+		int length = 0;
+		for (int cell = _goal; cell != -1; cell = mvParent[cell]) {
+			length++;
+		}
+		int path[] = new int[length];
+		for (int cell = _goal; cell != -1; cell = mvParent[cell]) {
+			path[--length] = cell;
+		}
+		return path;
+	}
+
+
+	void nextGeneration() {
+		if (++mnGeneration == Integer.MAX_VALUE) {
+			java.util.Arrays.fill(mvSeen, 0);
+			java.util.Arrays.fill(mvClosed, 0);
+			mnGeneration = 1;
+		}
+	}
+
+
+	/**
+	 *  Finds the exact path between two Parcels that follow each other on a path
+	 *  of findPath(). When both are in the same cluster the search stays inside
+	 *  it, unless there is no way through the cluster.
+	 *
+	 *@param  _from  The first Parcel (as y * width + x)
+	 *@param  _to    The second Parcel (as y * width + x)
+	 *@return        The Parcels from the first to the second, or null if there is no way
+	 */
+	public int[] refine(int _from, int _to) {
+		GridAStar engine = GridAStar.getInstance(mnWidth, mnHeight);
+		CellCost cost = new MapCellCost(mMap);
+		Cluster cluster = getCluster(_from);
+		int path[] = null;
+		if (cluster == getCluster(_to)) {
+			path = engine.findPath(_from % mnWidth, _from / mnWidth, _to % mnWidth, _to / mnWidth, new ClusterCellCost(cluster, cost), mnStepLength);
+		}
+		if (path == null) {
+			path = engine.findPath(_from % mnWidth, _from / mnWidth, _to % mnWidth, _to / mnWidth, cost, mnStepLength);
+		}
+		return path;
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ *  CostChangeLog.java
+ */
+
+/**
+ *  The Parcels of a GameMap whose cost changed, in the order in which they
+ *  changed, so that a search that keeps its costs between ticks (like
+ *  DStarLite) only has to look at those Parcels. Every change gets a
+ *  position in the log; a reader remembers the end of the log it has seen
+ *  and later asks for the Parcels that changed since.
+ *  <br>
+ *  Only the last changes are kept. A reader that fell too far behind, or
+ *  asks across a change of all Parcels at once (like the decay of the
+ *  DangerMap), gets null and has to look at all Parcels itself.
+ *  <br>
+ *  A change is logged after the cost has changed, so a reader that gets a
+ *  Parcel from the log also sees its new cost.
+ *
+ *@created    18 october 2026
+ */
+class CostChangeLog implements ParcelListener {
+	/**
+	 *  The default number of changes that are kept, can be changed with the
+	 *  iSpecies.costLogSize system property
+	 */
+	public final static int DEFAULT_SIZE = Integer.getInteger("iSpecies.costLogSize", 4096).intValue();
+
+	// Marks a change of all Parcels
+	final static int ALL = -1;
+
+	int mnWidth;
+	int mvCells[];		// a ring of the last changes, as y * width + x or ALL
+	long mlEnd = 0;		// the position of the next change
+
+
+	/**
+	 *  Constructor for the CostChangeLog object
+	 *
+	 *@param  _width  The width of the map in Parcels
+	 *@param  _size   The number of changes that are kept
+	 */
+	CostChangeLog(int _width, int _size) {
+		mnWidth = _width;
+		mvCells = new int[Math.max(1, _size)];
+	}
+
+
+	/**
+	 *  Gets the position after the last change
+	 *
+	 *@return    The position
+	 */
+	public synchronized long getEnd() {
+		return mlEnd;
+	}
+
+
+	/**
+	 *  Logs that the cost of a Parcel changed
+	 *
+	 *@param  _cell  The Parcel, as y * width + x
+	 */
+	public synchronized void add(int _cell) {
+		mvCells[(int)(mlEnd % mvCells.length)] = _cell;
+		mlEnd++;
+	}
+
+
+	/**
+	 *  Logs that the cost of all Parcels may have changed
+	 */
+	public void addAll() {
+		add(ALL);
+	}
+
+
+	/**
+	 *  Gets the Parcels that changed between two positions
+	 *
+	 *@param  _from  The first position, usually the end that the reader saw before
+	 *@param  _to    The position after the last change, usually getEnd()
+	 *@return        The Parcels (as y * width + x, a Parcel may be in there more
+	 *               than once), or null if the log doesn't know them all
+	 */
+	public synchronized int[] getCells(long _from, long _to) {
+		if ((_from < mlEnd - mvCells.length) || (_to > mlEnd) || (_from > _to)) {
+			return null;
+		}
+		int cells[] = new int[(int)(_to - _from)];
+		for (long i = _from; i < _to; i++) {
+			int cell = mvCells[(int)(i % mvCells.length)];
+			if (cell == ALL) {
+				return null;
+			}
+			cells[(int)(i - _from)] = cell;
+		}
+		return cells;
+	}
+
+
+	// Logs the changes of the Terrain and height of the Parcels
+	public void parcelChanged(ParcelEvent _e) {
+		add(_e.getY() * mnWidth + _e.getX());
+	}
+}
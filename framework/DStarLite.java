@@ -0,0 +1,297 @@
+/*
+ *  DStarLite.java
+ */
+
+import util.*;
+
+/**
+ *  D* Lite search over a grid of cells, like GridAStar but for an object
+ *  that keeps heading for the same goal while the costs change under it.
+ *  The search runs backwards from the goal, so g (and rhs) are the costs of
+ *  getting from a cell to the goal, and the object can move without
+ *  invalidating them. When the CellCost changes, only the cells around the
+ *  changed cells are updated and only the part of the search that they
+ *  affect is done again.
+ *  <br>
+ *  The costs that the search was done with are kept. updateCosts() is told
+ *  which cells may have changed (see CostChangeLog) and compares only those
+ *  with the CellCost; without that list it compares all cells. The search
+ *  keeps a few arrays with an entry for every cell, so every object that
+ *  uses one needs about 48 bytes per cell.
+ *
+ *@created    18 october 2026
+ */
+class DStarLite {
+	int mnWidth, mnHeight;
+	CellCost mCost;
+	double mnStepLength;
+	int mnGoal;
+	int mnStart;
+	double mnKm = 0;		// how much the heuristic of the keys in the heap is too low, after the start moved
+	double mvG[];			// cost from every cell to the goal, as far as the search got
+	double mvRhs[];			// one step look-ahead of mvG, a cell is consistent when both are equal
+	double mvCosts[];		// the cost of every cell, as used by the search
+	IndexedIntHeap mOpen;	// the inconsistent cells, keyed on [min(g, rhs) + h + km, min(g, rhs)]
+	int mnExpanded = 0;		// number of cells expanded by the last computeShortestPath()
+
+
+	/**
+	 *  Constructor for the DStarLite object, nothing is searched yet
+	 *
+	 *@param  _width       The width of the grid in cells
+	 *@param  _height      The height of the grid in cells
+	 *@param  _cost        The cost of entering the cells
+	 *@param  _stepLength  The length of a horizontal or vertical step
+	 *@param  _goalX       The column of the goal cell
+	 *@param  _goalY       The row of the goal cell
+	 *@param  _startX      The column of the start cell
+	 *@param  _startY      The row of the start cell
+	 */
+	DStarLite(int _width, int _height, CellCost _cost, double _stepLength, int _goalX, int _goalY, int _startX, int _startY) {
+		mnWidth = _width;
+		mnHeight = _height;
+		mCost = _cost;
+		mnStepLength = _stepLength;
+		mnGoal = _goalY * _width + _goalX;
+		mnStart = _startY * _width + _startX;
+		int size = _width * _height;
+		mvG = new double[size];
+		mvRhs = new double[size];
+		mvCosts = new double[size];
+		java.util.Arrays.fill(mvG, Double.POSITIVE_INFINITY);
+		java.util.Arrays.fill(mvRhs, Double.POSITIVE_INFINITY);
+		for (int y = 0; y < _height; y++) {
+			for (int x = 0; x < _width; x++) {
+				mvCosts[y * _width + x] = _cost.getCost(x, y);
+			}
+		}
+		mOpen = new IndexedIntHeap(size);
+		mvRhs[mnGoal] = 0;
+		mOpen.add(mnGoal, heuristic(mnGoal), 0);
+	}
+
+
+	/**
+	 *  Gets the number of cells that were expanded by the last computeShortestPath()
+	 *
+	 *@return    The number of cells
+	 */
+	public int getExpandedCount() {
+		return mnExpanded;
+	}
+
+
+	/**
+	 *  Moves the start of the search, e.g. because the object moved
+	 *
+	 *@param  _x  The column of the new start cell
+	 *@param  _y  The row of the new start cell
+	 */
+	public void moveTo(int _x, int _y) {
+		int start = _y * mnWidth + _x;
+		if (start != mnStart) {
+			// the keys in the heap were computed from the old start, which is at most this far off
+			mnKm += heuristic(mnStart, start);
+			mnStart = start;
+		}
+	}
+
+
+	/**
+	 *  Compares the costs the search was done with to the CellCost, and
+	 *  updates the cells around the ones that changed
+	 *
+	 *@return    The number of cells whose cost changed
+	 */
+	public int updateCosts() {
+		int changed = 0;
+		for (int cell = 0; cell < mnWidth * mnHeight; cell++) {
+			if (updateCost(cell)) {
+				changed++;
+			}
+		}
+		return changed;
+	}
+
+
+	/**
+	 *  Compares the costs the search was done with to the CellCost, for the
+	 *  cells that may have changed only
+	 *
+	 *@param  _cells  The cells (as y * width + x) that may have changed
+	 *@return         The number of cells whose cost changed
+	 */
+	public int updateCosts(int _cells[]) {
+		int changed = 0;
+		for (int i = 0; i < _cells.length; i++) {
+			if (updateCost(_cells[i])) {
+				changed++;
+			}
+		}
+		return changed;
+	}
+
+
+	// Updates the cells around a cell if its cost changed, returns whether it did
+	boolean updateCost(int _cell) {
+		int x = _cell % mnWidth;
+		int y = _cell / mnWidth;
+		double cost = mCost.getCost(x, y);
+		if (cost == mvCosts[_cell]) {
+			return false;
+		}
+		mvCosts[_cell] = cost;
+		// the steps into the cell, and the diagonal steps past its corners
+		for (int d = 0; d < 8; d++) {
+			int nx = x + GridAStar.DX[d];
+			int ny = y + GridAStar.DY[d];
+			if ((nx >= 0) && (nx < mnWidth) && (ny >= 0) && (ny < mnHeight)) {
+				updateCell(ny * mnWidth + nx);
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 *  Expands cells until the cost from the start to the goal is known
+	 */
+	public void computeShortestPath() {
+		mnExpanded = 0;
+		while (!mOpen.isEmpty()) {
+			int u = mOpen.peek();
+			double key = mOpen.peekKey();
+			double key2 = mOpen.peekKey2();
+			double start = Math.min(mvG[mnStart], mvRhs[mnStart]);
+			if (!isLess(key, key2, start + mnKm, start) && (mvRhs[mnStart] == mvG[mnStart])) {
+				break;
+			}
+			mnExpanded++;
+			double min = Math.min(mvG[u], mvRhs[u]);
+			double newKey = min + heuristic(u) + mnKm;
+			if (isLess(key, key2, newKey, min)) {
+				// the start moved since the cell was added
+				mOpen.add(u, newKey, min);
+			} else if (mvG[u] > mvRhs[u]) {
+				// the cell got cheaper
+				mvG[u] = mvRhs[u];
+				mOpen.remove(u);
+				updateNeighbours(u);
+			} else {
+				// the cell got more expensive, work it out again from its neighbours
+				mvG[u] = Double.POSITIVE_INFINITY;
+				updateCell(u);
+				updateNeighbours(u);
+			}
+		}
+	}
+
+
+	/**
+	 *  Gets the cell to step to from the start, on the cheapest way to the goal
+	 *
+	 *@return    The cell (as y * width + x), or -1 if the goal can't be reached
+	 */
+	public int getNext() {
+		int best = -1;
+		double bestCost = Double.POSITIVE_INFINITY;
+		int x = mnStart % mnWidth;
+		int y = mnStart / mnWidth;
+		for (int d = 0; d < 8; d++) {
+			int nx = x + GridAStar.DX[d];
+			int ny = y + GridAStar.DY[d];
+			if ((nx >= 0) && (nx < mnWidth) && (ny >= 0) && (ny < mnHeight)) {
+				int next = ny * mnWidth + nx;
+				double cost = getStepCost(mnStart, d) + mvG[next];
+				if (cost < bestCost) {
+					best = next;
+					bestCost = cost;
+				}
+			}
+		}
+		return best;
+	}
+
+
+	/**
+	 *  Gets the cost of the cheapest way from the start to the goal
+	 *
+	 *@return    The cost, Double.POSITIVE_INFINITY if the goal can't be reached
+	 */
+	public double getCost() {
+		return mvRhs[mnStart];
+	}
+
+
+	// Updates the neighbours of a cell, for which it is the next step to the goal
+	void updateNeighbours(int _cell) {
+		int x = _cell % mnWidth;
+		int y = _cell / mnWidth;
+		for (int d = 0; d < 8; d++) {
+			int nx = x + GridAStar.DX[d];
+			int ny = y + GridAStar.DY[d];
+			if ((nx >= 0) && (nx < mnWidth) && (ny >= 0) && (ny < mnHeight)) {
+				updateCell(ny * mnWidth + nx);
+			}
+		}
+	}
+
+
+	// Works out the rhs of a cell from its neighbours, and puts it in the heap if it's inconsistent
+	void updateCell(int _cell) {
+		if (_cell != mnGoal) {
+			double rhs = Double.POSITIVE_INFINITY;
+			int x = _cell % mnWidth;
+			int y = _cell / mnWidth;
+			for (int d = 0; d < 8; d++) {
+				int nx = x + GridAStar.DX[d];
+				int ny = y + GridAStar.DY[d];
+				if ((nx >= 0) && (nx < mnWidth) && (ny >= 0) && (ny < mnHeight)) {
+					rhs = Math.min(rhs, getStepCost(_cell, d) + mvG[ny * mnWidth + nx]);
+				}
+			}
+			mvRhs[_cell] = rhs;
+		}
+		if (mvG[_cell] != mvRhs[_cell]) {
+			double min = Math.min(mvG[_cell], mvRhs[_cell]);
+			mOpen.add(_cell, min + heuristic(_cell) + mnKm, min);
+		} else {
+			mOpen.remove(_cell);
+		}
+	}
+
+
+	// The cost of a step from a cell in direction [_d], which must stay on the grid
+	double getStepCost(int _cell, int _d) {
+		int x = _cell % mnWidth;
+		int y = _cell / mnWidth;
+		int nx = x + GridAStar.DX[_d];
+		int ny = y + GridAStar.DY[_d];
+		double enter = mvCosts[ny * mnWidth + nx];
+		if ((_d & 1) != 0) {
+			if ((mvCosts[y * mnWidth + nx] == Double.POSITIVE_INFINITY) || (mvCosts[ny * mnWidth + x] == Double.POSITIVE_INFINITY)) {
+				// don't cut the corner of a cell that can't be entered
+				return Double.POSITIVE_INFINITY;
+			}
+			return GridAStar.SQRT2 * mnStepLength + enter;
+		}
+		return mnStepLength + enter;
+	}
+
+
+	// The length of the shortest way from the start to a cell
+	double heuristic(int _cell) {
+		return heuristic(mnStart, _cell);
+	}
+
+
+	double heuristic(int _from, int _to) {
+		return GridAStar.heuristic(_from % mnWidth, _from / mnWidth, _to % mnWidth, _to / mnWidth, mnStepLength);
+	}
+
+
+	// Returns true if key [_a, _a2] goes before key [_b, _b2]
+	static boolean isLess(double _a, double _a2, double _b, double _b2) {
+		return (_a < _b) || ((_a == _b) && (_a2 < _b2));
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * DStarLiteDirector.java
+ *
+ */
+
+import java.awt.Point;
+import util.*;
+
+/**
+ * A Director that keeps its search for the target between ticks (see
+ * DStarLite). When the costs of the map change, because an object died or
+ * the terrain was edited, it only repairs the part of the search that the
+ * change affects instead of planning from scratch, so it never follows a
+ * path that has become too expensive or leads into water. The Parcels that
+ * changed come from the CostChangeLog of the map, only when the log has
+ * lost track (or the danger decayed) are all Parcels compared.
+ * <br>
+ * It starts a new search when the target or the map changes.
+ * <br>
+ * The search takes about 48 bytes for every Parcel of the map, for every
+ * object with this Director: 3 MB on a 256x256 map, but 200 MB on a
+ * 2048x2048 map. On large maps only give it to a handful of objects, and
+ * use GridPathDirector or FlowFieldDirector for crowds.
+ */
+public class DStarLiteDirector implements Director, ObjectListener {
+	// The search for the current target, null before the first tick
+	DStarLite mSearch = null;
+	// The target and map the search is for, and the end of the CostChangeLog of the map it saw
+	Point mPathTarget = null;
+	GameMap mPathMap = null;
+	long mlChangesEnd = -1;
+
+	// Determines the direction to move in to get fastest from [_pos] to [_target] on [_map] at [_maxSpeed]
+	public FloatPoint determineDirection(FloatPoint _pos, Point _target, GameMap _map, double _maxSpeed) {
+		// if the start position is the same as the target, do nothing
+		if (_pos.toPoint().equals(_target)) return null;
+		ParcelMap parcels = _map.getParcelMap();
+		Point start = _map.gameXYToParcelXY(_pos.x, _pos.y);
+		Point goal = _map.gameXYToParcelXY(_target.x, _target.y);
+		FloatPoint waypoint = new FloatPoint(_target);
+		if (GridPathDirector.isInside(parcels, start) && GridPathDirector.isInside(parcels, goal)) {
+			long begin = System.nanoTime();
+			boolean replan = (mSearch == null) || !_target.equals(mPathTarget) || (_map != mPathMap);
+			int changed = 0;
+			CostChangeLog changes = _map.getCostChanges();
+			if (replan) {
+				// the changes while the costs are read are looked at again next time
+				mlChangesEnd = changes.getEnd();
+				mSearch = new DStarLite(
+					parcels.getWidth(), parcels.getHeight(),
+					new MapCellCost(_map),
+					Math.min(_map.mParcelWidth, _map.mParcelHeight),
+					goal.x, goal.y,
+					start.x, start.y
+				);
+				mPathTarget = new Point(_target);
+				mPathMap = _map;
+			} else {
+				mSearch.moveTo(start.x, start.y);
+				long end = changes.getEnd();
+				if (end != mlChangesEnd) {
+					int cells[] = changes.getCells(mlChangesEnd, end);
+					changed = (cells != null) ? mSearch.updateCosts(cells) : mSearch.updateCosts();
+					mlChangesEnd = end;
+				}
+			}
+			mSearch.computeShortestPath();
+			if (replan || (changed > 0)) {
+				log((replan ? "Planned" : "Repaired after "+changed+" changed parcels,")+" "+((mSearch.getCost() < Double.POSITIVE_INFINITY) ? "" : "no ")+"path to "+StringHelper.toString(_target)+", expanded "+mSearch.getExpandedCount()+" parcels in "+(System.nanoTime() - begin) / 1000+" usec");
+			}
+			int next = mSearch.getNext();
+			if ((next >= 0) && !start.equals(goal) && (next != goal.y * parcels.getWidth() + goal.x)) {
+				// head for the center of the next Parcel, in the last Parcel head for the target itself
+				waypoint = new FloatPoint(
+					(next % parcels.getWidth() + 0.5) * _map.mParcelWidth,
+					(next / parcels.getWidth() + 0.5) * _map.mParcelHeight
+				);
+			}
+		}
+		// move towards the waypoint, without overshooting it
+		FloatPoint direction = new FloatPoint(waypoint.x - _pos.x, waypoint.y - _pos.y);
+		double distance = direction.distance(0.0, 0.0);
+		if (distance > _maxSpeed) {
+			direction.x = (_maxSpeed * direction.x / distance);
+			direction.y = (_maxSpeed * direction.y / distance);
+		}
+		return direction;
+	}
+
+	// Called to indicate that the game object has died
+	public void died(ObjectEvent _e) {
+		BaseGameObject src = (BaseGameObject)_e.getSource();
+		MapCellCost.addDeath(src.getMap(), src.getPosition());
+	}
+
+	public void log(String _line) {
+		Logger.info("DStarLiteDirector: "+_line);
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ *  DangerMap.java
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ *  Counts, for every Parcel of a GameMap, how many objects died there, so
+ *  that the path finding Directors can avoid the dangerous places. The
+ *  counts can be changed from any number of threads at once, e.g. by the
+ *  objects of a parallel tick.
+ *  <br>
+ *  Deaths can also be recorded as pending, in which case they don't count
+ *  until commit() is called. The GameMap does that during ticks, so that
+ *  all objects of a tick see the same danger.
+ *  <br>
+ *  Optionally the danger fades: every so many ticks all counts are halved.
+ *
+ *@created    18 october 2026
+ */
+class DangerMap implements TimerReceiver {
+	/**
+	 *  The default number of ticks after which the counts are halved, can be
+	 *  changed with the iSpecies.dangerHalfLife system property. 0 means the
+	 *  danger never fades.
+	 */
+	public final static int DEFAULT_HALF_LIFE = Integer.getInteger("iSpecies.dangerHalfLife", 0).intValue();
+
+	int mnWidth, mnHeight;
+	AtomicIntegerArray mvDangers;	// indexed by y * width + x
+	AtomicIntegerArray mvPending;	// the deaths that don't count yet, indexed like mvDangers
+	ConcurrentLinkedQueue mPendingCells = new ConcurrentLinkedQueue();	// Integer, the cells whose mvPending went up from 0
+	CostChangeLog mChanges;			// told which cells changed, may be null
+	volatile long mlVersion = 0;
+	volatile long mlDecayCount = 0;
+	TimerTrigger mDecayTrigger;
+
+
+	/**
+	 *  Constructor for the DangerMap object, without any danger
+	 *
+	 *@param  _width   The width of the map in Parcels
+	 *@param  _height  The height of the map in Parcels
+	 */
+	DangerMap(int _width, int _height) {
+		this(_width, _height, null);
+	}
+
+
+	/**
+	 *  Constructor for the DangerMap object, without any danger
+	 *
+	 *@param  _width    The width of the map in Parcels
+	 *@param  _height   The height of the map in Parcels
+	 *@param  _changes  The log that is told which Parcels changed, or null
+	 */
+	DangerMap(int _width, int _height, CostChangeLog _changes) {
+		mChanges = _changes;
+		mnWidth = _width;
+		mnHeight = _height;
+		mvDangers = new AtomicIntegerArray(_width * _height);
+		mvPending = new AtomicIntegerArray(_width * _height);
+	}
+
+
+	public int getWidth() {
+		return mnWidth;
+	}
+
+
+	public int getHeight() {
+		return mnHeight;
+	}
+
+
+	/**
+	 *  Gets the danger of a Parcel
+	 *
+	 *@param  _x  The x coordinate of the Parcel in the ParcelMap
+	 *@param  _y  The y coordinate of the Parcel in the ParcelMap
+	 *@return     The number of objects that died there (since the last decay)
+	 */
+	public int get(int _x, int _y) {
+		return mvDangers.get(_y * mnWidth + _x);
+	}
+
+
+	/**
+	 *  Records that an object died on a Parcel
+	 *
+	 *@param  _x  The x coordinate of the Parcel in the ParcelMap
+	 *@param  _y  The y coordinate of the Parcel in the ParcelMap
+	 */
+	public void add(int _x, int _y) {
+		mvDangers.incrementAndGet(_y * mnWidth + _x);
+		changed();
+		if (mChanges != null) {
+			mChanges.add(_y * mnWidth + _x);
+		}
+	}
+
+
+	/**
+	 *  Records that an object died on a Parcel, but doesn't count it until
+	 *  the next call to commit()
+	 *
+	 *@param  _x  The x coordinate of the Parcel in the ParcelMap
+	 *@param  _y  The y coordinate of the Parcel in the ParcelMap
+	 */
+	public void addPending(int _x, int _y) {
+		int cell = _y * mnWidth + _x;
+		if (mvPending.getAndIncrement(cell) == 0) {
+			mPendingCells.add(Integer.valueOf(cell));
+		}
+	}
+
+
+	/**
+	 *  Counts the pending deaths. Only the Parcels with pending deaths are
+	 *  looked at, not the whole map.
+	 *
+	 *@return    The Parcels (as y * width + x, in that order) whose danger changed, or null if none did
+	 */
+	public int[] commit() {
+		if (mPendingCells.isEmpty()) {
+			return null;
+		}
+		int cells[] = new int[8];
+		int count = 0;
+		Integer cell;
+		while ((cell = (Integer)mPendingCells.poll()) != null) {
+			int i = cell.intValue();
+			int deaths = mvPending.getAndSet(i, 0);
+			if (deaths != 0) {
+				mvDangers.addAndGet(i, deaths);
+				if (count == cells.length) {
+					int old[] = cells;
+					cells = new int[2 * old.length];
+					System.arraycopy(old, 0, cells, 0, old.length);
+				}
+				cells[count++] = i;
+			}
+		}
+		if (count == 0) {
+			return null;
+		}
+		changed();
+		int result[] = new int[count];
+		System.arraycopy(cells, 0, result, 0, count);
+		// the threads of a parallel tick add the cells in any order
+		Arrays.sort(result);
+		if (mChanges != null) {
+			for (int i = 0; i < count; i++) {
+				mChanges.add(result[i]);
+			}
+		}
+		return result;
+	}
+
+
+	/**
+	 *  Halves the danger of all Parcels
+	 */
+	public void decay() {
+		boolean changed = false;
+		for (int i = 0; i < mvDangers.length(); i++) {
+			int danger;
+			do {
+				danger = mvDangers.get(i);
+			} while ((danger != 0) && !mvDangers.compareAndSet(i, danger, danger >> 1));
+			changed |= (danger != 0);
+		}
+		if (changed) {
+			changed();
+			if (mChanges != null) {
+				mChanges.addAll();
+			}
+		}
+		mlDecayCount++;
+	}
+
+
+	/**
+	 *  Gets the number of times the danger was halved, the danger of all
+	 *  Parcels may have changed when this changes
+	 *
+	 *@return    The number of decays
+	 */
+	public long getDecayCount() {
+		return mlDecayCount;
+	}
+
+
+	synchronized void changed() {
+		mlVersion++;
+	}
+
+
+	/**
+	 *  Gets the version of the danger, which goes up with every change
+	 *
+	 *@return    The version
+	 */
+	public long getVersion() {
+		return mlVersion;
+	}
+
+
+	/**
+	 *  Makes the danger fade, by halving it every so many ticks
+	 *
+	 *@param  _heartBeat  The pool whose ticks are counted
+	 *@param  _halfLife   The number of ticks between two decays
+	 */
+	public void startDecay(TimerTriggerPool _heartBeat, int _halfLife) {
+		stopDecay(_heartBeat);
+		mDecayTrigger = new TimerTrigger(this);
+		mDecayTrigger.setRepeat(true);
+		mDecayTrigger.setPeriod(_halfLife);
+		_heartBeat.addRel(mDecayTrigger, _halfLife);
+	}
+
+
+	/**
+	 *  Stops the danger from fading
+	 *
+	 *@param  _heartBeat  The pool that was passed to startDecay()
+	 */
+	public void stopDecay(TimerTriggerPool _heartBeat) {
+		if (mDecayTrigger != null) {
+			_heartBeat.remove(mDecayTrigger);
+			mDecayTrigger = null;
+		}
+	}
+
+
+	public void doTimer(TimerTrigger _tt) {
+		decay();
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ *  DirtyRegion.java
+ */
+
+/**
+ *  The Parcels of a GameMap that have to be drawn again by a view, because
+ *  an object moved over them or their Terrain or height changed. A view
+ *  adds its DirtyRegion to the GameMap (see GameMap.addDirtyRegion()) and
+ *  takes the dirty Parcels every time it draws, so it only has to draw the
+ *  part of the map where something happened.
+ *  <br>
+ *  When a large part of the map is dirty the Parcels aren't kept apart
+ *  anymore, and the whole map is dirty. That is also how a DirtyRegion
+ *  starts, as nothing has been drawn yet.
+ *
+ *@created    18 october 2026
+ */
+class DirtyRegion implements ParcelListener {
+	/**
+	 *  The part of the Parcels that may be dirty before the whole map is dirty
+	 */
+	public final static int MAX_DIRTY_FRACTION = 8;
+
+	int mnWidth, mnHeight;
+	boolean mvDirty[];		// indexed by y * width + x
+	int mvCells[];			// the dirty Parcels, in the order they became dirty
+	int mnCount = 0;
+	boolean mbAll = true;
+
+
+	/**
+	 *  Constructor for the DirtyRegion object, the whole map is dirty
+	 *
+	 *@param  _width   The width of the map in Parcels
+	 *@param  _height  The height of the map in Parcels
+	 */
+	DirtyRegion(int _width, int _height) {
+		mnWidth = _width;
+		mnHeight = _height;
+		mvDirty = new boolean[_width * _height];
+		mvCells = new int[Math.max(1, _width * _height / MAX_DIRTY_FRACTION)];
+	}
+
+
+	/**
+	 *  Marks a Parcel as dirty, Parcels outside the map are ignored
+	 *
+	 *@param  _x  The x coordinate of the Parcel in the ParcelMap
+	 *@param  _y  The y coordinate of the Parcel in the ParcelMap
+	 */
+	public synchronized void invalidate(int _x, int _y) {
+		if (mbAll || (_x < 0) || (_x >= mnWidth) || (_y < 0) || (_y >= mnHeight)) {
+			return;
+		}
+		int cell = _y * mnWidth + _x;
+		if (!mvDirty[cell]) {
+			if (mnCount == mvCells.length) {
+				invalidateAll();
+				return;
+			}
+			mvDirty[cell] = true;
+			mvCells[mnCount++] = cell;
+		}
+	}
+
+
+	/**
+	 *  Marks the whole map as dirty
+	 */
+	public synchronized void invalidateAll() {
+		clear();
+		mbAll = true;
+	}
+
+
+	/**
+	 *  Called when the Terrain or height of a Parcel changes
+	 *
+	 *@param  _e  The event of the change
+	 */
+	public void parcelChanged(ParcelEvent _e) {
+		invalidate(_e.getX(), _e.getY());
+	}
+
+
+	/**
+	 *  Gets the dirty Parcels, after which no Parcel is dirty
+	 *
+	 *@return    The dirty Parcels (as y * width + x), or null if the whole map is dirty
+	 */
+	public synchronized int[] take() {
+		if (mbAll) {
+			mbAll = false;
+			return null;
+		}
+		int result[] = new int[mnCount];
+		System.arraycopy(mvCells, 0, result, 0, mnCount);
+		clear();
+		return result;
+	}
+
+
+	void clear() {
+		for (int i = 0; i < mnCount; i++) {
+			mvDirty[mvCells[i]] = false;
+		}
+		mnCount = 0;
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * FlowFieldDirector.java
+ *
+ */
+
+import java.awt.Point;
+import util.*;
+
+/**
+ * A Director that follows the flow field of the target (see FlowFieldService).
+ * All game objects that head for the same target share the field, so finding
+ * the next step costs nothing once the field is there.
+ */
+public class FlowFieldDirector implements Director, ObjectListener {
+
+	// Determines the direction to move in to get fastest from [_pos] to [_target] on [_map] at [_maxSpeed]
+	public FloatPoint determineDirection(FloatPoint _pos, Point _target, GameMap _map, double _maxSpeed) {
+		// if the start position is the same as the target, do nothing
+		if (_pos.toPoint().equals(_target)) return null;
+		ParcelMap parcels = _map.getParcelMap();
+		Point start = _map.gameXYToParcelXY(_pos.x, _pos.y);
+		Point goal = _map.gameXYToParcelXY(_target.x, _target.y);
+		FloatPoint waypoint = new FloatPoint(_target);
+		if (GridPathDirector.isInside(parcels, start) && GridPathDirector.isInside(parcels, goal)) {
+			int d = _map.getFlowFields().getField(goal.x, goal.y).getDirection(start.x, start.y);
+			if (d != FlowField.NONE) {
+				// head for the center of the next Parcel, in the target's Parcel head for the target itself
+				waypoint = new FloatPoint(
+					(start.x + GridAStar.DX[d] + 0.5) * _map.mParcelWidth,
+					(start.y + GridAStar.DY[d] + 0.5) * _map.mParcelHeight
+				);
+			}
+		}
+		// move towards the waypoint, without overshooting it
+		FloatPoint direction = new FloatPoint(waypoint.x - _pos.x, waypoint.y - _pos.y);
+		double distance = direction.distance(0.0, 0.0);
+		if (distance > _maxSpeed) {
+			direction.x = (_maxSpeed * direction.x / distance);
+			direction.y = (_maxSpeed * direction.y / distance);
+		}
+		return direction;
+	}
+
+	// Called to indicate that the game object has died
+	public void died(ObjectEvent _e) {
+		BaseGameObject src = (BaseGameObject)_e.getSource();
+		MapCellCost.addDeath(src.getMap(), src.getPosition());
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ *  FlowFieldService.java
+ */
+
+import java.util.*;
+
+import util.*;
+
+/**
+ *  The cheapest way to one target Parcel, from every Parcel of the map.
+ *  The integration field holds the cost of getting from a Parcel to the
+ *  target, the direction field holds the neighbour to step to from there.
+ *
+ *@created    18 october 2026
+ */
+class FlowField {
+	/**
+	 *  The direction of a Parcel from which the target can't be reached, or of the target itself
+	 */
+	public final static int NONE = -1;
+
+	int mnWidth, mnHeight;
+	int mnGoal;					// the target Parcel, as y * width + x
+	float mvCosts[];			// the integration field
+	byte mvDirections[];		// the direction field, an index in GridAStar.DX/DY or NONE
+
+
+	/**
+	 *  Computes the flow field towards a Parcel, with Dijkstra's algorithm from the target outwards
+	 *
+	 *@param  _width       The width of the map in Parcels
+	 *@param  _height      The height of the map in Parcels
+	 *@param  _goalX       The column of the target Parcel
+	 *@param  _goalY       The row of the target Parcel
+	 *@param  _cost        The cost of entering the Parcels
+	 *@param  _stepLength  The length of a horizontal or vertical step
+	 */
+	FlowField(int _width, int _height, int _goalX, int _goalY, CellCost _cost, double _stepLength) {
+		mnWidth = _width;
+		mnHeight = _height;
+		mnGoal = _goalY * _width + _goalX;
+		int size = _width * _height;
+		mvCosts = new float[size];
+		mvDirections = new byte[size];
+		Arrays.fill(mvCosts, Float.POSITIVE_INFINITY);
+		Arrays.fill(mvDirections, (byte)NONE);
+
+		// the cost of entering every Parcel, asked only once
+		double enter[] = new double[size];
+		for (int y = 0; y < _height; y++) {
+			for (int x = 0; x < _width; x++) {
+				enter[y * _width + x] = _cost.getCost(x, y);
+			}
+		}
+
+		IndexedIntHeap open = new IndexedIntHeap(size);
+		boolean done[] = new boolean[size];
+		mvCosts[mnGoal] = 0;
+		open.add(mnGoal, 0);
+		while (!open.isEmpty()) {
+			int current = open.poll();
+			done[current] = true;
+			int x = current % _width;
+			int y = current / _width;
+			for (int d = 0; d < 8; d++) {
+				int nx = x + GridAStar.DX[d];
+				int ny = y + GridAStar.DY[d];
+				if ((nx < 0) || (nx >= _width) || (ny < 0) || (ny >= _height)) {
+					continue;
+				}
+				int next = ny * _width + nx;
+				if (done[next] || !canStep(enter, nx, ny, x, y)) {
+					continue;
+				}
+				// the step goes from next to current, so it costs entering current
+				boolean diagonal = (d & 1) != 0;
+				double cost = mvCosts[current] + (diagonal ? GridAStar.SQRT2 * _stepLength : _stepLength) + enter[current];
+				if (cost < mvCosts[next]) {
+					mvCosts[next] = (float)cost;
+					// from next, step back in the opposite direction
+					mvDirections[next] = (byte)((d + 4) % 8);
+					open.add(next, cost);
+				}
+			}
+		}
+	}
+
+
+	// Returns true if one can step from (_fromX, _fromY) to the neighbouring Parcel (_toX, _toY)
+	boolean canStep(double _enter[], int _fromX, int _fromY, int _toX, int _toY) {
+		if (_enter[_toY * mnWidth + _toX] == Double.POSITIVE_INFINITY) {
+			return false;
+		}
+		if ((_fromX != _toX) && (_fromY != _toY)) {
+			// don't cut the corner of a Parcel that can't be entered
+			return (_enter[_fromY * mnWidth + _toX] != Double.POSITIVE_INFINITY)
+				&& (_enter[_toY * mnWidth + _fromX] != Double.POSITIVE_INFINITY);
+		}
+		return true;
+	}
+
+
+	/**
+	 *  Gets the direction to step in from a Parcel
+	 *
+	 *@param  _x  The column of the Parcel
+	 *@param  _y  The row of the Parcel
+	 *@return     An index in GridAStar.DX and GridAStar.DY, or NONE
+	 */
+	public int getDirection(int _x, int _y) {
+		return mvDirections[_y * mnWidth + _x];
+	}
+
+
+	/**
+	 *  Gets the cost of getting from a Parcel to the target
+	 *
+	 *@param  _x  The column of the Parcel
+	 *@param  _y  The row of the Parcel
+	 *@return     The cost, Float.POSITIVE_INFINITY if the target can't be reached
+	 */
+	public float getCost(int _x, int _y) {
+		return mvCosts[_y * mnWidth + _x];
+	}
+}
+
+
+/**
+ *  Computes and caches the flow fields of a GameMap, one per target Parcel.
+ *  Any number of game objects can follow the same field, so a swarm that
+ *  heads for one target costs a single search. The fields are dropped when
+ *  the cost version of the map changes.
+ *
+ *@created    18 october 2026
+ */
+class FlowFieldService {
+	/**
+	 *  The number of flow fields that is kept, the least recently used one is dropped first
+	 */
+	public final static int MAX_FIELDS = 16;
+
+	GameMap mMap;
+	LinkedHashMap mFields;		// Integer (target Parcel) -> FlowField, in order of use
+	long mlComputedCount = 0;
+	long mlVersion = -1;		// the cost version of the map that the fields were computed for
+
+
+	/**
+	 *  Constructor for the FlowFieldService object
+	 *
+	 *@param  _map  The map to compute the flow fields for
+	 */
+	FlowFieldService(GameMap _map) {
+		mMap = _map;
+		mFields =
+			new LinkedHashMap(MAX_FIELDS, 0.75f, true) {
+				protected boolean removeEldestEntry(java.util.Map.Entry _eldest) {
+					return size() > MAX_FIELDS;
+				}
+			};
+	}
+
+
+	/**
+	 *  Gets the flow field towards a Parcel, computes it if it isn't cached
+	 *
+	 *@param  _x  The column of the target Parcel
+	 *@param  _y  The row of the target Parcel
+	 *@return     The flow field
+	 */
+	public synchronized FlowField getField(int _x, int _y) {
+		ParcelMap parcels = mMap.getParcelMap();
+		long version = mMap.getCostVersion();
+		if (version != mlVersion) {
+			// the costs changed since, by a death or a change of the Terrain
+			mFields.clear();
+			mlVersion = version;
+		}
+		Integer key = Integer.valueOf(_y * parcels.getWidth() + _x);
+		FlowField field = (FlowField)mFields.get(key);
+		if (field == null) {
+			long start = System.nanoTime();
+			field = new FlowField(
+				parcels.getWidth(),
+				parcels.getHeight(),
+				_x, _y,
+				new MapCellCost(mMap),
+				Math.min(mMap.mParcelWidth, mMap.mParcelHeight)
+			);
+			mFields.put(key, field);
+			mlComputedCount++;
+			Logger.info("FlowFieldService: computed field to parcel (" + _x + ", " + _y + ") in " + (System.nanoTime() - start) / 1000 + " usec");
+		}
+		return field;
+	}
+
+
+	/**
+	 *  Drops all flow fields, because the costs of the Parcels have changed
+	 */
+	public synchronized void invalidate() {
+		mFields.clear();
+	}
+
+
+	/**
+	 *  Gets the number of flow fields that were computed so far
+	 *
+	 *@return    The number of flow fields
+	 */
+	public synchronized long getComputedCount() {
+		return mlComputedCount;
+	}
+}
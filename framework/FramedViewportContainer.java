@@ -2,17 +2,17 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.*;
 
 public class FramedViewportContainer
 		extends JFrame
-		implements ViewportContainer, WindowListener, ComponentListener, MouseListener, MouseMotionListener, TimerReceiver {
+		implements ViewportContainer, WindowListener, ComponentListener, MouseListener, MouseMotionListener, SnapshotReceiver {
 	Image mBackBufferImg = null; // off screen buffer
 	Graphics mBackBufferGfx = null;
 	Graphics mDrawGfx = null;
 	Viewport mViewport = null;
 	Dimension mViewportSize = null;
 	Universe mGame = null;
-	TimerTrigger mTrigger;
 	int mInterval = 20;
 	
 	// class constants
@@ -24,9 +24,6 @@ public class FramedViewportContainer
 		setBackground(BG_COLOR);
 		show();
 
-		mTrigger = new TimerTrigger(this);
-		mTrigger.setRepeat(true);
-
 		setUniverse(_game);
 		setViewport(_viewport);
 		
@@ -48,24 +45,27 @@ public class FramedViewportContainer
 	
 	public void dispose() {
 		super.dispose();
-		if (mViewport != null) {
-			mViewport.terminate();
-			mViewport = null;
-		}
 		setUniverse(null);
-		if (mBackBufferGfx != null) {
-			mBackBufferGfx.dispose();
+		// wait for the RenderThread to finish drawing
+		synchronized (this) {
+			if (mViewport != null) {
+				mViewport.terminate();
+				mViewport = null;
+			}
+			if (mBackBufferGfx != null) {
+				mBackBufferGfx.dispose();
+			}
 		}
 		Logger.log("FramedViewportContainer terminated");
 	}
 	
 	public void setUniverse(Universe _universe) {
 		if (mGame != null) {
-			mGame.heartBeat.remove(mTrigger);
+			mGame.getRenderer().remove(this);
 		}
 		mGame = _universe;
 		if (mGame != null) {
-			mGame.heartBeat.addRel(mTrigger, mInterval);
+			mGame.getRenderer().add(this, mInterval);
 		}
 	}
 
@@ -88,7 +88,7 @@ public class FramedViewportContainer
 		return mViewportSize;
 	}
 	
-	public void setViewportSize(Dimension _size) {
+	public synchronized void setViewportSize(Dimension _size) {
 		mViewportSize = new Dimension(_size);
 		int w = mViewportSize.width + 2 * INSET;
 		int h = mViewportSize.height + 2 * INSET;
@@ -96,13 +96,37 @@ public class FramedViewportContainer
 		if (mBackBufferGfx != null) {
 			mBackBufferGfx.dispose(); // free old one
 		}
-		mBackBufferImg = createImage(w, h);
+		// in video memory if possible, so that copying it to the window is fast
+		mBackBufferImg = createVolatileImage(w, h);
+		if (mBackBufferImg == null) {
+			mBackBufferImg = createImage(w, h);
+		}
 		Logger.log("Create off-screen buffer of " + w + "x" + h + " (" + mBackBufferImg + ")");
+		createBackBufferGraphics();
+		mViewport.setActualSize(mViewportSize);
+		Logger.log("Viewport resized");
+	}
+	
+	// Determines the graphics contexts of the back buffer and the viewport, and clears the back buffer
+	void createBackBufferGraphics() {
 		mBackBufferGfx  = mBackBufferImg.getGraphics();
+		mBackBufferGfx.setColor(BG_COLOR);
+		mBackBufferGfx.fillRect(0, 0, mBackBufferImg.getWidth(null), mBackBufferImg.getHeight(null));
 		// Determine the graphics context for the viewport
 		mDrawGfx  = mBackBufferGfx.create(INSET, INSET, mViewportSize.width, mViewportSize.height);
-		mViewport.setActualSize(mViewportSize);
-		Logger.log("Viewport resized");
+	}
+	
+	// Makes sure the back buffer can be drawn in, a back buffer in video memory can lose its contents at any time
+	void validateBackBuffer() {
+		if (mBackBufferImg instanceof VolatileImage) {
+			int state = ((VolatileImage)mBackBufferImg).validate(getGraphicsConfiguration());
+			if (state == VolatileImage.IMAGE_INCOMPATIBLE) {
+				setViewportSize(mViewportSize);
+			} else if (state == VolatileImage.IMAGE_RESTORED) {
+				mBackBufferGfx.dispose();
+				createBackBufferGraphics();
+			}
+		}
 	}
 	
 	public void paint(Graphics g) {
@@ -116,8 +140,12 @@ public class FramedViewportContainer
 		paint(g);
 	}
 
-	public void doTimer(TimerTrigger tt) {
-		mViewport.paint(mDrawGfx);
+	public synchronized void render(WorldSnapshot _snapshot) {
+		if (mViewport == null) {
+			return;
+		}
+		validateBackBuffer();
+		mViewport.paint(mDrawGfx, _snapshot);
 		repaint();
 	}
 	
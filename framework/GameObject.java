@@ -368,6 +368,9 @@ class RandomGameObjectMover extends GameObjectDecorator
 	TimerTrigger trigger;
 	java.awt.Point direction;
 	Universe game;
+	// every mover has its own generator, so its moves don't depend on the
+	// order in which the movers are activated
+	Random random;
 
 
 	/**
@@ -381,11 +384,13 @@ class RandomGameObjectMover extends GameObjectDecorator
 		super(_base);
 		game = _game;
 		interval = _interval;
-		speed = (int)(Math.random() * 3) + 1;
+		random = new Random(game.random.nextLong());
+		speed = random.nextInt(3) + 1;
 		direction = new java.awt.Point(speed, speed);
 		// add to heartbeat
 		trigger = new TimerTrigger(this);
 		trigger.setRepeat(true);
+		trigger.setConcurrent(true);
 		game.heartBeat.addRel(trigger, interval);
 	}
 
@@ -406,9 +411,9 @@ class RandomGameObjectMover extends GameObjectDecorator
 	public void doTimer(TimerTrigger tt) {
 		// move the object
 		// determine new direction
-		if (Math.random() < 0.05) {
-			if (Math.random() < 0.50) {
-				double r = Math.random();
+		if (random.nextDouble() < 0.05) {
+			if (random.nextDouble() < 0.50) {
+				double r = random.nextDouble();
 				if (r < 0.33) {
 					direction.x = -speed;
 				} else if (r > 0.66) {
@@ -417,8 +422,8 @@ class RandomGameObjectMover extends GameObjectDecorator
 					direction.x = speed;
 				}
 			}
-			if (Math.random() < 0.50) {
-				double r = Math.random();
+			if (random.nextDouble() < 0.50) {
+				double r = random.nextDouble();
 				if (r < 0.33) {
 					direction.y = -speed;
 				} else if (r > 0.66) {
@@ -428,7 +433,7 @@ class RandomGameObjectMover extends GameObjectDecorator
 				}
 			}
 		}
-		if (Math.random() < 0.50) {
+		if (random.nextDouble() < 0.50) {
 			FloatPoint pos = new FloatPoint(base.getPosition());
 			pos.x += direction.x;
 			if (pos.x < 0) {
@@ -168,7 +168,8 @@ public class GameTest extends Frame implements ActionListener {
 				"finder",
 				frame.game.getMap(),
 				frame.game,
-				new Point(10, 10)
+				new Point(10, 10),
+				new FlowFieldDirector()
 		);
 		mover.setTarget(new Point(400, 400));
 	}
@@ -0,0 +1,567 @@
+/*
+ *  GridAStar.java
+ */
+
+import java.awt.Point;
+
+import util.*;
+
+/**
+ *  The cost of entering a cell of a grid, on top of the distance travelled
+ *
+ *@created    18 october 2026
+ */
+interface CellCost {
+	/**
+	 *  Gets the cost of entering a cell
+	 *
+	 *@param  _x  The column of the cell
+	 *@param  _y  The row of the cell
+	 *@return     The cost, Double.POSITIVE_INFINITY if the cell can't be entered
+	 */
+	double getCost(int _x, int _y);
+}
+
+
+/**
+ *  The cost of entering a Parcel, as all path finding Directors see it:
+ *  the cost of its Terrain (see MovementCostGrid) plus 1000 for every
+ *  death in it (see DangerMap).
+ *
+ *@created    18 october 2026
+ */
+class MapCellCost implements CellCost {
+	/**
+	 *  The cost that Directors which can't handle an infinite cost use for a
+	 *  Parcel that can't be entered, or that lies outside of the map
+	 */
+	public final static double IMPASSABLE_COST = 100000;
+
+	GameMap mMap;
+
+
+	/**
+	 *  Constructor for the MapCellCost object
+	 *
+	 *@param  _map  The map whose Parcels are the cells
+	 */
+	MapCellCost(GameMap _map) {
+		mMap = _map;
+	}
+
+
+	public double getCost(int _x, int _y) {
+		return getCost(mMap, _x, _y);
+	}
+
+
+	/**
+	 *  Gets the cost of entering a Parcel
+	 *
+	 *@param  _map  The map
+	 *@param  _x    The x coordinate of the Parcel in the ParcelMap
+	 *@param  _y    The y coordinate of the Parcel in the ParcelMap
+	 *@return       The cost, Double.POSITIVE_INFINITY if the Parcel can't be entered
+	 */
+	static double getCost(GameMap _map, int _x, int _y) {
+		return _map.getMovementCosts().get(_x, _y) + _map.getDangerMap().get(_x, _y) * 1000;
+	}
+
+
+	/**
+	 *  Gets the cost of entering a Parcel, which is IMPASSABLE_COST if it can't
+	 *  be entered or lies outside of the map
+	 *
+	 *@param  _map  The map
+	 *@param  _x    The x coordinate of the Parcel in the ParcelMap
+	 *@param  _y    The y coordinate of the Parcel in the ParcelMap
+	 *@return       The cost
+	 */
+	static double getFiniteCost(GameMap _map, int _x, int _y) {
+		if ((_x < 0) || (_x >= _map.mParcelMapWidth) || (_y < 0) || (_y >= _map.mParcelMapHeight)) {
+			return IMPASSABLE_COST;
+		}
+		return Math.min(getCost(_map, _x, _y), IMPASSABLE_COST);
+	}
+
+
+	/**
+	 *  Records that an object died, which makes its Parcel more expensive
+	 *  from the next tick on (see GameMap.addDeath())
+	 *
+	 *@param  _map  The map the object died on
+	 *@param  _pos  The position where the object died
+	 */
+	static void addDeath(GameMap _map, FloatPoint _pos) {
+		Point parcelposition = _map.gameXYToParcelXY(_pos.x, _pos.y);
+		_map.addDeath(parcelposition.x, parcelposition.y);
+	}
+}
+
+
+/**
+ *  A* search over a grid of cells, where every cell connects to its 8
+ *  neighbours. The cost of a step is its length plus the CellCost of the
+ *  cell it enters.
+ *  <br>
+ *  In Jump Point Search mode the search doesn't expand every cell of a
+ *  region where all cells cost the same, but jumps over it in straight and
+ *  diagonal lines until it gets to a jump point: a cell with a neighbour
+ *  that costs something else, a corner of cells that can't be entered, or
+ *  the goal. Where the cost changes, jump points are expanded in all 8
+ *  directions like plain A* would. So the paths cost the same as with plain
+ *  A*, but on open maps far fewer cells are expanded: thousands of times
+ *  fewer on an empty 256x256 map. Wherever the cost changes or cells can't
+ *  be entered there are jump points all over, so on scattered obstacles it
+ *  expands only a quarter fewer cells, and on Terrain.map, where the
+ *  Terrains cost different amounts, it gains almost nothing (about 3% fewer
+ *  cells, see the -verify option of BatchSimulation). JumpPointBenchmark
+ *  measures both modes on such maps.
+ *  <br>
+ *  The g-cost and the parent of the cells are kept in arrays that are
+ *  reused from one search to the next: a generation stamp tells which
+ *  cells belong to the current search, so nothing has to be cleared.
+ *  Every thread gets its own engine through getInstance().
+ *
+ *@created    18 october 2026
+ */
+class GridAStar {
+	// The 8 neighbours of a cell, the odd directions are diagonals
+	static final int DX[] = {1, 1, 0, -1, -1, -1, 0, 1};
+	static final int DY[] = {0, 1, 1, 1, 0, -1, -1, -1};
+	static final double SQRT2 = Math.sqrt(2.0);
+
+	// The bits of getNeighbours(): per direction whether that neighbour can
+	// be entered, whether it can't, and whether one costs something else
+	static final int OPEN = 0x1;
+	static final int BLOCKED = 0x100;
+	static final int COST_CHANGE = 0x10000;
+
+	/**
+	 *  Whether findPath() uses Jump Point Search by default, can be turned on
+	 *  with the iSpecies.jumpPointSearch system property. It expands fewer
+	 *  cells, but it looks at every cell it jumps over, so unless the map is
+	 *  large and open plain A* is faster.
+	 */
+	public final static boolean JUMP_POINT_SEARCH = Boolean.getBoolean("iSpecies.jumpPointSearch");
+
+	int mnWidth, mnHeight;
+	double mvG[];			// cheapest known cost from the start to every cell
+	int mvParent[];			// the cell we came from on that cheapest way
+	int mvSeen[];			// generation in which mvG and mvParent were set
+	int mvClosed[];			// generation in which the cell was expanded
+	int mnGeneration = 0;
+	IndexedIntHeap mOpen;
+	int mnExpanded = 0;		// number of cells expanded by the last search
+	double mnJumpCost;		// the cost of the last jump, see jump()
+	int mvJumps[][];		// per straight direction, the jump point of a jump from every cell
+	int mvJumpSeen[][];		// generation in which mvJumps was set, per straight direction
+	int mvNeighbours[];		// see getNeighbours()
+	int mvNeighbourSeen[];	// generation in which mvNeighbours was set
+
+	static ThreadLocal mInstance = new ThreadLocal();
+
+
+	/**
+	 *  Returns the engine of the current thread, sized for the grid
+	 *
+	 *@param  _width   The width of the grid in cells
+	 *@param  _height  The height of the grid in cells
+	 *@return          The engine
+	 */
+	static GridAStar getInstance(int _width, int _height) {
+		GridAStar engine = (GridAStar)mInstance.get();
+		if ((engine == null) || (engine.mnWidth != _width) || (engine.mnHeight != _height)) {
+			engine = new GridAStar(_width, _height);
+			mInstance.set(engine);
+		}
+		return engine;
+	}
+
+
+	/**
+	 *  Constructor for the GridAStar object
+	 *
+	 *@param  _width   The width of the grid in cells
+	 *@param  _height  The height of the grid in cells
+	 */
+	GridAStar(int _width, int _height) {
+		mnWidth = _width;
+		mnHeight = _height;
+		int size = _width * _height;
+		mvG = new double[size];
+		mvParent = new int[size];
+		mvSeen = new int[size];
+		mvClosed = new int[size];
+		mOpen = new IndexedIntHeap(size);
+	}
+
+
+	/**
+	 *  Gets the number of cells that were expanded by the last search
+	 *
+	 *@return    The number of cells
+	 */
+	public int getExpandedCount() {
+		return mnExpanded;
+	}
+
+
+	/**
+	 *  Finds the cheapest path between two cells
+	 *
+	 *@param  _startX      The column of the start cell
+	 *@param  _startY      The row of the start cell
+	 *@param  _goalX       The column of the goal cell
+	 *@param  _goalY       The row of the goal cell
+	 *@param  _cost        The cost of entering the cells
+	 *@param  _stepLength  The length of a horizontal or vertical step
+	 *@return              The cells (as y * width + x) from start to goal, or null if the goal can't be reached
+	 */
+	public int[] findPath(int _startX, int _startY, int _goalX, int _goalY, CellCost _cost, double _stepLength) {
+		return findPath(_startX, _startY, _goalX, _goalY, _cost, _stepLength, JUMP_POINT_SEARCH);
+	}
+
+
+	/**
+	 *  Finds the cheapest path between two cells
+	 *
+	 *@param  _startX      The column of the start cell
+	 *@param  _startY      The row of the start cell
+	 *@param  _goalX       The column of the goal cell
+	 *@param  _goalY       The row of the goal cell
+	 *@param  _cost        The cost of entering the cells
+	 *@param  _stepLength  The length of a horizontal or vertical step
+	 *@param  _jump        True to use Jump Point Search, false for plain A*
+	 *@return              The cells (as y * width + x) from start to goal, or null if the goal can't be reached
+	 */
+	public int[] findPath(int _startX, int _startY, int _goalX, int _goalY, CellCost _cost, double _stepLength, boolean _jump) {
+		if (_jump && (mvJumps == null)) {
+			mvJumps = new int[4][mnWidth * mnHeight];
+			mvJumpSeen = new int[4][mnWidth * mnHeight];
+			mvNeighbours = new int[mnWidth * mnHeight];
+			mvNeighbourSeen = new int[mnWidth * mnHeight];
+		}
+		nextGeneration();
+		mnExpanded = 0;
+		int start = _startY * mnWidth + _startX;
+		int goal = _goalY * mnWidth + _goalX;
+		mvG[start] = 0;
+		mvParent[start] = -1;
+		mvSeen[start] = mnGeneration;
+		mOpen.add(start, heuristic(_startX, _startY, _goalX, _goalY, _stepLength));
+		while (!mOpen.isEmpty()) {
+			int current = mOpen.poll();
+			if (current == goal) {
+				mOpen.clear();
+				return buildPath(goal);
+			}
+			mvClosed[current] = mnGeneration;
+			mnExpanded++;
+			if (_jump) {
+				expandJumping(current, _goalX, _goalY, _cost, _stepLength);
+				continue;
+			}
+			int x = current % mnWidth;
+			int y = current / mnWidth;
+			for (int d = 0; d < 8; d++) {
+				int nx = x + DX[d];
+				int ny = y + DY[d];
+				if ((nx < 0) || (nx >= mnWidth) || (ny < 0) || (ny >= mnHeight)) {
+					continue;
+				}
+				int next = ny * mnWidth + nx;
+				if (mvClosed[next] == mnGeneration) {
+					continue;
+				}
+				double enter = _cost.getCost(nx, ny);
+				if (enter == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				boolean diagonal = (d & 1) != 0;
+				if (diagonal && ((_cost.getCost(nx, y) == Double.POSITIVE_INFINITY) || (_cost.getCost(x, ny) == Double.POSITIVE_INFINITY))) {
+					// don't cut the corner of a cell that can't be entered
+					continue;
+				}
+				double g = mvG[current] + (diagonal ? SQRT2 * _stepLength : _stepLength) + enter;
+				if ((mvSeen[next] != mnGeneration) || (g < mvG[next])) {
+					mvG[next] = g;
+					mvParent[next] = current;
+					mvSeen[next] = mnGeneration;
+					mOpen.add(next, g + heuristic(nx, ny, _goalX, _goalY, _stepLength));
+				}
+			}
+		}
+		return null;
+	}
+
+
+	// Expands a cell by jumping from it, in the directions in which Jump Point Search may find something new
+	void expandJumping(int _current, int _goalX, int _goalY, CellCost _cost, double _stepLength) {
+		int x = _current % mnWidth;
+		int y = _current / mnWidth;
+		int parent = mvParent[_current];
+		int first = 0;
+		int last = 7;
+		if ((parent != -1) && ((getNeighbours(x, y, _cost) & (BLOCKED * 0xff | COST_CHANGE)) == 0)) {
+			// in the middle of a uniform region only go on the way we came,
+			// and along the straight parts of a diagonal
+			int d = getDirection(sign(x - parent % mnWidth), sign(y - parent / mnWidth));
+			first = ((d & 1) != 0) ? d - 1 : d;
+			last = ((d & 1) != 0) ? d + 1 : d;
+		}
+		for (int i = first; i <= last; i++) {
+			int next = jump(x, y, (i + 8) % 8, _goalX, _goalY, _cost, _stepLength);
+			if ((next < 0) || (mvClosed[next] == mnGeneration)) {
+				continue;
+			}
+			double g = mvG[_current] + mnJumpCost;
+			if ((mvSeen[next] != mnGeneration) || (g < mvG[next])) {
+				mvG[next] = g;
+				mvParent[next] = _current;
+				mvSeen[next] = mnGeneration;
+				mOpen.add(next, g + heuristic(next % mnWidth, next / mnWidth, _goalX, _goalY, _stepLength));
+			}
+		}
+	}
+
+
+	/**
+	 *  Jumps from a cell in a direction until it gets to a jump point: the
+	 *  goal, a cell next to a cell that costs something else, a cell that can
+	 *  only be reached the cheapest way through this one because of a cell
+	 *  that can't be entered behind it or, going diagonally, a cell from which
+	 *  a straight jump finds a jump point. The cost of the jump is left in
+	 *  mnJumpCost.
+	 *
+	 *@return    The jump point (as y * width + x), or -1 if the jump ran into
+	 *      the edge of the grid or a cell that can't be entered
+	 */
+	int jump(int _x, int _y, int _d, int _goalX, int _goalY, CellCost _cost, double _stepLength) {
+		if ((_d & 1) == 0) {
+			return jumpStraight(_y * mnWidth + _x, _d, _goalX, _goalY, _cost, _stepLength);
+		}
+		int dx = DX[_d];
+		int dy = DY[_d];
+		double total = 0;
+		int x = _x;
+		int y = _y;
+		while (true) {
+			int nx = x + dx;
+			int ny = y + dy;
+			if ((nx < 0) || (nx >= mnWidth) || (ny < 0) || (ny >= mnHeight)) {
+				return -1;
+			}
+			double enter = _cost.getCost(nx, ny);
+			if ((enter == Double.POSITIVE_INFINITY) || (_cost.getCost(nx, y) == Double.POSITIVE_INFINITY) || (_cost.getCost(x, ny) == Double.POSITIVE_INFINITY)) {
+				// don't cut the corner of a cell that can't be entered
+				return -1;
+			}
+			total += SQRT2 * _stepLength + enter;
+			x = nx;
+			y = ny;
+			int cell = y * mnWidth + x;
+			if (((x == _goalX) && (y == _goalY)) || hasCostChange(x, y, _cost)
+				|| (jumpStraight(cell, (_d + 7) % 8, _goalX, _goalY, _cost, _stepLength) >= 0)
+				|| (jumpStraight(cell, (_d + 1) % 8, _goalX, _goalY, _cost, _stepLength) >= 0)) {
+				mnJumpCost = total;
+				return cell;
+			}
+		}
+	}
+
+
+	// Jumps horizontally or vertically. The cells on the way all jump to the
+	// same point, so that is remembered for all of them for the rest of the search.
+	int jumpStraight(int _from, int _d, int _goalX, int _goalY, CellCost _cost, double _stepLength) {
+		int jumps[] = mvJumps[_d / 2];
+		int seen[] = mvJumpSeen[_d / 2];
+		int dx = DX[_d];
+		int dy = DY[_d];
+		int delta = dy * mnWidth + dx;
+		int x = _from % mnWidth;
+		int y = _from / mnWidth;
+		int cell = _from;
+		int result;
+		while (true) {
+			if (seen[cell] == mnGeneration) {
+				result = jumps[cell];
+				break;
+			}
+			x += dx;
+			y += dy;
+			if ((x < 0) || (x >= mnWidth) || (y < 0) || (y >= mnHeight) || (_cost.getCost(x, y) == Double.POSITIVE_INFINITY)) {
+				result = -1;
+				break;
+			}
+			if (((x == _goalX) && (y == _goalY)) || hasCostChange(x, y, _cost) || isForced(x, y, _d, _cost)) {
+				result = cell + delta;
+				break;
+			}
+			cell += delta;
+		}
+		for (int c = _from; ; c += delta) {
+			jumps[c] = result;
+			seen[c] = mnGeneration;
+			if (c == cell) {
+				break;
+			}
+		}
+		if (result >= 0) {
+			// all cells on the way cost the same, or the jump would have stopped
+			mnJumpCost = getDistance(_from, result) * (_stepLength + _cost.getCost(result % mnWidth, result / mnWidth));
+		}
+		return result;
+	}
+
+
+	// Returns true if a neighbour of a cell costs something else than the cell, but can be entered
+	boolean hasCostChange(int _x, int _y, CellCost _cost) {
+		return (getNeighbours(_x, _y, _cost) & COST_CHANGE) != 0;
+	}
+
+
+	// Returns true if, going straight in direction [_d], a cell beside the
+	// cell can't be reached diagonally because the cell behind it is blocked
+	boolean isForced(int _x, int _y, int _d, CellCost _cost) {
+		int neighbours = getNeighbours(_x, _y, _cost);
+		// the sides are 2 directions away from the way we go, the cells behind them 3
+		return (((neighbours & (OPEN << ((_d + 2) % 8))) != 0) && ((neighbours & (BLOCKED << ((_d + 3) % 8))) != 0))
+			|| (((neighbours & (OPEN << ((_d + 6) % 8))) != 0) && ((neighbours & (BLOCKED << ((_d + 5) % 8))) != 0));
+	}
+
+
+	// Gets which neighbours of a cell are open and blocked, and whether they cost
+	// something else, worked out once per search for every cell
+	int getNeighbours(int _x, int _y, CellCost _cost) {
+		int cell = _y * mnWidth + _x;
+		if (mvNeighbourSeen[cell] == mnGeneration) {
+			return mvNeighbours[cell];
+		}
+		double own = _cost.getCost(_x, _y);
+		int neighbours = 0;
+		for (int d = 0; d < 8; d++) {
+			int nx = _x + DX[d];
+			int ny = _y + DY[d];
+			if ((nx >= 0) && (nx < mnWidth) && (ny >= 0) && (ny < mnHeight)) {
+				double cost = _cost.getCost(nx, ny);
+				if (cost == Double.POSITIVE_INFINITY) {
+					neighbours |= BLOCKED << d;
+				} else {
+					neighbours |= OPEN << d;
+					if (cost != own) {
+						neighbours |= COST_CHANGE;
+					}
+				}
+			}
+		}
+		mvNeighbours[cell] = neighbours;
+		mvNeighbourSeen[cell] = mnGeneration;
+		return neighbours;
+	}
+
+
+	static int sign(int _value) {
+		return (_value > 0) ? 1 : ((_value < 0) ? -1 : 0);
+	}
+
+
+	// Returns the index in DX and DY of a direction
+	static int getDirection(int _dx, int _dy) {
+		for (int d = 0; d < 8; d++) {
+			if ((DX[d] == _dx) && (DY[d] == _dy)) {
+				return d;
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 *  Gets the cost of a path the way findPath() counts it
+	 *
+	 *@param  _path        The cells (as y * width + x) from start to goal, may be null
+	 *@param  _width       The width of the grid in cells
+	 *@param  _cost        The cost of entering the cells
+	 *@param  _stepLength  The length of a horizontal or vertical step
+	 *@return              The cost, Double.POSITIVE_INFINITY for no path, or Double.NaN
+	 *                     if the path takes a step that findPath() wouldn't take
+	 */
+	static double getPathCost(int _path[], int _width, CellCost _cost, double _stepLength) {
+		if (_path == null) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double total = 0;
+		for (int i = 1; i < _path.length; i++) {
+			int x = _path[i - 1] % _width;
+			int y = _path[i - 1] / _width;
+			int nx = _path[i] % _width;
+			int ny = _path[i] / _width;
+			int d = getDirection(nx - x, ny - y);
+			double enter = _cost.getCost(nx, ny);
+			if ((d < 0) || (enter == Double.POSITIVE_INFINITY)) {
+				return Double.NaN;
+			}
+			boolean diagonal = (d & 1) != 0;
+			if (diagonal && ((_cost.getCost(nx, y) == Double.POSITIVE_INFINITY) || (_cost.getCost(x, ny) == Double.POSITIVE_INFINITY))) {
+				return Double.NaN;
+			}
+			total += (diagonal ? SQRT2 * _stepLength : _stepLength) + enter;
+		}
+		return total;
+	}
+
+
+	// The length of the shortest way between two cells, never more than the real cost
+	static double heuristic(int _x, int _y, int _goalX, int _goalY, double _stepLength) {
+		int dx = Math.abs(_goalX - _x);
+		int dy = Math.abs(_goalY - _y);
+		return _stepLength * (Math.max(dx, dy) + (SQRT2 - 1) * Math.min(dx, dy));
+	}
+
+
+	// Follows the parents back from the goal, filling in the cells that were jumped over
+	int[] buildPath(int _goal) {
+		int length = 1;
+		for (int cell = _goal; mvParent[cell] != -1; cell = mvParent[cell]) {
+			length += getDistance(cell, mvParent[cell]);
+		}
+		int path[] = new int[length];
+		path[--length] = _goal;
+		for (int cell = _goal; mvParent[cell] != -1; cell = mvParent[cell]) {
+			// a jump goes in a straight or diagonal line
+			int parent = mvParent[cell];
+			int dx = sign(parent % mnWidth - cell % mnWidth);
+			int dy = sign(parent / mnWidth - cell / mnWidth);
+			int x = cell % mnWidth;
+			int y = cell / mnWidth;
+			for (int i = getDistance(cell, parent); i > 0; i--) {
+				x += dx;
+				y += dy;
+				path[--length] = y * mnWidth + x;
+			}
+		}
+		return path;
+	}
+
+
+	// The number of steps between two cells on a straight or diagonal line
+	int getDistance(int _from, int _to) {
+		return Math.max(Math.abs(_from % mnWidth - _to % mnWidth), Math.abs(_from / mnWidth - _to / mnWidth));
+	}
+
+
+	void nextGeneration() {
+		if (++mnGeneration == Integer.MAX_VALUE) {
+			java.util.Arrays.fill(mvSeen, 0);
+			java.util.Arrays.fill(mvClosed, 0);
+			if (mvJumpSeen != null) {
+				for (int i = 0; i < mvJumpSeen.length; i++) {
+					java.util.Arrays.fill(mvJumpSeen[i], 0);
+				}
+				java.util.Arrays.fill(mvNeighbourSeen, 0);
+			}
+			mnGeneration = 1;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * GridPathDirector.java
+ *
+ */
+
+import java.awt.Point;
+import util.*;
+
+/**
+ * A Director that plans a path over the Parcels with A* (see GridAStar) and
+ * then walks it from Parcel center to Parcel center. It plans again when the
+ * target changes or when the game object has left the path.
+ * <br>
+ * The costs are those of the MapCellCost, so it avoids water and places where
+ * other objects died, just like the PathFinderDirector. A death only counts
+ * from the tick after it, so the directors of a parallel tick all plan with
+ * the same costs.
+ */
+public class GridPathDirector implements Director, ObjectListener {
+	// The Parcels from the start to the target (as y * width + x), null if there is no path
+	int mvPath[] = null;
+	// Index in mvPath of the Parcel we're heading for
+	int mnNext = 0;
+	// The target, map and cost version the path was planned for
+	Point mPathTarget = null;
+	GameMap mPathMap = null;
+	long mlPathVersion = -1;
+
+	// Determines the direction to move in to get fastest from [_pos] to [_target] on [_map] at [_maxSpeed]
+	public FloatPoint determineDirection(FloatPoint _pos, Point _target, GameMap _map, double _maxSpeed) {
+		// if the start position is the same as the target, do nothing
+		if (_pos.toPoint().equals(_target)) return null;
+		ParcelMap parcels = _map.getParcelMap();
+		Point start = _map.gameXYToParcelXY(_pos.x, _pos.y);
+		Point goal = _map.gameXYToParcelXY(_target.x, _target.y);
+		FloatPoint waypoint = new FloatPoint(_target);
+		if (isInside(parcels, start) && isInside(parcels, goal)) {
+			int current = start.y * parcels.getWidth() + start.x;
+			boolean replan;
+			if (!_target.equals(mPathTarget) || (_map != mPathMap)) {
+				replan = true;
+			} else if (mvPath == null) {
+				// there was no path, there may be one when the costs have changed
+				replan = (_map.getCostVersion() != mlPathVersion);
+			} else {
+				replan = !followPath(current);
+			}
+			if (replan) {
+				plan(start, goal, _target, _map);
+			}
+			if ((mvPath != null) && (mnNext < mvPath.length - 1)) {
+				// head for the center of the next Parcel, in the last Parcel head for the target itself
+				int next = mvPath[mnNext];
+				waypoint = new FloatPoint(
+					(next % parcels.getWidth() + 0.5) * _map.mParcelWidth,
+					(next / parcels.getWidth() + 0.5) * _map.mParcelHeight
+				);
+			}
+		}
+		// move towards the waypoint, without overshooting it
+		FloatPoint direction = new FloatPoint(waypoint.x - _pos.x, waypoint.y - _pos.y);
+		double distance = direction.distance(0.0, 0.0);
+		if (distance > _maxSpeed) {
+			direction.x = (_maxSpeed * direction.x / distance);
+			direction.y = (_maxSpeed * direction.y / distance);
+		}
+		return direction;
+	}
+
+	// Returns true if [_current] is still on the path, and moves on to the next Parcel if we reached it
+	boolean followPath(int _current) {
+		if (mvPath == null) {
+			return false;
+		}
+		if ((mvPath[mnNext] == _current) && (mnNext < mvPath.length - 1)) {
+			mnNext++;
+			return true;
+		}
+		return (mvPath[mnNext] == _current) || ((mnNext > 0) && (mvPath[mnNext - 1] == _current));
+	}
+
+	// Plans a new path from the Parcel at [_start] to the Parcel at [_goal], or takes it from the PathCache
+	void plan(Point _start, Point _goal, Point _target, GameMap _map) {
+		ParcelMap parcels = _map.getParcelMap();
+		int from = _start.y * parcels.getWidth() + _start.x;
+		int to = _goal.y * parcels.getWidth() + _goal.x;
+		long version = _map.getCostVersion();
+		mlPathVersion = version;
+		int path[] = _map.getPathCache().get(from, to, version);
+		if (path == null) {
+			GridAStar engine = GridAStar.getInstance(parcels.getWidth(), parcels.getHeight());
+			long start = System.nanoTime();
+			path = engine.findPath(
+				_start.x, _start.y,
+				_goal.x, _goal.y,
+				new MapCellCost(_map),
+				Math.min(_map.mParcelWidth, _map.mParcelHeight)
+			);
+			_map.getPathCache().put(from, to, version, path);
+			log("Planned "+((path != null) ? path.length+" parcels" : "no path")+" to "+StringHelper.toString(_target)+", expanded "+engine.getExpandedCount()+" parcels in "+(System.nanoTime() - start) / 1000+" usec");
+		}
+		setPath(path, _target, _map);
+	}
+
+	// Starts following [_path] (as found by GridAStar, or PathCache.NO_PATH) to [_target]
+	void setPath(int _path[], Point _target, GameMap _map) {
+		mvPath = (_path != PathCache.NO_PATH) ? _path : null;
+		// the first Parcel of the path is the one we're in
+		mnNext = (mvPath != null && mvPath.length > 1) ? 1 : 0;
+		mPathTarget = new Point(_target);
+		mPathMap = _map;
+	}
+
+	// Returns the path as points in game coordinates (the centers of the Parcels), null if there is no path
+	public Point[] getPath() {
+		int path[] = mvPath;
+		GameMap map = mPathMap;
+		if (path == null || map == null) {
+			return null;
+		}
+		int width = map.getParcelMap().getWidth();
+		Point result[] = new Point[path.length];
+		for (int i=0; i < path.length; i++) {
+			result[i] = new Point(
+				(int)((path[i] % width + 0.5) * map.mParcelWidth),
+				(int)((path[i] / width + 0.5) * map.mParcelHeight)
+			);
+		}
+		return result;
+	}
+
+	static boolean isInside(ParcelMap _parcels, Point _p) {
+		return (_p.x >= 0) && (_p.x < _parcels.getWidth()) && (_p.y >= 0) && (_p.y < _parcels.getHeight());
+	}
+
+	// Called to indicate that the game object has died, the death is counted at the end of the tick
+	public void died(ObjectEvent _e) {
+		BaseGameObject src = (BaseGameObject)_e.getSource();
+		MapCellCost.addDeath(src.getMap(), src.getPosition());
+	}
+
+	public void log(String _line) {
+		Logger.info("GridPathDirector: "+_line);
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * HierarchicalPathDirector.java
+ *
+ */
+
+import java.awt.Point;
+import util.*;
+
+/**
+ * A Director for large maps. It plans a rough path from cluster entrance to
+ * cluster entrance on the ClusterGraph of the map, and only finds the exact
+ * path to the next entrance when it gets there, with the costs of that
+ * moment. It plans again when the target changes, when there is no way to
+ * the next entrance or when the game object has left the path.
+ */
+public class HierarchicalPathDirector implements Director, ObjectListener {
+	// The start, the entrances and the goal (as y * width + x), null if there is no path
+	int mvWaypoints[] = null;
+	// Index in mvWaypoints of the entrance mvPath leads to
+	int mnWaypoint = 0;
+	// The Parcels from the previous waypoint to the current one
+	int mvPath[] = null;
+	// Index in mvPath of the Parcel we're heading for
+	int mnNext = 0;
+	// The target and map the path was planned for
+	Point mPathTarget = null;
+	GameMap mPathMap = null;
+
+	// Determines the direction to move in to get fastest from [_pos] to [_target] on [_map] at [_maxSpeed]
+	public FloatPoint determineDirection(FloatPoint _pos, Point _target, GameMap _map, double _maxSpeed) {
+		// if the start position is the same as the target, do nothing
+		if (_pos.toPoint().equals(_target)) return null;
+		ParcelMap parcels = _map.getParcelMap();
+		Point start = _map.gameXYToParcelXY(_pos.x, _pos.y);
+		Point goal = _map.gameXYToParcelXY(_target.x, _target.y);
+		FloatPoint waypoint = new FloatPoint(_target);
+		if (GridPathDirector.isInside(parcels, start) && GridPathDirector.isInside(parcels, goal)) {
+			int current = start.y * parcels.getWidth() + start.x;
+			ClusterGraph graph = _map.getClusterGraph();
+			if (!_target.equals(mPathTarget) || (_map != mPathMap) || !followPath(graph, current)) {
+				plan(graph, start, goal, _target, _map);
+			}
+			boolean last = (mvWaypoints != null) && (mnWaypoint == mvWaypoints.length - 1);
+			if ((mvPath != null) && (!last || (mnNext < mvPath.length - 1))) {
+				// head for the center of the next Parcel, in the last Parcel head for the target itself
+				int next = mvPath[mnNext];
+				waypoint = new FloatPoint(
+					(next % parcels.getWidth() + 0.5) * _map.mParcelWidth,
+					(next / parcels.getWidth() + 0.5) * _map.mParcelHeight
+				);
+			}
+		}
+		// move towards the waypoint, without overshooting it
+		FloatPoint direction = new FloatPoint(waypoint.x - _pos.x, waypoint.y - _pos.y);
+		double distance = direction.distance(0.0, 0.0);
+		if (distance > _maxSpeed) {
+			direction.x = (_maxSpeed * direction.x / distance);
+			direction.y = (_maxSpeed * direction.y / distance);
+		}
+		return direction;
+	}
+
+	// Returns true if [_current] is still on the path, and moves on to the next Parcel (or waypoint) if we reached it
+	boolean followPath(ClusterGraph _graph, int _current) {
+		if (mvPath == null) {
+			return false;
+		}
+		if (mvPath[mnNext] == _current) {
+			if (mnNext < mvPath.length - 1) {
+				mnNext++;
+			} else if (mnWaypoint < mvWaypoints.length - 1) {
+				refine(_graph);
+			}
+			return mvPath != null;
+		}
+		return (mnNext > 0) && (mvPath[mnNext - 1] == _current);
+	}
+
+	// Finds the exact path to the next waypoint
+	void refine(ClusterGraph _graph) {
+		mvPath = _graph.refine(mvWaypoints[mnWaypoint], mvWaypoints[mnWaypoint + 1]);
+		mnWaypoint++;
+		// the first Parcel of the path is the one we're in
+		mnNext = (mvPath != null && mvPath.length > 1) ? 1 : 0;
+	}
+
+	// Plans a new path from the Parcel at [_start] to the Parcel at [_goal]
+	void plan(ClusterGraph _graph, Point _start, Point _goal, Point _target, GameMap _map) {
+		long start = System.nanoTime();
+		mvWaypoints = _graph.findPath(_start.x, _start.y, _goal.x, _goal.y);
+		int expanded = _graph.getExpandedCount();
+		mnWaypoint = 0;
+		mvPath = null;
+		if (mvWaypoints != null) {
+			if (mvWaypoints.length > 1) {
+				refine(_graph);
+			} else {
+				mvPath = mvWaypoints;
+				mnNext = 0;
+			}
+		}
+		mPathTarget = new Point(_target);
+		mPathMap = _map;
+		log("Planned "+((mvWaypoints != null) ? mvWaypoints.length+" waypoints" : "no path")+" to "+StringHelper.toString(_target)+", expanded "+expanded+" nodes in "+(System.nanoTime() - start) / 1000+" usec");
+	}
+
+	// Called to indicate that the game object has died
+	public void died(ObjectEvent _e) {
+		BaseGameObject src = (BaseGameObject)_e.getSource();
+		MapCellCost.addDeath(src.getMap(), src.getPosition());
+	}
+
+	public void log(String _line) {
+		Logger.info("HierarchicalPathDirector: "+_line);
+	}
+}
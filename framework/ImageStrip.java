@@ -9,6 +9,10 @@ import java.awt.image.*;
  *  This class can cut up an image comprised of a matrix of smaller images (frames)
  *  and act as an indexable source for those sub-images (frames). Usefull for animations
  *  or tile sets for example.
+ *  <br>
+ *  A BufferedImage (see ResourceManager.readImage()) is cut up right away, its
+ *  frames are sub-images that share its pixels. Any other Image is cut up with
+ *  image filters once it has been loaded.
  *
  *@author     Tako
  *@created    5 november 2002
@@ -84,6 +88,10 @@ public class ImageStrip implements ImageObserver {
 		m_nInterImgWidth = iimgw;
 		m_nInterImgHeight = iimgh;
 
+		if (img instanceof BufferedImage) {
+			cropframes((BufferedImage)img);
+			return;
+		}
 		int w = img.getWidth(this);
 		int h = img.getHeight(this);
 		if (w != -1 && h != -1) {
@@ -92,6 +100,32 @@ public class ImageStrip implements ImageObserver {
 	}
 
 
+	/**
+	 *  Cuts up a decoded source image into its constituent frames, without copying the pixels
+	 *
+	 *@param  img  The source image
+	 */
+	void cropframes(BufferedImage img) {
+		// only the frames that fit in the source image
+		int xcount = Math.max(0, (img.getWidth() - m_nImgStartX + m_nInterImgWidth) / (m_nImgWidth + m_nInterImgWidth));
+		int ycount = Math.max(0, (img.getHeight() - m_nImgStartY + m_nInterImgHeight) / (m_nImgHeight + m_nInterImgHeight));
+
+		m_vImages = new Image[xcount * ycount];
+
+		int nr = 0;
+		int yp = m_nImgStartY;
+		for (int j = 0; j < ycount; j++) {
+			int xp = m_nImgStartX;
+			for (int i = 0; i < xcount; i++) {
+				m_vImages[nr] = img.getSubimage(xp, yp, m_nImgWidth, m_nImgHeight);
+				xp += m_nImgWidth + m_nInterImgWidth;
+				nr++;
+			}
+			yp += m_nImgHeight + m_nInterImgHeight;
+		}
+	}
+
+
 	/**
 	 *  Cuts up the source image into its constituent frames
 	 *
@@ -147,6 +181,29 @@ public class ImageStrip implements ImageObserver {
 	}
 
 
+	/**
+	 *  Checks whether all frames have been loaded (or failed to load), and
+	 *  starts loading the ones that haven't
+	 *
+	 *@return    True if drawing the frames won't change anymore
+	 */
+	public boolean isLoaded() {
+		Toolkit toolkit = Toolkit.getDefaultToolkit();
+		if (m_vImages == null) {
+			// the frames are cut once the size of the strip is known
+			return (toolkit.checkImage(m_Strip, -1, -1, null) & (ERROR | ABORT)) != 0;
+		}
+		boolean loaded = true;
+		for (int i = 0; i < m_vImages.length; i++) {
+			if (!toolkit.prepareImage(m_vImages[i], -1, -1, null) &&
+					(toolkit.checkImage(m_vImages[i], -1, -1, null) & (ERROR | ABORT)) == 0) {
+				loaded = false;
+			}
+		}
+		return loaded;
+	}
+
+
 	/**
 	 *  Returns the specified frame Image from the ImageStrip
 	 *
@@ -5,18 +5,19 @@
 import java.io.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.*;
 import java.util.*;
+import util.*;
 
 /**
  *  This class represents a view of the map as it is seen by the IsometricViewport
  *
  *@created    5 november 2002
  */
-class IsometricDataSource implements TimerReceiver {
+class IsometricDataSource implements SnapshotReceiver {
 	Universe mGame;
 	IsometricViewport mViewport;
 	// should be a vector, to handle multiple views on this Isometric
-	TimerTrigger mTrigger;
 	int mInterval = 25;
 	// number of heartbeats between updates
 	GameMap mMap;
@@ -29,8 +30,6 @@ class IsometricDataSource implements TimerReceiver {
 	 *@param  _game  A reference to the Universe this view exists in
 	 */
 	IsometricDataSource(Universe _game) {
-		mTrigger = new TimerTrigger(this);
-		mTrigger.setRepeat(true);
 		OnUniverse(_game);
 		Logger.log("IsometricDatasource created");
 	}
@@ -52,24 +51,26 @@ class IsometricDataSource implements TimerReceiver {
 	 */
 	public void OnUniverse(Universe _universe) {
 		if (mGame != null) {
-			mGame.heartBeat.remove(mTrigger);
+			mGame.getRenderer().remove(this);
 		}
 		mGame = _universe;
 		if (mGame != null) {
 			mMap = mGame.getMap();
 			// can see the entire map
-			mGame.heartBeat.addRel(mTrigger, mInterval);
+			mGame.getRenderer().add(this, mInterval);
 		}
 	}
 
 
 	/**
-	 *  Callback for this object's "heartbeat"
+	 *  Callback for the snapshots of the RenderThread
 	 *
-	 *@param  tt  Description of the Parameter
+	 *@param  _snapshot  The latest snapshot
 	 */
-	public void doTimer(TimerTrigger tt) {
-		mViewport.updateMap();
+	public void render(WorldSnapshot _snapshot) {
+		if (mViewport != null) {
+			mViewport.updateMap();
+		}
 	}
 }
 
@@ -78,7 +79,7 @@ class IsometricDataSource implements TimerReceiver {
  *
  *@created    5 november 2002
  */
-class IsometricViewport extends Frame {
+class IsometricViewport extends Frame implements MouseListener, MouseMotionListener {
 
 	// member variables
 
@@ -86,6 +87,42 @@ class IsometricViewport extends Frame {
 	Graphics mBackBufferGfx = null;
 	Universe mGame;
 	IsometricDataSource mSource;
+	// the size of the whole map in pixels, of which the window shows a part
+	int mnWorldWidth = 0, mnWorldHeight = 0;
+	// the position of the window on the map, and where the mouse started dragging it
+	int mnScrollX = 0, mnScrollY = 0;
+	Point mDragStart = null;
+	int mnDragScrollX, mnDragScrollY;
+	// the Parcels to draw again, and the map they're on
+	DirtyRegion mDirtyRegion = null;
+	GameMap mDirtyMap = null;
+	// the objects that are drawn, see updateMap()
+	WorldSnapshot mSnapshot = null;
+	// the window has to be drawn completely, e.g. because it scrolled
+	boolean mbRedrawAll = true;
+	// the terrain in chunks, and the Parcels to draw again in them
+	TerrainChunkCache mChunks = new TerrainChunkCache(CHUNK_SIZE, TerrainChunkCache.DEFAULT_BYTES);
+	DirtyRegion mTerrainRegion = null;
+	// the base height every Parcel is drawn at in the chunks
+	int mvDrawnHeights[] = null;
+	int mnMinHeight = 0, mnMaxHeight = 0;
+	// the tiles are loaded in the background, until then the chunks are drawn every time
+	boolean mbTilesLoaded = false;
+
+	/**
+	 *  Size of the objects on the map
+	 */
+	public final static int OBJECT_SIZE = 5;
+
+	/**
+	 *  Size of the chunks of terrain
+	 */
+	public final static int CHUNK_SIZE = 256;
+
+	/**
+	 *  Largest size of the window when it's opened
+	 */
+	public final static Dimension MAX_VIEW_SIZE = new Dimension(800, 600);
 
 	/**
 	 *  Size of a tile relative to world size
@@ -110,6 +147,19 @@ class IsometricViewport extends Frame {
 		show();
 		OnUniverse(_game);
 		OnDataSource(_source);
+		this.addMouseListener(this);
+		this.addMouseMotionListener(this);
+		this.addComponentListener(
+			new ComponentAdapter() {
+				public void componentResized(ComponentEvent e) {
+					// the back buffer follows the size of the window
+					Insets insets = getInsets();
+					setBackBufferSize(
+							getWidth() - insets.left - insets.right,
+							getHeight() - insets.top - insets.bottom
+					);
+				}
+			});
 		Logger.log("IsometricViewport created");
 	}
 
@@ -165,10 +215,13 @@ class IsometricViewport extends Frame {
 		if (mSource != null) {
 			// connect to new IsometricDataSource
 			mSource.mViewport = this;
-			// resize to show entire view of source
+			mnWorldWidth = Math.round(mSource.mMap.getWidth() * SCALE);
+			mnWorldHeight = Math.round(mSource.mMap.getHeight() * SCALE / 2);
+			// isometric is half height
+			// resize to show as much of the source as fits
 			setViewportSize(
-					Math.round(mSource.mMap.getWidth() * SCALE),
-					Math.round(mSource.mMap.getHeight() * SCALE / 2) // isometric is half height
+					Math.min(mnWorldWidth, MAX_VIEW_SIZE.width),
+					Math.min(mnWorldHeight, MAX_VIEW_SIZE.height)
 			);
 		}
 	}
@@ -185,14 +238,131 @@ class IsometricViewport extends Frame {
 				_width + getInsets().left + getInsets().right,
 				_height + getInsets().top + getInsets().bottom
 				);
-		// create an off screen buffer for drawing
+		setBackBufferSize(_width, _height);
+	}
+
+
+	/**
+	 *  Creates an off screen buffer for drawing of the size of the window
+	 *
+	 *@param  _width   The width of the view
+	 *@param  _height  The height of the view
+	 */
+	synchronized void setBackBufferSize(int _width, int _height) {
+		_width = Math.max(1, _width);
+		_height = Math.max(1, _height);
+		if ((mBackBufferImg != null) && (mBackBufferImg.getWidth(null) == _width) && (mBackBufferImg.getHeight(null) == _height)) {
+			return;
+		}
 		if (mBackBufferGfx != null) {
 			mBackBufferGfx.dispose();
 		}
 		// free old one
-		mBackBufferImg = createImage(_width, _height);
+		// in video memory if possible, so that copying it to the window is fast
+		mBackBufferImg = createVolatileImage(_width, _height);
+		if (mBackBufferImg == null) {
+			mBackBufferImg = createImage(_width, _height);
+		}
 		mBackBufferGfx = mBackBufferImg.getGraphics();
-		Logger.log("IsometricViewport.setViewportSize: OSB(" + _width + ", " + _height + ") " + ((mBackBufferGfx != null) ? "" : "NOT ") + "created");
+		// all chunks that can be on screen at once have to fit in the cache
+		mChunks.setMinChunks((_width / CHUNK_SIZE + 2) * (_height / CHUNK_SIZE + 2));
+		mbRedrawAll = true;
+		Logger.log("IsometricViewport.setBackBufferSize: OSB(" + _width + ", " + _height + ") " + ((mBackBufferGfx != null) ? "" : "NOT ") + "created");
+	}
+
+
+	/**
+	 *  Makes sure the back buffer can be drawn in. A back buffer in video
+	 *  memory can lose its contents at any time, after which the whole
+	 *  window has to be drawn again.
+	 */
+	void validateBackBuffer() {
+		if (mBackBufferImg instanceof VolatileImage) {
+			VolatileImage img = (VolatileImage)mBackBufferImg;
+			int state = img.validate(getGraphicsConfiguration());
+			if (state == VolatileImage.IMAGE_INCOMPATIBLE) {
+				// e.g. moved to another screen
+				mBackBufferImg = null;
+				setBackBufferSize(img.getWidth(), img.getHeight());
+			} else if (state == VolatileImage.IMAGE_RESTORED) {
+				mBackBufferGfx.dispose();
+				mBackBufferGfx = img.getGraphics();
+				mbRedrawAll = true;
+			}
+		}
+	}
+
+
+	/**
+	 *  Scrolls the window to a position on the map, as far as the map goes
+	 *
+	 *@param  _x  The x coordinate on the map of the top left of the window
+	 *@param  _y  The y coordinate on the map of the top left of the window
+	 */
+	public synchronized void scrollTo(int _x, int _y) {
+		if ((mDirtyMap == null) || (mBackBufferImg == null)) {
+			return;
+		}
+		Rectangle bounds = getMapBounds();
+		_x = Math.max(bounds.x, Math.min(_x, bounds.x + bounds.width - mBackBufferImg.getWidth(null)));
+		_y = Math.max(bounds.y, Math.min(_y, bounds.y + bounds.height - mBackBufferImg.getHeight(null)));
+		if ((_x != mnScrollX) || (_y != mnScrollY)) {
+			mnScrollX = _x;
+			mnScrollY = _y;
+			mbRedrawAll = true;
+		}
+	}
+
+
+	/**
+	 *  Scrolls the window as little as possible to show a part of the map
+	 *
+	 *@param  _r  The part of the map
+	 */
+	public synchronized void scrollToShow(Rectangle _r) {
+		if (mBackBufferImg == null) {
+			return;
+		}
+		int x = Math.max(Math.min(mnScrollX, _r.x), _r.x + _r.width - mBackBufferImg.getWidth(null));
+		int y = Math.max(Math.min(mnScrollY, _r.y), _r.y + _r.height - mBackBufferImg.getHeight(null));
+		scrollTo(x, y);
+	}
+
+
+	/**
+	 *  Gets the part of the map the terrain of all Parcels covers
+	 *
+	 *@return    The rectangle
+	 */
+	Rectangle getMapBounds() {
+		ParcelMap parcels = mDirtyMap.getParcelMap();
+		int w = parcels.getWidth() - 1;
+		int h = parcels.getHeight() - 1;
+		// the left, top, bottom and right corner
+		Rectangle bounds = getTileBounds(0, 0, 0);
+		bounds.add(getTileBounds(w, 0, mnMaxHeight));
+		bounds.add(getTileBounds(0, h, mnMinHeight));
+		bounds.add(getTileBounds(w, h, 0));
+		return bounds;
+	}
+
+
+	/**
+	 *  Gets the Parcel at a point of the window, as if it had no height
+	 *
+	 *@param  _x  The x coordinate in the window
+	 *@param  _y  The y coordinate in the window
+	 *@return     The position of the Parcel in the ParcelMap, which may be outside of the map
+	 */
+	public Point getParcelAt(int _x, int _y) {
+		float hw = mGame.rm.getTileWidth() / 2;
+		// half width
+		float hh = mGame.rm.getTileHeight() / 2;
+		// half height
+		// the center of a tile is at ((x + y + 1) * hw, world height / 2 + (y - x) * hh / 2)
+		float s = (_x - getInsets().left + mnScrollX - hw) / hw;
+		float d = (_y - getInsets().top + mnScrollY - mnWorldHeight / 2) / (hh / 2);
+		return new Point(Math.round((s - d) / 2), Math.round((s + d) / 2));
 	}
 
 
@@ -214,7 +384,7 @@ class IsometricViewport extends Frame {
 		// half height
 		int left = Math.round((x * hw) + (y * hw));
 		int top = Math.round(
-				(mBackBufferImg.getHeight(null) / 2) - hh -
+				(mnWorldHeight / 2) - hh -
 				(x * hh / 2) +
 				((y - h) * hh / 2)
 		);
@@ -240,7 +410,7 @@ class IsometricViewport extends Frame {
 		// half height
 		int left = Math.round(x * hw) +
 				Math.round(y * hw);
-		int top = (mBackBufferImg.getHeight(null) / 2) -
+		int top = (mnWorldHeight / 2) -
 				Math.round(x * hh / 2) +
 				Math.round(y * hh / 2);
 		g.setColor(Color.red);
@@ -258,51 +428,452 @@ class IsometricViewport extends Frame {
 		// simply copy the off screen buffer to the window
 		g.drawImage(mBackBufferImg, getInsets().left, getInsets().top, null);
 		//g.drawImage(img,0,0,null);
+		if ((mBackBufferImg instanceof VolatileImage) && ((VolatileImage)mBackBufferImg).contentsLost()) {
+			mbRedrawAll = true;
+		}
 	}
 
 
 	/**
-	 *  Draws the current map to the back buffer
+	 *  Draws the part of the map in the window to the back buffer. The
+	 *  terrain is copied from the chunks, which are only drawn again where
+	 *  Parcels changed, and the objects of the latest snapshot (see
+	 *  SnapshotPublisher) are drawn on top of it. Only the parts of the
+	 *  window where objects moved or Parcels changed are drawn.
 	 */
-	public void updateMap() {
-		Rectangle r = mBackBufferGfx.getClipBounds();
-		if (r != null) {
-			mBackBufferGfx.clearRect(r.x, r.y, r.width, r.height);
-		}
-		// TODO: Clear entire image of we're not clipping
-
-		for (int x = 0; x < mSource.mMap.getParcelMap().getWidth(); x++) {
-			for (int y = 0; y < mSource.mMap.getParcelMap().getWidth(); y++) {
-				Parcel p = mSource.mMap.getParcelMap().getParcel(x, y);
-				DrawParcelTerrain(
-						mBackBufferGfx,
-						x,
-						y,
-						p.getBaseHeight(),
-						p.getTerrain()
-				);
+	public synchronized void updateMap() {
+		SnapshotPublisher publisher = mGame.getRenderer().getPublisher();
+		if (mSource.mMap != mDirtyMap) {
+			// start following the (new) map
+			if (mDirtyMap != null) {
+				publisher.removeDirtyRegion(mDirtyRegion);
+				mDirtyMap.getParcelMap().removeParcelListener(mTerrainRegion);
 			}
-			// for y
+			mDirtyMap = mSource.mMap;
+			mDirtyRegion = new DirtyRegion(mDirtyMap.getParcelMap().getWidth(), mDirtyMap.getParcelMap().getHeight());
+			publisher.addDirtyRegion(mDirtyRegion);
+			mTerrainRegion = new DirtyRegion(mDirtyMap.getParcelMap().getWidth(), mDirtyMap.getParcelMap().getHeight());
+			mDirtyMap.getParcelMap().addParcelListener(mTerrainRegion);
 		}
-		// for x
-		for (int x = 0; x < mSource.mMap.getParcelMap().getWidth(); x++) {
-			for (int y = 0; y < mSource.mMap.getParcelMap().getWidth(); y++) {
-				for (Enumeration e = mSource.mMap.getParcelMap().getParcel(x, y).objects(); e.hasMoreElements(); ) {
-					GameObject obj = (GameObject)e.nextElement();
-					DrawObject(
-							mBackBufferGfx,
-							(float)obj.getPosition().x / mSource.mMap.mParcelWidth,
-							(float)obj.getPosition().y / mSource.mMap.mParcelHeight,
-							5
-					);
+		// the Parcels where objects moved up to the snapshot that is drawn
+		int cells[];
+		synchronized (publisher) {
+			cells = mDirtyRegion.take();
+			mSnapshot = publisher.getSnapshot();
+		}
+		if ((mSnapshot == null) || (mSnapshot.getMap() != mDirtyMap)) {
+			// wait for a snapshot of this map, the region started out dirty anyway
+			mDirtyRegion.invalidateAll();
+			mSnapshot = null;
+			return;
+		}
+		if (!mbTilesLoaded) {
+			// the chunks may have been drawn with tiles that weren't loaded
+			mTerrainRegion.invalidateAll();
+			mbTilesLoaded = mGame.rm.isTileSetsLoaded();
+		}
+		validateBackBuffer();
+		ParcelMap parcels = mDirtyMap.getParcelMap();
+		Vector rects = updateTerrain();
+		Rectangle view = new Rectangle(mnScrollX, mnScrollY, mBackBufferImg.getWidth(null), mBackBufferImg.getHeight(null));
+		// draw in map coordinates
+		Graphics g = mBackBufferGfx.create();
+		g.translate(-mnScrollX, -mnScrollY);
+		if ((rects == null) || (cells == null) || mbRedrawAll) {
+			mbRedrawAll = false;
+			drawView(g, view);
+			g.dispose();
+			// update screen
+			repaint();
+			return;
+		}
+		// the changed terrain, and where the objects were and are now
+		for (int i = 0; i < cells.length; i++) {
+			rects.addElement(getObjectBounds(cells[i] % parcels.getWidth(), cells[i] / parcels.getWidth()));
+		}
+		Vector visible = new Vector();
+		for (int i = 0; i < rects.size(); i++) {
+			Rectangle r = view.intersection((Rectangle)rects.elementAt(i));
+			if (!r.isEmpty()) {
+				visible.addElement(r);
+			}
+		}
+		if (visible.isEmpty()) {
+			g.dispose();
+			return;
+		}
+		visible = merge(visible);
+		Rectangle changed = null;
+		for (int i = 0; i < visible.size(); i++) {
+			Rectangle r = (Rectangle)visible.elementAt(i);
+			g.setClip(r.x, r.y, r.width, r.height);
+			drawView(g, r);
+			if (changed == null) {
+				changed = new Rectangle(r);
+			} else {
+				changed.add(r);
+			}
+		}
+		g.dispose();
+		// update the changed part of the screen
+		repaint(getInsets().left + changed.x - mnScrollX, getInsets().top + changed.y - mnScrollY, changed.width, changed.height);
+	}
+
+
+	/**
+	 *  Draws a part of the map: the terrain from the chunks and the objects
+	 *  on top of it
+	 *
+	 *@param  g  Reference to the Graphics context to draw in, in map coordinates and clipped to the rectangle
+	 *@param  r  The part of the map
+	 */
+	void drawView(Graphics g, Rectangle r) {
+		int xMin = (int)Math.floor((double)r.x / CHUNK_SIZE);
+		int xMax = (int)Math.floor((double)(r.x + r.width - 1) / CHUNK_SIZE);
+		int yMin = (int)Math.floor((double)r.y / CHUNK_SIZE);
+		int yMax = (int)Math.floor((double)(r.y + r.height - 1) / CHUNK_SIZE);
+		for (int y = yMin; y <= yMax; y++) {
+			for (int x = xMin; x <= xMax; x++) {
+				g.drawImage(getChunk(x, y), x * CHUNK_SIZE, y * CHUNK_SIZE, null);
+			}
+		}
+		drawParcels(g, r, true);
+	}
+
+
+	/**
+	 *  Gets a chunk of terrain, it's drawn if it isn't in the cache
+	 *
+	 *@param  _x  The column of the chunk
+	 *@param  _y  The row of the chunk
+	 *@return     The chunk
+	 */
+	BufferedImage getChunk(int _x, int _y) {
+		BufferedImage chunk = mChunks.get(_x, _y);
+		if (chunk == null) {
+			chunk = new BufferedImage(CHUNK_SIZE, CHUNK_SIZE, BufferedImage.TYPE_INT_RGB);
+			Rectangle r = new Rectangle(_x * CHUNK_SIZE, _y * CHUNK_SIZE, CHUNK_SIZE, CHUNK_SIZE);
+			Graphics2D g = chunk.createGraphics();
+			g.setBackground(BG_COLOR);
+			g.translate(-r.x, -r.y);
+			g.clearRect(r.x, r.y, r.width, r.height);
+			drawParcels(g, r, false);
+			g.dispose();
+			mChunks.put(_x, _y, chunk);
+		}
+		return chunk;
+	}
+
+
+	/**
+	 *  Draws the cached chunks again where Parcels changed
+	 *
+	 *@return    The parts of the map that changed, or null if all of it changed
+	 */
+	Vector updateTerrain() {
+		ParcelMap parcels = mDirtyMap.getParcelMap();
+		int cells[] = mTerrainRegion.take();
+		if ((cells == null) || (mvDrawnHeights == null)) {
+			// the chunks are drawn again when they are needed
+			mChunks.clear();
+			mvDrawnHeights = new int[parcels.getWidth() * parcels.getHeight()];
+			mnMinHeight = mnMaxHeight = 0;
+			for (int y = 0; y < parcels.getHeight(); y++) {
+				for (int x = 0; x < parcels.getWidth(); x++) {
+					int h = parcels.getBaseHeight(x, y);
+					mvDrawnHeights[y * parcels.getWidth() + x] = h;
+					mnMinHeight = Math.min(mnMinHeight, h);
+					mnMaxHeight = Math.max(mnMaxHeight, h);
+				}
+			}
+			return null;
+		}
+		// work out all rectangles first, a raised Parcel can cover Parcels further away
+		Vector rects = new Vector();
+		for (int i = 0; i < cells.length; i++) {
+			int x = cells[i] % parcels.getWidth();
+			int y = cells[i] / parcels.getWidth();
+			int h = parcels.getBaseHeight(x, y);
+			mnMinHeight = Math.min(mnMinHeight, h);
+			mnMaxHeight = Math.max(mnMaxHeight, h);
+			// where the Parcel was and where it is now
+			Rectangle r = getTileBounds(x, y, mvDrawnHeights[cells[i]]);
+			r.add(getTileBounds(x, y, h));
+			rects.addElement(r);
+			mvDrawnHeights[cells[i]] = h;
+		}
+		rects = merge(rects);
+		for (int i = 0; i < rects.size(); i++) {
+			Rectangle r = (Rectangle)rects.elementAt(i);
+			// only the chunks in the cache, the others are drawn when they are needed
+			int xMin = (int)Math.floor((double)r.x / CHUNK_SIZE);
+			int xMax = (int)Math.floor((double)(r.x + r.width - 1) / CHUNK_SIZE);
+			int yMin = (int)Math.floor((double)r.y / CHUNK_SIZE);
+			int yMax = (int)Math.floor((double)(r.y + r.height - 1) / CHUNK_SIZE);
+			for (int cy = yMin; cy <= yMax; cy++) {
+				for (int cx = xMin; cx <= xMax; cx++) {
+					BufferedImage chunk = mChunks.get(cx, cy);
+					if (chunk != null) {
+						Graphics2D g = chunk.createGraphics();
+						g.setBackground(BG_COLOR);
+						g.translate(-cx * CHUNK_SIZE, -cy * CHUNK_SIZE);
+						g.setClip(r.x, r.y, r.width, r.height);
+						g.clearRect(r.x, r.y, r.width, r.height);
+						drawParcels(g, r, false);
+						g.dispose();
+					}
+				}
+			}
+		}
+		return rects;
+	}
+
+
+	/**
+	 *  Merges rectangles that overlap, so that what they cover is drawn once
+	 *
+	 *@param  _rects  The rectangles, which are changed
+	 *@return         The rectangles that don't overlap anymore
+	 */
+	static Vector merge(Vector _rects) {
+		Vector merged = new Vector();
+		for (int i = 0; i < _rects.size(); i++) {
+			Rectangle r = (Rectangle)_rects.elementAt(i);
+			for (int j = 0; j < merged.size(); ) {
+				Rectangle other = (Rectangle)merged.elementAt(j);
+				if (r.intersects(other)) {
+					r.add(other);
+					merged.removeElementAt(j);
+					// the bigger rectangle may overlap the ones before
+					j = 0;
+				} else {
+					j++;
+				}
+			}
+			merged.addElement(r);
+		}
+		return merged;
+	}
+
+
+	/**
+	 *  Draws the terrain or the objects of the Parcels that overlap a rectangle
+	 *
+	 *@param  g        Reference to the Graphics context to draw in, clipped to the rectangle
+	 *@param  r        The rectangle
+	 *@param  objects  True to draw the objects, false to draw the terrain
+	 */
+	void drawParcels(Graphics g, Rectangle r, boolean objects) {
+		float hw = mGame.rm.getTileWidth() / 2;
+		// half width
+		float hh = mGame.rm.getTileHeight() / 2;
+		// half height
+		float q = hh / 2;
+		// the height of a step in y - x
+		int h2 = mnWorldHeight / 2;
+		if (objects) {
+			// the Parcels whose objects can overlap the rectangle
+			drawParcels(g, r,
+					(int)Math.floor((r.x - OBJECT_SIZE) / hw) - 3,
+					(int)Math.ceil((r.x + r.width) / hw) + 1,
+					(int)Math.floor((r.y - OBJECT_SIZE - h2) / q) - 2,
+					(int)Math.ceil((r.y + r.height - h2) / q) + 2,
+					true
+			);
+		} else {
+			// the Parcels whose terrain can overlap the rectangle, for every base height on the map
+			drawParcels(g, r,
+					(int)Math.floor((r.x - mGame.rm.getTileWidth()) / hw) - 1,
+					(int)Math.ceil((r.x + r.width) / hw) + 1,
+					(int)Math.floor((r.y - mGame.rm.getTileHeight() - h2 + hh) / q) + mnMinHeight - 1,
+					(int)Math.ceil((r.y + r.height - h2 + hh) / q) + mnMaxHeight + 1,
+					false
+			);
+		}
+	}
+
+
+	/**
+	 *  Draws the terrain or the objects of the Parcels with x + y from sMin to
+	 *  sMax and y - x from dMin to dMax that overlap a rectangle, in the same
+	 *  order as the whole map is drawn
+	 *
+	 *@param  g        Reference to the Graphics context of the back buffer
+	 *@param  r        The rectangle
+	 *@param  sMin     The smallest x + y
+	 *@param  sMax     The largest x + y
+	 *@param  dMin     The smallest y - x
+	 *@param  dMax     The largest y - x
+	 *@param  objects  True to draw the objects, false to draw the terrain
+	 */
+	void drawParcels(Graphics g, Rectangle r, int sMin, int sMax, int dMin, int dMax, boolean objects) {
+		ParcelMap parcels = mDirtyMap.getParcelMap();
+		int xMin = Math.max(0, (sMin - dMax) / 2 - 1);
+		int xMax = Math.min(parcels.getWidth() - 1, (sMax - dMin) / 2 + 1);
+		for (int x = xMin; x <= xMax; x++) {
+			int yMin = Math.max(0, Math.max(sMin - x, dMin + x));
+			int yMax = Math.min(parcels.getHeight() - 1, Math.min(sMax - x, dMax + x));
+			for (int y = yMin; y <= yMax; y++) {
+				if (objects) {
+					if (r.intersects(getObjectBounds(x, y))) {
+						drawObjects(g, x, y);
+					}
+				} else if (r.intersects(getTileBounds(x, y, parcels.getBaseHeight(x, y)))) {
+					drawParcel(g, x, y);
 				}
-				// for objects
 			}
 			// for y
 		}
 		// for x
-		// update screen
-		repaint();
+	}
+
+
+	/**
+	 *  Draws the terrain of a Parcel
+	 *
+	 *@param  g  Reference to the Graphics context the terrain should be drawn in
+	 *@param  x  The x coordinate of the Parcel in the ParcelMap
+	 *@param  y  The y coordinate of the Parcel in the ParcelMap
+	 */
+	void drawParcel(Graphics g, int x, int y) {
+		ParcelMap parcels = mDirtyMap.getParcelMap();
+		int h = parcels.getBaseHeight(x, y);
+		Terrain terrain = parcels.getTerrain(x, y);
+		if (terrain != null) {
+			DrawParcelTerrain(g, x, y, h, terrain);
+		}
+	}
+
+
+	/**
+	 *  Draws the objects on a Parcel
+	 *
+	 *@param  g  Reference to the Graphics context the objects should be drawn in
+	 *@param  x  The x coordinate of the Parcel in the ParcelMap
+	 *@param  y  The y coordinate of the Parcel in the ParcelMap
+	 */
+	void drawObjects(Graphics g, int x, int y) {
+		for (int i = mSnapshot.getFirstObject(x, y); i < mSnapshot.getEndObject(x, y); i++) {
+			DrawObject(
+					g,
+					mSnapshot.getX(i) / mDirtyMap.mParcelWidth,
+					mSnapshot.getY(i) / mDirtyMap.mParcelHeight,
+					OBJECT_SIZE
+			);
+		}
+		// for objects
+	}
+
+
+	/**
+	 *  Gets the part of the map the terrain of a Parcel covers
+	 *
+	 *@param  x  The x coordinate of the Parcel in the ParcelMap
+	 *@param  y  The y coordinate of the Parcel in the ParcelMap
+	 *@param  h  The base-height of the Parcel
+	 *@return    The rectangle
+	 */
+	Rectangle getTileBounds(int x, int y, int h) {
+		float hw = mGame.rm.getTileWidth() / 2;
+		// half width
+		float hh = mGame.rm.getTileHeight() / 2;
+		// half height
+		int left = Math.round((x * hw) + (y * hw));
+		int top = Math.round(
+				(mnWorldHeight / 2) - hh -
+				(x * hh / 2) +
+				((y - h) * hh / 2)
+		);
+		return new Rectangle(left, top, mGame.rm.getTileWidth(), mGame.rm.getTileHeight());
+	}
+
+
+	/**
+	 *  Gets the part of the map the objects on a Parcel can cover
+	 *
+	 *@param  x  The x coordinate of the Parcel in the ParcelMap
+	 *@param  y  The y coordinate of the Parcel in the ParcelMap
+	 *@return    The rectangle
+	 */
+	Rectangle getObjectBounds(int x, int y) {
+		float hw = mGame.rm.getTileWidth() / 2;
+		// half width
+		float hh = mGame.rm.getTileHeight() / 2;
+		// half height
+		// see DrawObject(), with a pixel to spare for the rounding
+		int left = Math.round(x * hw) + Math.round(y * hw) - 1;
+		int top = (mnWorldHeight / 2) - Math.round((x + 1) * hh / 2) + Math.round(y * hh / 2) - 1;
+		return new Rectangle(left, top, Math.round(2 * hw) + OBJECT_SIZE + 3, Math.round(hh) + OBJECT_SIZE + 3);
+	}
+
+
+	/**
+	 *  Handles mouse pressed events, starts dragging the map
+	 *
+	 *@param  e  The event to process
+	 */
+	public void mousePressed(MouseEvent e) {
+		mDragStart = e.getPoint();
+		mnDragScrollX = mnScrollX;
+		mnDragScrollY = mnScrollY;
+	}
+
+
+	/**
+	 *  Handles mouse drag events, scrolls the map along with the mouse
+	 *
+	 *@param  e  The event to process
+	 */
+	public void mouseDragged(MouseEvent e) {
+		if (mDragStart != null) {
+			scrollTo(mnDragScrollX - (e.getX() - mDragStart.x), mnDragScrollY - (e.getY() - mDragStart.y));
+		}
+	}
+
+
+	/**
+	 *  Handles mouse release events
+	 *
+	 *@param  e  The event to process
+	 */
+	public void mouseReleased(MouseEvent e) {
+		mDragStart = null;
+	}
+
+
+	/**
+	 *  Handles mouse move events
+	 *
+	 *@param  e  The event to process
+	 */
+	public void mouseMoved(MouseEvent e) {
+	}
+
+
+	/**
+	 *  Handles mouse clicked events
+	 *
+	 *@param  e  The event to process
+	 */
+	public void mouseClicked(MouseEvent e) {
+	}
+
+
+	/**
+	 *  Handles mouse enter events
+	 *
+	 *@param  e  The event to process
+	 */
+	public void mouseEntered(MouseEvent e) {
+	}
+
+
+	/**
+	 *  Handles mouse exit events
+	 *
+	 *@param  e  The event to process
+	 */
+	public void mouseExited(MouseEvent e) {
 	}
 
 
@@ -321,7 +892,7 @@ class IsometricViewport extends Frame {
  *
  *@created    5 november 2002
  */
-class IsometricEditViewport extends IsometricViewport implements KeyListener, MouseListener {
+class IsometricEditViewport extends IsometricViewport implements KeyListener {
 	boolean mbFlashOn = false;
 	long mlFlashSwitchTime = 0;
 	int mnCursorX = 0, mnCursorY = 0;
@@ -337,7 +908,6 @@ class IsometricEditViewport extends IsometricViewport implements KeyListener, Mo
 	IsometricEditViewport(Universe _game, IsometricDataSource _source) {
 		super(_game, _source);
 		this.addKeyListener(this);
-		this.addMouseListener(this);
 	}
 
 
@@ -360,57 +930,73 @@ class IsometricEditViewport extends IsometricViewport implements KeyListener, Mo
 
 
 	/**
-	 *  Draws the current map to the back buffer
+	 *  Draws the current map to the back buffer, with a flashing cursor
 	 */
 	public void updateMap() {
-		Rectangle r = mBackBufferGfx.getClipBounds();
-		if (r != null) {
-			mBackBufferGfx.clearRect(r.x, r.y, r.width, r.height);
-		}
-		// TODO: Clear entire bg if r == null
-
-		for (int x = 0; x < mSource.mMap.getParcelMap().getWidth(); x++) {
-			for (int y = 0; y < mSource.mMap.getParcelMap().getWidth(); y++) {
-				if (mbFlashOn || x != mnCursorX || y != mnCursorY) {
-					Parcel p = mSource.mMap.getParcelMap().getParcel(x, y);
-					DrawParcelTerrain(
-							mBackBufferGfx,
-							x,
-							y,
-							p.getBaseHeight(),
-							p.getTerrain()
-					);
-					float hw = mGame.rm.getTileWidth() / 2;
-					// half width
-					float hh = mGame.rm.getTileHeight() / 2;
-					// half height
-					int left = Math.round((x * hw) + (y * hw));
-					int top = Math.round(
-							(mBackBufferImg.getHeight(null) / 2) - hh -
-							(x * hh / 2) +
-							((y - p.getBaseHeight()) * hh / 2)
-					);
-					if (x == mnCursorX && y == mnCursorY) {
-						mBackBufferGfx.setColor(Color.white);
-						mBackBufferGfx.drawOval(
-								left + mGame.rm.getTileWidth() / 2 - 1,
-								top + mGame.rm.getTileHeight() / 2 - 1,
-								3,
-								3
-						);
-					}
-				}
-			}
-			// for y
-		}
-		// for x
 		if (System.currentTimeMillis() - mlFlashSwitchTime > FLASH_INTERVAL) {
 			mbFlashOn = !mbFlashOn;
 			mlFlashSwitchTime = System.currentTimeMillis();
+			invalidateCursor();
 		}
+		super.updateMap();
+	}
+
 
-		// update screen
-		repaint();
+	/**
+	 *  Draws the terrain of a Parcel, and the cursor if it's on the Parcel
+	 *
+	 *@param  g  Reference to the Graphics context the terrain should be drawn in
+	 *@param  x  The x coordinate of the Parcel in the ParcelMap
+	 *@param  y  The y coordinate of the Parcel in the ParcelMap
+	 */
+	void drawParcel(Graphics g, int x, int y) {
+		if (mbFlashOn || x != mnCursorX || y != mnCursorY) {
+			super.drawParcel(g, x, y);
+			if (x == mnCursorX && y == mnCursorY) {
+				Rectangle r = getTileBounds(x, y, mDirtyMap.getParcelMap().getBaseHeight(x, y));
+				g.setColor(Color.white);
+				g.drawOval(
+						r.x + mGame.rm.getTileWidth() / 2 - 1,
+						r.y + mGame.rm.getTileHeight() / 2 - 1,
+						3,
+						3
+				);
+			}
+		}
+	}
+
+
+	/**
+	 *  Doesn't draw the objects, they would be in the way when editing
+	 *
+	 *@param  g  Reference to the Graphics context the objects should be drawn in
+	 *@param  x  The x coordinate of the Parcel in the ParcelMap
+	 *@param  y  The y coordinate of the Parcel in the ParcelMap
+	 */
+	void drawObjects(Graphics g, int x, int y) {
+	}
+
+
+	/**
+	 *  Moves the cursor to a Parcel, and scrolls the window to show it
+	 *
+	 *@param  _x  The x coordinate of the Parcel in the ParcelMap
+	 *@param  _y  The y coordinate of the Parcel in the ParcelMap
+	 */
+	void moveCursor(int _x, int _y) {
+		invalidateCursor();
+		mnCursorX = _x;
+		mnCursorY = _y;
+		invalidateCursor();
+		scrollToShow(getTileBounds(_x, _y, mSource.mMap.getParcelMap().getBaseHeight(_x, _y)));
+	}
+
+
+	// Marks the Parcel under the cursor as dirty, the cursor is part of the terrain
+	void invalidateCursor() {
+		if (mTerrainRegion != null) {
+			mTerrainRegion.invalidate(mnCursorX, mnCursorY);
+		}
 	}
 
 
@@ -425,22 +1011,22 @@ class IsometricEditViewport extends IsometricViewport implements KeyListener, Mo
 		switch (e.getKeyCode()) {
 						case KeyEvent.VK_LEFT:
 							if (mnCursorX > 0) {
-								mnCursorX--;
+								moveCursor(mnCursorX - 1, mnCursorY);
 							}
 							break;
 						case KeyEvent.VK_RIGHT:
 							if (mnCursorX < (mSource.mMap.getParcelMap().getWidth() - 1)) {
-								mnCursorX++;
+								moveCursor(mnCursorX + 1, mnCursorY);
 							}
 							break;
 						case KeyEvent.VK_UP:
 							if (mnCursorY > 0) {
-								mnCursorY--;
+								moveCursor(mnCursorX, mnCursorY - 1);
 							}
 							break;
 						case KeyEvent.VK_DOWN:
 							if (mnCursorY < (mSource.mMap.getParcelMap().getHeight() - 1)) {
-								mnCursorY++;
+								moveCursor(mnCursorX, mnCursorY + 1);
 							}
 							break;
 						case KeyEvent.VK_PAGE_UP:
@@ -465,10 +1051,10 @@ class IsometricEditViewport extends IsometricViewport implements KeyListener, Mo
 							if ((e.getModifiers() & KeyEvent.CTRL_MASK) != 0) {
 								if (e.getKeyCode() == KeyEvent.VK_F) {
 									for (int x = 0; x < mSource.mMap.getParcelMap().getWidth(); x++) {
-										for (int y = 0; y < mSource.mMap.getParcelMap().getWidth(); y++) {
+										for (int y = 0; y < mSource.mMap.getParcelMap().getHeight(); y++) {
 											p = mSource.mMap.getParcelMap().getParcel(x, y);
 											p.setBaseHeight(0);
-											p.getTerrain().setShape(0);
+											p.setTerrain(Terrain.getShapedTerrain(mGame.rm, p.getTerrain().getTileSet(), 0));
 										}
 									}
 								} else if (e.getKeyCode() == KeyEvent.VK_W) {
@@ -484,10 +1070,13 @@ class IsometricEditViewport extends IsometricViewport implements KeyListener, Mo
 								p = mSource.mMap.getParcelMap().getParcel(mnCursorX, mnCursorY);
 								int nShape = (int)e.getKeyChar() - (int)'a';
 								if ((nShape >= 0) && (nShape <= 24)) {
-									p.getTerrain().setShape(nShape);
+									p.setTerrain(Terrain.getShapedTerrain(mGame.rm, p.getTerrain().getTileSet(), nShape));
 								}
 								int nTileSet = (int)e.getKeyChar() - (int)'0';
-								p.getTerrain().setTileSet(nTileSet);
+								Terrain terrain = Terrain.getShapedTerrain(mGame.rm, nTileSet, p.getTerrain().getShape());
+								if (terrain != null) {
+									p.setTerrain(terrain);
+								}
 							}
 							break;
 		}
@@ -514,69 +1103,20 @@ class IsometricEditViewport extends IsometricViewport implements KeyListener, Mo
 
 
 	/**
-	 *  Handles mouse exit events
-	 *
-	 *@param  e  The event to process
-	 */
-	public void mouseExited(MouseEvent e) {
-	}
-
-
-	/**
-	 *  Handles mouse release events
-	 *
-	 *@param  e  The event to process
-	 */
-	public void mouseReleased(MouseEvent e) {
-	}
-
-
-	/**
-	 *  Handles mouse pressed events
+	 *  Handles mouse pressed events, moves the cursor to the Parcel under the mouse
 	 *
 	 *@param  e  The event to process
 	 */
 	public void mousePressed(MouseEvent e) {
-		float hw = mGame.rm.getTileWidth() / 2;
-		// half width
-		float hh = mGame.rm.getTileHeight() / 2;
-		// half height
-		/*
-		 *  int   left   = Math.round((x*hw) + (y*hw));
-		 *  int   top    = Math.round(
-		 *  (img.getHeight(null) / 2) - hh -
-		 *  (x * hh / 2) +
-		 *  ((y - h) * hh / 2)
-		 *  );
-		 */
-		/*
-		 *  Point parcelPoint = mSource.mMap.gameXYToParcelXY(mouseEvent.getX(), mouseEvent.getY());
-		 *  mnCursorX = (int)Math.round(parcelPoint.getX());
-		 *  mnCursorY = (int)Math.round(parcelPoint.getY());
-		 */
-		mnCursorX = (int)Math.round(e.getX() / hw - e.getY() / hh);
-		mnCursorY = (int)Math.round(e.getY() / hh);
+		super.mousePressed(e);
+		Point p = getParcelAt(e.getX(), e.getY());
+		ParcelMap parcels = mSource.mMap.getParcelMap();
+		if ((p.x >= 0) && (p.x < parcels.getWidth()) && (p.y >= 0) && (p.y < parcels.getHeight())) {
+			moveCursor(p.x, p.y);
+		}
 		Logger.log("cursor = (" + mnCursorX + ", " + mnCursorY + ")");
 	}
 
-
-	/**
-	 *  Handles mouse clicked events
-	 *
-	 *@param  e  The event to process
-	 */
-	public void mouseClicked(MouseEvent e) {
-	}
-
-
-	/**
-	 *  Handles mouse enter events
-	 *
-	 *@param  e  The event to process
-	 */
-	public void mouseEntered(MouseEvent e) {
-	}
-
 }
 
 /*
@@ -0,0 +1,183 @@
+/*
+ *  JumpPointBenchmark.java
+ */
+
+import java.util.Random;
+
+/**
+ *  Compares plain A* with Jump Point Search (see GridAStar) on a few kinds
+ *  of maps: the number of cells they expand and the time they take for the
+ *  same paths. Every map is searched a number of times to warm up the JIT
+ *  before it's measured, and the path costs are summed into a checksum so
+ *  the JIT can't skip the work.
+ *  <br>
+ *  Usage: java JumpPointBenchmark [size] [paths] [warmup runs] [measured runs]
+ *
+ *@created    18 october 2026
+ */
+public class JumpPointBenchmark {
+	int mnSize;
+	int mnPaths;
+	int mnWarmup;
+	int mnRuns;
+	double mdChecksum = 0;
+
+
+	/**
+	 *  Constructor for the JumpPointBenchmark object
+	 *
+	 *@param  _size    The width and height of the generated maps in cells
+	 *@param  _paths   The number of paths searched per run
+	 *@param  _warmup  The number of runs before measuring
+	 *@param  _runs    The number of measured runs
+	 */
+	JumpPointBenchmark(int _size, int _paths, int _warmup, int _runs) {
+		mnSize = _size;
+		mnPaths = _paths;
+		mnWarmup = _warmup;
+		mnRuns = _runs;
+	}
+
+
+	/**
+	 *  The costs of a generated map, kept in an array
+	 */
+	static class ArrayCellCost implements CellCost {
+		int mnWidth;
+		double mvCosts[];
+
+		ArrayCellCost(int _width, int _height) {
+			mnWidth = _width;
+			mvCosts = new double[_width * _height];
+		}
+
+		public double getCost(int _x, int _y) {
+			return mvCosts[_y * mnWidth + _x];
+		}
+	}
+
+
+	/**
+	 *  A map where every cell costs the same
+	 *
+	 *@return    The map
+	 */
+	ArrayCellCost createOpenMap() {
+		ArrayCellCost map = new ArrayCellCost(mnSize, mnSize);
+		java.util.Arrays.fill(map.mvCosts, 1);
+		return map;
+	}
+
+
+	/**
+	 *  A map where every cell costs the same, but a part of them can't be entered
+	 *
+	 *@param  _percent  The percentage of cells that can't be entered
+	 *@return           The map
+	 */
+	ArrayCellCost createObstacleMap(int _percent) {
+		ArrayCellCost map = createOpenMap();
+		Random random = new Random(42);
+		for (int i = 0; i < map.mvCosts.length; i++) {
+			if (random.nextInt(100) < _percent) {
+				map.mvCosts[i] = Double.POSITIVE_INFINITY;
+			}
+		}
+		return map;
+	}
+
+
+	/**
+	 *  Searches the same paths with A* and with Jump Point Search, and prints
+	 *  how many cells each expanded and how long it took
+	 *
+	 *@param  _name    The name of the map
+	 *@param  _width   The width of the map in cells
+	 *@param  _height  The height of the map in cells
+	 *@param  _cost    The costs of the map
+	 */
+	void measure(String _name, int _width, int _height, CellCost _cost) {
+		Random random = new Random(42);
+		int paths[] = new int[4 * mnPaths];
+		for (int i = 0; i < mnPaths; i++) {
+			// start and goal in cells that can be entered
+			for (int j = 0; j < 2; j++) {
+				int x, y;
+				do {
+					x = random.nextInt(_width);
+					y = random.nextInt(_height);
+				} while (_cost.getCost(x, y) == Double.POSITIVE_INFINITY);
+				paths[4 * i + 2 * j] = x;
+				paths[4 * i + 2 * j + 1] = y;
+			}
+		}
+		GridAStar engine = new GridAStar(_width, _height);
+		for (int i = 0; i < mnWarmup; i++) {
+			run(engine, paths, _cost, false);
+			run(engine, paths, _cost, true);
+		}
+		long expanded[] = new long[2];
+		long best[] = {Long.MAX_VALUE, Long.MAX_VALUE};
+		for (int i = 0; i < mnRuns; i++) {
+			for (int jump = 0; jump < 2; jump++) {
+				long start = System.nanoTime();
+				expanded[jump] = run(engine, paths, _cost, jump == 1);
+				best[jump] = Math.min(best[jump], System.nanoTime() - start);
+			}
+		}
+		System.out.println(
+			_name + " (" + _width + "x" + _height + ")" +
+			"\t: A* expanded " + expanded[0] + " cells in " + best[0] / 1000 + " usec" +
+			", JPS " + expanded[1] + " cells in " + best[1] / 1000 + " usec" +
+			", " + Math.round(10.0 * expanded[0] / Math.max(1, expanded[1])) / 10.0 + " times fewer cells"
+		);
+	}
+
+
+	// Searches all paths once, returns the number of cells expanded
+	long run(GridAStar _engine, int _paths[], CellCost _cost, boolean _jump) {
+		long expanded = 0;
+		for (int i = 0; i < mnPaths; i++) {
+			int path[] = _engine.findPath(_paths[4 * i], _paths[4 * i + 1], _paths[4 * i + 2], _paths[4 * i + 3], _cost, 1, _jump);
+			if (path != null) {
+				mdChecksum += GridAStar.getPathCost(path, _engine.mnWidth, _cost, 1);
+			}
+			expanded += _engine.getExpandedCount();
+		}
+		return expanded;
+	}
+
+
+	/**
+	 *  Runs all maps
+	 */
+	void run() {
+		System.out.println("A* and JPS, " + mnPaths + " paths per map, " + mnWarmup + " warmup runs, " + mnRuns + " measured runs");
+		measure("open map", mnSize, mnSize, createOpenMap());
+		measure("5% blocked", mnSize, mnSize, createObstacleMap(5));
+		measure("20% blocked", mnSize, mnSize, createObstacleMap(20));
+		GameMap map = new Universe("Terrain.map").getMap();
+		if (map != null) {
+			ParcelMap parcels = map.getParcelMap();
+			measure("Terrain.map", parcels.getWidth(), parcels.getHeight(), new CellCostSnapshot(map));
+		}
+		System.out.println("(checksum " + mdChecksum + ")");
+	}
+
+
+	/**
+	 *  Entry point of the benchmark
+	 *
+	 *@param  args  [size] [paths] [warmup runs] [measured runs]
+	 */
+	public static void main(String args[]) {
+		if (System.getProperty("java.awt.headless") == null) {
+			System.setProperty("java.awt.headless", "true");
+		}
+		int size = (args.length > 0) ? Integer.parseInt(args[0]) : 256;
+		int paths = (args.length > 1) ? Integer.parseInt(args[1]) : 100;
+		int warmup = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+		int runs = (args.length > 3) ? Integer.parseInt(args[3]) : 5;
+		new JumpPointBenchmark(size, paths, warmup, runs).run();
+	}
+}
@@ -9,6 +9,26 @@
  *@created    5 november 2002
  */
 class Logger {
+	static boolean mbEnabled = true;
+
+	/**
+	 *  Turns the log on or off
+	 *
+	 *@param  _enabled  False to drop all messages
+	 */
+	public static void setEnabled(boolean _enabled) {
+		mbEnabled = _enabled;
+	}
+
+	/**
+	 *  Checks whether the log is on, so that messages which are costly to
+	 *  put together can be skipped
+	 *
+	 *@return    True if messages are written
+	 */
+	public static boolean isEnabled() {
+		return mbEnabled;
+	}
 
 	/**
 	 *  Writes a message to the log
@@ -16,11 +36,15 @@ class Logger {
 	 *@param  _msg  The message to write to the log
 	 */
 	public static void log(String _msg) {
-		System.out.println(_msg);
+		if (mbEnabled) {
+			System.out.println(_msg);
+		}
 	}
 	
 	public static void info(String _msg) {
-		System.out.println(_msg);
+		if (mbEnabled) {
+			System.out.println(_msg);
+		}
 	}
 
 }
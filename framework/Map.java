@@ -1,6 +1,9 @@
 
 import java.util.Vector;
 import java.util.Enumeration;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 import java.awt.Point;
 
 import util.*;
@@ -26,60 +29,119 @@ interface Map {
 }
 
 
+// A Parcel is a view on one position of a ParcelMap, the data itself
+// is stored in the ParcelMap. So two Parcel objects can stand for the
+// same position: compare them with equals(), not with ==.
 class Parcel {
 	
-	protected Terrain m_terrain;
-	protected int m_nHeight;
+	protected ParcelMap mMap;
+	protected int mnX, mnY;		// Position of the Parcel in the ParcelMap
 	
-	protected Vector mObjectStack;
+	Parcel(ParcelMap _map, int _x, int _y) {
+		mMap = _map;
+		mnX = _x;
+		mnY = _y;
+	}
+	
+	public ParcelMap getParcelMap() {
+		return mMap;
+	}
 	
-	Parcel() {
-		mObjectStack = new Vector();
+	public int getX() {
+		return mnX;
+	}
+	
+	public int getY() {
+		return mnY;
+	}
+	
+	// Returns the position of the Parcel in the ParcelMap
+	public Point getPosition() {
+		return new Point(mnX, mnY);
 	}
 	
 	public void addObject(GameObject gobject) {
-		mObjectStack.addElement(gobject);
+		mMap.addObject(mnX, mnY, gobject);
 	}
 	
 	public void removeObject(GameObject gobject) {
-		mObjectStack.removeElement(gobject);
+		mMap.removeObject(mnX, mnY, gobject);
 		//gobject.setParcel(null);
 	}
 	
 	public Enumeration objects() {
-		return mObjectStack.elements();
+		return mMap.objects(mnX, mnY);
+	}
+	
+	// Returns the object at _index, or null if the Parcel has fewer objects.
+	// Can be used to walk the objects while they are moving.
+	public GameObject getObject(int _index) {
+		return mMap.getObject(mnX, mnY, _index);
 	}
 	
 	public Terrain getTerrain() {
-		return m_terrain;
+		return mMap.getTerrain(mnX, mnY);
 	}
 	
 	public void setTerrain(Terrain _terrain) {
-		m_terrain = _terrain;
+		mMap.setTerrain(mnX, mnY, _terrain);
 	}
 	
 	public int getBaseHeight() {
-		return m_nHeight;
+		return mMap.getBaseHeight(mnX, mnY);
 	}
 	
 	public void setBaseHeight(int _nHeight) {
-		m_nHeight = _nHeight;
+		mMap.setBaseHeight(mnX, mnY, _nHeight);
+	}
+	
+	public boolean equals(Object _obj) {
+		if (!(_obj instanceof Parcel)) {
+			return false;
+		}
+		Parcel parcel = (Parcel)_obj;
+		return (parcel.mMap == mMap) && (parcel.mnX == mnX) && (parcel.mnY == mnY);
+	}
+	
+	public int hashCode() {
+		return mnY * mMap.getWidth() + mnX;
+	}
+	
+	public String toString() {
+		return "Parcel ("+mnX+", "+mnY+")";
 	}
 }
 
 
+// Stores the Parcels in arrays of primitives, one element per Parcel.
+// The Terrain of a Parcel is stored as its tile set and shape, the
+// Terrain object for every (tile set, shape) is kept in a palette.
+// A Parcel only gets a Vector for its objects once an object enters it.
 class ParcelMap {
-	protected Parcel mvParcels[][];
+	public static final int NO_TILESET = -1;		// Tile set of a Parcel without Terrain
+	public static final int MAX_TILESETS = 128;
+	public static final int MAX_SHAPES = 128;
+	
 	protected int mMapWidth;
 	protected int mMapHeight;
+	protected byte mvTileSets[];			// Indexed by y * width + x, like the other arrays
+	protected byte mvShapes[];
+	protected short mvHeights[];
+	protected Vector mvObjectStacks[];
+	protected Terrain mvPalette[][];		// Terrain by tile set and shape
+	protected Vector mListeners = new Vector();	// Notified when the Terrain or height of a Parcel changes
+	protected volatile long mlVersion = 0;		// Goes up with every change of Terrain or height
 	
 	ParcelMap(int _mapWidth, int _mapHeight) {
 		mMapWidth = _mapWidth;
 		mMapHeight = _mapHeight;
-		mvParcels = new Parcel[_mapWidth][_mapHeight];
-		for (int x=0; x < mvParcels.length; x++)
-			for (int y=0; y<mvParcels[x].length; y++)
-				mvParcels[x][y] = new Parcel();
+		int nSize = _mapWidth * _mapHeight;
+		mvTileSets = new byte[nSize];
+		mvShapes = new byte[nSize];
+		mvHeights = new short[nSize];
+		mvObjectStacks = new Vector[nSize];
+		mvPalette = new Terrain[MAX_TILESETS][];
+		java.util.Arrays.fill(mvTileSets, (byte)NO_TILESET);
 	}
 	
 	public int getWidth() {
@@ -91,11 +153,122 @@ class ParcelMap {
 	}
 	
 	public Parcel getParcel(int posX, int posY) {
-		if ((posX >=0) && (posX < mMapWidth) && (posY >= 0) && (posY <= mMapHeight))
-			return mvParcels[posX][posY];
+		if ((posX >=0) && (posX < mMapWidth) && (posY >= 0) && (posY < mMapHeight))
+			return new Parcel(this, posX, posY);
 		else
 			return null;
 	}
+	
+	public Terrain getTerrain(int _x, int _y) {
+		int i = _y * mMapWidth + _x;
+		int nTileSet = mvTileSets[i];
+		return (nTileSet != NO_TILESET) ? mvPalette[nTileSet][mvShapes[i]] : null;
+	}
+	
+	public void setTerrain(int _x, int _y, Terrain _terrain) {
+		int i = _y * mMapWidth + _x;
+		if (_terrain == null) {
+			mvTileSets[i] = (byte)NO_TILESET;
+			mvShapes[i] = 0;
+			fireParcelChanged(_x, _y);
+			return;
+		}
+		int nTileSet = _terrain.getTileSet();
+		int nShape = _terrain.getShape();
+		if ((nTileSet < 0) || (nTileSet >= MAX_TILESETS) || (nShape < 0) || (nShape >= MAX_SHAPES)) {
+			throw new IllegalArgumentException("Terrain out of range: tile set "+nTileSet+", shape "+nShape);
+		}
+		if (mvPalette[nTileSet] == null) {
+			mvPalette[nTileSet] = new Terrain[MAX_SHAPES];
+		}
+		mvPalette[nTileSet][nShape] = _terrain;
+		mvTileSets[i] = (byte)nTileSet;
+		mvShapes[i] = (byte)nShape;
+		fireParcelChanged(_x, _y);
+	}
+	
+	// Returns the tile set of the Terrain of a Parcel, NO_TILESET if it has no Terrain
+	public int getTileSet(int _x, int _y) {
+		return mvTileSets[_y * mMapWidth + _x];
+	}
+	
+	public int getShape(int _x, int _y) {
+		return mvShapes[_y * mMapWidth + _x];
+	}
+	
+	public int getBaseHeight(int _x, int _y) {
+		return mvHeights[_y * mMapWidth + _x];
+	}
+	
+	public void setBaseHeight(int _x, int _y, int _nHeight) {
+		mvHeights[_y * mMapWidth + _x] = (short)_nHeight;
+		fireParcelChanged(_x, _y);
+	}
+	
+	public void addParcelListener(ParcelListener _listener) {
+		mListeners.addElement(_listener);
+	}
+	
+	public void removeParcelListener(ParcelListener _listener) {
+		mListeners.removeElement(_listener);
+	}
+	
+	// Returns a number that goes up whenever the Terrain or height of a Parcel changes
+	public long getVersion() {
+		return mlVersion;
+	}
+	
+	protected void fireParcelChanged(int _x, int _y) {
+		synchronized (this) {
+			mlVersion++;
+		}
+		if (mListeners.isEmpty()) {
+			return;
+		}
+		ParcelEvent event = new ParcelEvent(this, _x, _y);
+		Object listeners[] = mListeners.toArray();
+		for (int i=0; i < listeners.length; i++) {
+			((ParcelListener)listeners[i]).parcelChanged(event);
+		}
+	}
+	
+	public void addObject(int _x, int _y, GameObject _obj) {
+		getObjectStack(_y * mMapWidth + _x, true).addElement(_obj);
+	}
+	
+	public void removeObject(int _x, int _y, GameObject _obj) {
+		Vector stack = getObjectStack(_y * mMapWidth + _x, false);
+		if (stack != null) {
+			stack.removeElement(_obj);
+		}
+	}
+	
+	public Enumeration objects(int _x, int _y) {
+		Vector stack = getObjectStack(_y * mMapWidth + _x, false);
+		return (stack != null) ? stack.elements() : NO_OBJECTS.elements();
+	}
+	
+	// Returns the object at _index, or null if the Parcel has fewer objects.
+	public GameObject getObject(int _x, int _y, int _index) {
+		Vector stack = getObjectStack(_y * mMapWidth + _x, false);
+		if (stack == null) {
+			return null;
+		}
+		synchronized (stack) {
+			return (_index < stack.size()) ? (GameObject)stack.elementAt(_index) : null;
+		}
+	}
+	
+	private static final Vector NO_OBJECTS = new Vector(0);
+	
+	// The objects of a Parcel, the Vector is created when it's first needed.
+	// Once created it stays, objects tend to come back to where they've been.
+	protected synchronized Vector getObjectStack(int _index, boolean _create) {
+		if ((mvObjectStacks[_index] == null) && _create) {
+			mvObjectStacks[_index] = new Vector(2);
+		}
+		return mvObjectStacks[_index];
+	}
 }
 
 
@@ -122,7 +295,7 @@ class HeightMap {
 }
 
 
-class GameMap implements Map {
+class GameMap implements Map, TickListener {
 	protected HeightMap mHeightMap;
 	protected ParcelMap mParcelMap;
 	protected long mMapWidth;		// Width of map in game units
@@ -132,6 +305,15 @@ class GameMap implements Map {
 	protected int mParcelHeight;	// Height of a Parcel in game units
 	protected int mParcelMapWidth;	// Width of map in Parcels
 	protected int mParcelMapHeight;	// Height of map in Parcels
+	protected SpatialHashGrid mObjectGrid;	// Index of the objects, independent of the Parcel size
+	protected FlowFieldService mFlowFields;	// Created when the first flow field is needed
+	protected ClusterGraph mClusterGraph;	// Created when the first hierarchical path is needed
+	protected PathCache mPathCache;			// Created when the first path is cached
+	protected DangerMap mDangerMap;			// Where objects died
+	protected CostChangeLog mCostChanges;	// Which Parcels changed cost, for searches that keep their costs
+	protected volatile MovementCostGrid mMovementCosts;	// Created when the first cost is needed
+	protected Vector mDirtyRegions = new Vector();		// Told where objects move, for the views
+	protected volatile boolean mbTicking = false;		// Whether a TimerTriggerPool is ticking the map
 	
 	GameMap(long _width, long _height, int _parcelWidth, int _parcelHeight) {
 		mMapWidth = _width;
@@ -142,6 +324,9 @@ class GameMap implements Map {
 		mParcelMapWidth  = (int)(mMapWidth / mParcelWidth);
 		mParcelMapHeight = (int)(mMapHeight / mParcelHeight);
 		mParcelMap = new ParcelMap(mParcelMapWidth, mParcelMapHeight);
+		mObjectGrid = new SpatialHashGrid(mMapWidth, mMapHeight, SpatialHashGrid.DEFAULT_CELL_SIZE);
+		mCostChanges = new CostChangeLog(mParcelMapWidth, CostChangeLog.DEFAULT_SIZE);
+		mDangerMap = new DangerMap(mParcelMapWidth, mParcelMapHeight, mCostChanges);
 	}
 	
 	// Width of map in game units
@@ -160,6 +345,131 @@ class GameMap implements Map {
 		return mParcelMap;
 	}
 	
+	public SpatialHashGrid getObjectGrid() {
+		return mObjectGrid;
+	}
+	
+	public synchronized FlowFieldService getFlowFields() {
+		if (mFlowFields == null) {
+			mFlowFields = new FlowFieldService(this);
+		}
+		return mFlowFields;
+	}
+	
+	public synchronized PathCache getPathCache() {
+		if (mPathCache == null) {
+			mPathCache = new PathCache(PathCache.DEFAULT_SIZE);
+		}
+		return mPathCache;
+	}
+	
+	public DangerMap getDangerMap() {
+		return mDangerMap;
+	}
+	
+	public MovementCostGrid getMovementCosts() {
+		MovementCostGrid costs = mMovementCosts;
+		return (costs != null) ? costs : createMovementCosts();
+	}
+	
+	protected synchronized MovementCostGrid createMovementCosts() {
+		if (mMovementCosts == null) {
+			MovementCostGrid costs = new MovementCostGrid(mParcelMap, Math.min(mParcelWidth, mParcelHeight));
+			mParcelMap.addParcelListener(costs);
+			// after the costs, so that a Parcel is logged when its new cost can be read
+			mParcelMap.addParcelListener(mCostChanges);
+			mMovementCosts = costs;
+		}
+		return mMovementCosts;
+	}
+	
+	// Returns a number that goes up whenever the cost of moving over the Parcels changes
+	public long getCostVersion() {
+		return mParcelMap.getVersion() + mDangerMap.getVersion();
+	}
+	
+	// Returns the log of the Parcels whose cost changed since the costs were first needed
+	public CostChangeLog getCostChanges() {
+		getMovementCosts();
+		return mCostChanges;
+	}
+	
+	public synchronized ClusterGraph getClusterGraph() {
+		if (mClusterGraph == null) {
+			mClusterGraph = new ClusterGraph(this, ClusterGraph.DEFAULT_CLUSTER_SIZE);
+			mParcelMap.addParcelListener(mClusterGraph);
+		}
+		return mClusterGraph;
+	}
+	
+	// Records that an object died on a Parcel. While the map is ticking, the
+	// death only counts from the next tick on: all objects of a tick see the
+	// same costs, in whatever order or on whatever thread they run.
+	public void addDeath(int _x, int _y) {
+		if (mbTicking) {
+			mDangerMap.addPending(_x, _y);
+		} else {
+			mDangerMap.add(_x, _y);
+			deathsChanged(new int[] { _y * mParcelMapWidth + _x });
+		}
+	}
+	
+	// The clusters no longer know the cheapest ways through the Parcels
+	protected void deathsChanged(int _cells[]) {
+		ClusterGraph graph = mClusterGraph;
+		if (graph != null) {
+			for (int i = 0; i < _cells.length; i++) {
+				graph.costChanged(_cells[i] % mParcelMapWidth, _cells[i] / mParcelMapWidth);
+			}
+		}
+	}
+	
+	public void tickStarted(long _tick) {
+		mbTicking = true;
+	}
+	
+	// Counts the deaths of the tick
+	public void tickEnded(long _tick) {
+		int cells[] = mDangerMap.commit();
+		if (cells != null) {
+			deathsChanged(cells);
+		}
+		mbTicking = false;
+	}
+	
+	// Lets _region know which Parcels objects move over and which Parcels change
+	public void addDirtyRegion(DirtyRegion _region) {
+		mDirtyRegions.addElement(_region);
+		mParcelMap.addParcelListener(_region);
+	}
+	
+	public void removeDirtyRegion(DirtyRegion _region) {
+		mDirtyRegions.removeElement(_region);
+		mParcelMap.removeParcelListener(_region);
+	}
+	
+	// Marks the Parcel at _pos as dirty in all DirtyRegions
+	protected void invalidate(FloatPoint _pos) {
+		if ((_pos == null) || mDirtyRegions.isEmpty()) {
+			return;
+		}
+		Point p = gameXYToParcelXY(_pos.x, _pos.y);
+		Object regions[] = mDirtyRegions.toArray();
+		for (int i=0; i < regions.length; i++) {
+			((DirtyRegion)regions[i]).invalidate(p.x, p.y);
+		}
+	}
+	
+	// Returns the objects within _radius game units of _center
+	public Vector getObjectsInRadius(FloatPoint _center, double _radius) {
+		return mObjectGrid.queryRadius(_center.x, _center.y, _radius);
+	}
+	
+	// Returns the objects within the rectangle, in game units
+	public Vector getObjectsInRect(double _left, double _top, double _width, double _height) {
+		return mObjectGrid.queryRect(_left, _top, _width, _height);
+	}
+	
 	public Point gameXYToParcelXY(double _posX, double _posY) {
 		// Go from game coordinates to map coordinates
 		Point p = new Point(
@@ -173,7 +483,7 @@ class GameMap implements Map {
 		// Go from game coordinates to map coordinates
 		Point p = gameXYToParcelXY(_posX, _posY);
 		
-		if ((p.x >=0) && (p.x < mParcelMapWidth) && (p.y >= 0) && (p.y <= mParcelMapHeight))
+		if ((p.x >=0) && (p.x < mParcelMapWidth) && (p.y >= 0) && (p.y < mParcelMapHeight))
 			return mParcelMap.getParcel(p.x, p.y);
 		else
 			return null;
@@ -188,12 +498,9 @@ class GameMap implements Map {
 	}
 	
 	public Point getParcelPosition(Parcel _parcel) {
-		for (int x=0; x < mParcelMapWidth; x++) {
-			for (int y=0; y < mParcelMapHeight; y++) {
-				if (mParcelMap.getParcel(x, y) == _parcel) {
-					return new Point(x, y);
-				}
-			}
+		// Parcels know their own position, just make sure it's one of ours
+		if ((_parcel != null) && (_parcel.getParcelMap() == mParcelMap)) {
+			return _parcel.getPosition();
 		}
 		return null;
 	}
@@ -216,15 +523,27 @@ class GameMap implements Map {
 		return new MapView(this, _centerX, _centerY, _width, _height);
 	}
 
-	public void moveObject(GameObject _obj, FloatPoint _from, FloatPoint _to) {
+	public void moveObject(final GameObject _obj, final FloatPoint _from, final FloatPoint _to) {
+		if (TimerTriggerPool.isDeferring()) {
+			// during a parallel tick the parcels are updated once all objects have moved
+			TimerTriggerPool.defer(new Runnable() {
+				public void run() {
+					moveObject(_obj, _from, _to);
+				}
+			});
+			return;
+		}
+		mObjectGrid.move(_obj, _to);
+		// the object has to be drawn again, even when it stays on the same Parcel
+		invalidate(_from);
+		invalidate(_to);
 		Parcel fromParcel =  getParcel(_from);
 		Parcel toParcel = getParcel(_to);
-		if (fromParcel != toParcel) {
-			// TODO: invalidate fromParcel and toParcel to reduce drawing
+		if ((fromParcel == null) ? (toParcel != null) : !fromParcel.equals(toParcel)) {
 			{
 				String sFrom = (fromParcel != null) ? fromParcel+" ("+fromParcel.getTerrain().getClass().getName()+")" : "<nowhere>" ;
 				String sTo = (toParcel != null) ? toParcel+" ("+toParcel.getTerrain().getClass().getName()+")" : "<nowhere>" ;
-				System.out.println("Moving '"+_obj.getName()+"' from "+sFrom+" to "+sTo);
+				Logger.log("Moving '"+_obj.getName()+"' from "+sFrom+" to "+sTo);
 			}
 			if (fromParcel != null) {
 				fromParcel.removeObject(_obj);
@@ -292,6 +611,11 @@ class MapView implements Map {
 		return new ObjectEnumeration(this, mode);
 	}
 	
+	// Return a GameObject spliterator, which can be split over threads by rows of Parcels
+	public ObjectSpliterator getObjectSpliterator() {
+		return new ObjectSpliterator(this);
+	}
+	
 	public HeightMap getHeightMap() {
 		return mMap.getHeightMap();
 	}
@@ -344,22 +668,7 @@ class MapView implements Map {
 	}
 	
 	public void moveObject(GameObject _obj, FloatPoint _from, FloatPoint _to) {
-		Parcel fromParcel =  getParcel(_from);
-		Parcel toParcel = getParcel(_to);
-		if (fromParcel != toParcel) {
-			// TODO: invalidate fromParcel and toParcel to reduce drawing
-			{
-				String sFrom = (fromParcel != null) ? fromParcel+" ("+fromParcel.getTerrain().getClass().getName()+")" : "<nowhere>" ;
-				String sTo = (toParcel != null) ? toParcel+" ("+toParcel.getTerrain().getClass().getName()+")" : "<nowhere>" ;
-				System.out.println("Moving '"+_obj.getName()+"' from "+sFrom+" to "+sTo);
-			}
-			if (fromParcel != null) {
-				fromParcel.removeObject(_obj);
-			}
-			if (toParcel != null) {
-				toParcel.addObject(_obj);
-			}
-		}
+		mMap.moveObject(_obj, _from, _to);
 	}
 
 }
@@ -465,8 +774,10 @@ class ParcelEnumeration implements Enumeration {
 
 
 class ObjectEnumeration implements Enumeration {
-	Vector mObjects;
-	Enumeration mObjWalk;
+	ParcelEnumeration mParcels;
+	Parcel mParcel;			// Parcel of the next object
+	int mnIndex;			// index of the next object in mParcel
+	GameObject mNext;		// next object, null at the end
 	
 	public static final int LEFT_RIGHT = 0;
 	public static final int RIGHT_LEFT = 1;
@@ -477,27 +788,109 @@ class ObjectEnumeration implements Enumeration {
 	
 	// Objects within a Parcel won't be handled in
 	// the correct order yet!!
+	// The objects are not copied, the Parcels are walked as the
+	// enumeration goes. So an object that moves while the enumeration
+	// is running can be skipped or returned twice.
 	ObjectEnumeration(MapView _mapv, int _mode) {
-		mObjects = new Vector();
-		ParcelEnumeration parcels = new ParcelEnumeration(_mapv, _mode);
-		Enumeration parcelObjects;
-		while (parcels.hasMoreElements()) {
-			Parcel parcel = (Parcel)parcels.nextElement();
-			parcelObjects = parcel.objects();
-			while (parcelObjects.hasMoreElements()) {
-				GameObject obj = (GameObject)parcelObjects.nextElement();
-				mObjects.addElement(obj);
+		mParcels = new ParcelEnumeration(_mapv, _mode);
+		mNext = findNext();
+	}
+	
+	// Looks ahead for the next object, so that hasMoreElements() is reliable
+	GameObject findNext() {
+		while (true) {
+			if (mParcel != null) {
+				GameObject obj = mParcel.getObject(mnIndex++);
+				if (obj != null) {
+					return obj;
+				}
+			}
+			if (!mParcels.hasMoreElements()) {
+				return null;
 			}
+			mParcel = (Parcel)mParcels.nextElement();
+			mnIndex = 0;
 		}
-		mObjWalk = mObjects.elements();
 	}
 	
 	public boolean hasMoreElements() {
-		return mObjWalk.hasMoreElements();
+		return mNext != null;
 	}
 	
 	public Object nextElement() {
-		return mObjWalk.nextElement();
+		if (mNext == null) {
+			throw new NoSuchElementException();
+		}
+		GameObject result = mNext;
+		mNext = findNext();
+		return result;
+	}
+}
+
+
+class ObjectSpliterator implements Spliterator {
+	ParcelMap mPMap;
+	int mnLeft, mnRight;	// columns of Parcels to walk
+	int mnRow, mnLastRow;	// rows of Parcels still to walk
+	int mnX;				// column of the current Parcel
+	int mnIndex;			// index of the next object in the current Parcel
+	
+	// Walks the objects of the MapView row by row, top-down and left-right.
+	// Like the ObjectEnumeration it doesn't copy the objects.
+	ObjectSpliterator(MapView _mapv) {
+		ParcelEnumeration parcels = new ParcelEnumeration(_mapv, ParcelEnumeration.LEFT_RIGHT | ParcelEnumeration.TOP_DOWN);
+		mPMap = parcels.mPMap;
+		mnLeft = parcels.mStart.x;
+		mnRight = parcels.mEnd.x;
+		mnRow = parcels.mStart.y;
+		mnLastRow = parcels.mEnd.y;
+		mnX = mnLeft;
+	}
+	
+	ObjectSpliterator(ParcelMap _pmap, int _left, int _right, int _firstRow, int _lastRow) {
+		mPMap = _pmap;
+		mnLeft = _left;
+		mnRight = _right;
+		mnRow = _firstRow;
+		mnLastRow = _lastRow;
+		mnX = mnLeft;
+	}
+	
+	public boolean tryAdvance(Consumer _action) {
+		while (mnRow <= mnLastRow) {
+			GameObject obj = mPMap.getParcel(mnX, mnRow).getObject(mnIndex);
+			if (obj != null) {
+				mnIndex++;
+				_action.accept(obj);
+				return true;
+			}
+			mnIndex = 0;
+			if (++mnX > mnRight) {
+				mnX = mnLeft;
+				mnRow++;
+			}
+		}
+		return false;
+	}
+	
+	// Hands the bottom half of the remaining rows to a new spliterator
+	public Spliterator trySplit() {
+		if (mnLastRow <= mnRow) {
+			return null;
+		}
+		int mid = (mnRow + mnLastRow + 1) / 2;
+		Spliterator result = new ObjectSpliterator(mPMap, mnLeft, mnRight, mid, mnLastRow);
+		mnLastRow = mid - 1;
+		return result;
+	}
+	
+	// The number of objects is not known without walking them, so this returns the number of Parcels
+	public long estimateSize() {
+		return (mnRow <= mnLastRow) ? (long)(mnLastRow - mnRow + 1) * (mnRight - mnLeft + 1) : 0;
+	}
+	
+	public int characteristics() {
+		return NONNULL;
 	}
 }
 
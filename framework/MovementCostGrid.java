@@ -0,0 +1,120 @@
+/*
+ *  MovementCostGrid.java
+ */
+
+/**
+ *  The cost of entering every Parcel of a GameMap, on top of the distance
+ *  travelled, as it follows from the Terrain: its support and obstacles
+ *  (see the constants of Terrain) and the difference in height with the
+ *  Parcels around it. A Parcel with IMPOSSIBLE obstacles can't be entered,
+ *  its cost is Float.POSITIVE_INFINITY.
+ *  <br>
+ *  The costs are computed once and kept in a single array, after that only
+ *  the Parcels around a changed Parcel are computed again.
+ *
+ *@created    18 october 2026
+ */
+class MovementCostGrid implements ParcelListener {
+	// The cost of the support of a Terrain, in steps, indexed by the support constant
+	final static float SUPPORT_COSTS[] = {
+		0.0f,	// unknown
+		1.0f,	// VERY_SLIPPERY
+		0.5f,	// SLIPPERY
+		1.0f,	// VERY_SOFT
+		0.5f,	// SOFT
+		0.0f,	// VERY_HARD
+		0.0f	// HARD
+	};
+
+	// The cost of the obstacles of a Terrain, in steps, indexed by the obstacle constant
+	final static float OBSTACLE_COSTS[] = {
+		0.0f,						// unknown
+		0.0f,						// SMOOTH
+		0.25f,						// BUMPY
+		1.0f,						// ROUGH
+		3.0f,						// VERY_ROUGH
+		Float.POSITIVE_INFINITY		// IMPOSSIBLE
+	};
+
+	// The cost of every unit of height between a Parcel and its steepest neighbour, in steps
+	final static float SLOPE_COST = 0.5f;
+
+	ParcelMap mParcelMap;
+	int mnWidth, mnHeight;
+	float mnStepLength;
+	float mvCosts[];		// indexed by y * width + x
+
+
+	/**
+	 *  Constructor for the MovementCostGrid object, computes the costs of all Parcels
+	 *
+	 *@param  _parcelMap   The Parcels
+	 *@param  _stepLength  The length of a horizontal or vertical step, the unit of the costs
+	 */
+	MovementCostGrid(ParcelMap _parcelMap, double _stepLength) {
+		mParcelMap = _parcelMap;
+		mnWidth = _parcelMap.getWidth();
+		mnHeight = _parcelMap.getHeight();
+		mnStepLength = (float)_stepLength;
+		mvCosts = new float[mnWidth * mnHeight];
+		for (int y = 0; y < mnHeight; y++) {
+			for (int x = 0; x < mnWidth; x++) {
+				mvCosts[y * mnWidth + x] = computeCost(x, y);
+			}
+		}
+	}
+
+
+	/**
+	 *  Gets the cost of entering a Parcel
+	 *
+	 *@param  _x  The x coordinate of the Parcel in the ParcelMap
+	 *@param  _y  The y coordinate of the Parcel in the ParcelMap
+	 *@return     The cost, Float.POSITIVE_INFINITY if the Parcel can't be entered
+	 */
+	public float get(int _x, int _y) {
+		return mvCosts[_y * mnWidth + _x];
+	}
+
+
+	/**
+	 *  Computes the costs around a Parcel whose Terrain or height changed
+	 *
+	 *@param  _e  The event
+	 */
+	public void parcelChanged(ParcelEvent _e) {
+		// the slope of the Parcels around it changed too
+		for (int y = Math.max(0, _e.getY() - 1); y <= Math.min(mnHeight - 1, _e.getY() + 1); y++) {
+			for (int x = Math.max(0, _e.getX() - 1); x <= Math.min(mnWidth - 1, _e.getX() + 1); x++) {
+				mvCosts[y * mnWidth + x] = computeCost(x, y);
+			}
+		}
+	}
+
+
+	// Computes the cost of entering a Parcel from its Terrain and the height of the Parcels around it
+	float computeCost(int _x, int _y) {
+		Terrain terrain = mParcelMap.getTerrain(_x, _y);
+		float cost = 0.0f;
+		if (terrain != null) {
+			cost += getCost(SUPPORT_COSTS, terrain.getSupport());
+			cost += getCost(OBSTACLE_COSTS, terrain.getObstacles());
+		}
+		int height = mParcelMap.getBaseHeight(_x, _y);
+		int slope = 0;
+		for (int d = 0; d < 8; d++) {
+			int nx = _x + GridAStar.DX[d];
+			int ny = _y + GridAStar.DY[d];
+			if ((nx >= 0) && (nx < mnWidth) && (ny >= 0) && (ny < mnHeight)) {
+				slope = Math.max(slope, Math.abs(mParcelMap.getBaseHeight(nx, ny) - height));
+			}
+		}
+		cost += SLOPE_COST * slope;
+		return cost * mnStepLength;
+	}
+
+
+	static float getCost(float _costs[], int _index) {
+		return ((_index >= 0) && (_index < _costs.length)) ? _costs[_index] : 0.0f;
+	}
+}
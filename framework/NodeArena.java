@@ -0,0 +1,203 @@
+/*
+ *  NodeArena.java
+ */
+
+import util.*;
+
+/**
+ *  The PathNodes of the search of a PathFinderDirector, together with the
+ *  index of the nodes by position and the queue of nodes by potential cost.
+ *  The arena holds at most a fixed number of nodes. They are created as
+ *  they are needed and reused after reset(), so a search doesn't allocate
+ *  anything once the arena has been filled, and the memory of the search
+ *  never grows beyond the budget.
+ *  <br>
+ *  A node is always created after the node it is reached from, so the
+ *  previous nodes of a node never form a loop, not even halfway through a
+ *  new search that reuses the nodes.
+ *
+ *@created    18 october 2026
+ */
+class NodeArena {
+	PathFinderDirector.PathNode mvNodes[];
+	int mnUsed = 0;
+	int mnCreated = 0;		// the number of nodes that were ever created, never more than the capacity
+	// the nodes by position, an open addressing hash table that is emptied by bumping the generation
+	long mvPositions[];
+	PathFinderDirector.PathNode mvTable[];
+	int mvTableSeen[];
+	int mnGeneration = 1;
+	IndexedIntHeap mOpen;
+
+
+	/**
+	 *  Constructor for the NodeArena object
+	 *
+	 *@param  _capacity  The maximum number of nodes
+	 */
+	NodeArena(int _capacity) {
+		mvNodes = new PathFinderDirector.PathNode[_capacity];
+		// a power of two of at least twice the capacity
+		int tableSize = Integer.highestOneBit(Math.max(2, _capacity) * 4 - 1);
+		mvPositions = new long[tableSize];
+		mvTable = new PathFinderDirector.PathNode[tableSize];
+		mvTableSeen = new int[tableSize];
+		mOpen = new IndexedIntHeap(_capacity);
+	}
+
+
+	public int getCapacity() {
+		return mvNodes.length;
+	}
+
+
+	/**
+	 *  Gets the number of nodes that are in use
+	 *
+	 *@return    The number of nodes
+	 */
+	public int size() {
+		return mnUsed;
+	}
+
+
+	public boolean isFull() {
+		return mnUsed == mvNodes.length;
+	}
+
+
+	/**
+	 *  Gets the number of nodes that the arena created, the others were reused
+	 *
+	 *@return    The number of nodes
+	 */
+	public int getCreatedCount() {
+		return mnCreated;
+	}
+
+
+	/**
+	 *  Gets a free node, which isn't in the index or the queue yet
+	 *
+	 *@param  _x         The x coordinate of the position of the node
+	 *@param  _y         The y coordinate of the position of the node
+	 *@param  _previous  The node from which the node is reached
+	 *@param  _cost      The cost of reaching the node
+	 *@return            The node, or null if all nodes are in use
+	 */
+	public PathFinderDirector.PathNode create(double _x, double _y, PathFinderDirector.PathNode _previous, double _cost) {
+		if (isFull()) {
+			return null;
+		}
+		PathFinderDirector.PathNode result = mvNodes[mnUsed];
+		if (result == null) {
+			result = new PathFinderDirector.PathNode();
+			result.mnIndex = mnUsed;
+			mvNodes[mnUsed] = result;
+			mnCreated++;
+		} else {
+			result.clear();
+		}
+		mnUsed++;
+		result.mPosition.setLocation(_x, _y);
+		result.mPreviousNode = _previous;
+		result.mCost = _cost;
+		return result;
+	}
+
+
+	/**
+	 *  Frees all nodes
+	 */
+	public void reset() {
+		mnUsed = 0;
+		mOpen.clear();
+		if (++mnGeneration == Integer.MAX_VALUE) {
+			java.util.Arrays.fill(mvTableSeen, 0);
+			mnGeneration = 1;
+		}
+	}
+
+
+	/**
+	 *  Gets the node at a position
+	 *
+	 *@param  _x  The x coordinate of the position, rounded down
+	 *@param  _y  The y coordinate of the position, rounded down
+	 *@return     The node, or null if there is none
+	 */
+	public PathFinderDirector.PathNode get(int _x, int _y) {
+		long position = getPosition(_x, _y);
+		for (int i = hash(position); mvTableSeen[i] == mnGeneration; i = (i + 1) & (mvTable.length - 1)) {
+			if (mvPositions[i] == position) {
+				return mvTable[i];
+			}
+		}
+		return null;
+	}
+
+
+	/**
+	 *  Stores the node at a position
+	 *
+	 *@param  _x     The x coordinate of the position, rounded down
+	 *@param  _y     The y coordinate of the position, rounded down
+	 *@param  _node  The node
+	 */
+	public void put(int _x, int _y, PathFinderDirector.PathNode _node) {
+		long position = getPosition(_x, _y);
+		int i = hash(position);
+		// there are twice as many slots as nodes, so there is always a free one
+		while ((mvTableSeen[i] == mnGeneration) && (mvPositions[i] != position)) {
+			i = (i + 1) & (mvTable.length - 1);
+		}
+		mvPositions[i] = position;
+		mvTable[i] = _node;
+		mvTableSeen[i] = mnGeneration;
+	}
+
+
+	/**
+	 *  Adds a node to the queue, or changes its potential cost if it's in there
+	 *
+	 *@param  _node  The node, with its mPotentialCost set
+	 */
+	public void enqueue(PathFinderDirector.PathNode _node) {
+		mOpen.add(_node.mnIndex, _node.mPotentialCost);
+	}
+
+
+	public void dequeue(PathFinderDirector.PathNode _node) {
+		mOpen.remove(_node.mnIndex);
+	}
+
+
+	/**
+	 *  Gets the node in the queue with the lowest potential cost
+	 *
+	 *@return    The node, or null if the queue is empty
+	 */
+	public PathFinderDirector.PathNode peek() {
+		return mOpen.isEmpty() ? null : mvNodes[mOpen.peek()];
+	}
+
+
+	public int getQueueSize() {
+		return mOpen.size();
+	}
+
+
+	static long getPosition(int _x, int _y) {
+		return ((long)_x << 32) | (_y & 0xffffffffL);
+	}
+
+
+	// Mixes all bits of the position into the slot (the finalizer of MurmurHash3)
+	int hash(long _position) {
+		long h = _position;
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		h = h ^ (h >>> 33);
+		return (int)h & (mvTable.length - 1);
+	}
+}
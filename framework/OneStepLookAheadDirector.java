@@ -9,15 +9,10 @@ import util.*;
  * @version $Revision: 1.1 $
  */
 class OneStepLookAheadDirector implements Director {
-	public static int[][] FLAGMAP = null;
-
-	public synchronized int[][] getFLAGMAP(GameMap _map) {
-		// initialize flag map
-		if (FLAGMAP == null) {
-			FLAGMAP = new int[_map.mParcelMapWidth][_map.mParcelMapHeight];
-		}
-		return FLAGMAP;
-	}
+	// Which way to step when left and right cost the same. Every director
+	// alternates on its own, so the steps don't depend on the order or the
+	// thread in which the objects of a tick run.
+	boolean mbStepLeft = true;
 
 	// Determines the direction to move in to get fastest from [_pos] to [_target] on [_map] at [_maxSpeed]
 	public FloatPoint determineDirection(FloatPoint _pos, Point _target, GameMap _map, double _maxSpeed) {
@@ -45,7 +40,8 @@ class OneStepLookAheadDirector implements Director {
 			}
 			else {
 				log("Stepping left/right");
-				direction = ( (Math.random() < 0.5) ? MathHelper.rotate(direction, -90) : MathHelper.rotate(direction, 90) );
+				direction = ( mbStepLeft ? MathHelper.rotate(direction, -90) : MathHelper.rotate(direction, 90) );
+				mbStepLeft = !mbStepLeft;
 			}
 		}
 		return direction;
@@ -53,16 +49,14 @@ class OneStepLookAheadDirector implements Director {
 	
 	// Called to indicate that the game object has died at [_pos] on [_map]
 	public void onObjectDied(FloatPoint _pos, GameMap _map) {
-		Point point = _pos.toPoint();
-		Point parcelposition = _map.gameXYToParcelXY(point.x, point.y);
-		getFLAGMAP(_map)[parcelposition.x][parcelposition.y]++;
+		MapCellCost.addDeath(_map, _pos);
 	}
 
 	// determines the cost for an object at [_pos] to move in [_dir]
 	protected double getCostForMove(FloatPoint _pos, FloatPoint _dir, GameMap _map) {
 		FloatPoint dst = new FloatPoint(_pos.x + _dir.x, _pos.y + _dir.y);
 		Point parcelindex = _map.gameXYToParcelXY((int)dst.x, (int)dst.y);
-		return getFLAGMAP(_map)[parcelindex.x][parcelindex.y] * 1000 + _pos.distance(dst);
+		return MapCellCost.getFiniteCost(_map, parcelindex.x, parcelindex.y) + _pos.distance(dst);
 	}
 	public void log(String _line) {
 		Logger.log("OneStepLookAheadDirector: "+_line);
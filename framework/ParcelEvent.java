@@ -0,0 +1,25 @@
+import java.util.EventObject;
+
+class ParcelEvent extends EventObject {
+	int mnX, mnY;
+	
+	public ParcelEvent(ParcelMap _source, int _x, int _y) {
+		super(_source);
+		mnX = _x;
+		mnY = _y;
+	}
+	
+	public ParcelMap getParcelMap() {
+		return (ParcelMap)getSource();
+	}
+	
+	// The x coordinate of the changed Parcel in the ParcelMap
+	public int getX() {
+		return mnX;
+	}
+	
+	// The y coordinate of the changed Parcel in the ParcelMap
+	public int getY() {
+		return mnY;
+	}
+}
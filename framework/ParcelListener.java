@@ -0,0 +1,5 @@
+import java.util.EventListener;
+
+interface ParcelListener extends EventListener {
+	void parcelChanged(ParcelEvent _e);
+}
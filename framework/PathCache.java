@@ -0,0 +1,131 @@
+/*
+ *  PathCache.java
+ */
+
+import java.util.*;
+
+/**
+ *  Remembers the paths that were found between two Parcels, so that game
+ *  objects that start from the same Parcel for the same target don't search
+ *  again. A path is only valid for the cost version of the map it was found
+ *  with (see GameMap.getCostVersion()): as soon as a newer version is used,
+ *  all older paths are dropped. When the cache is full the least recently
+ *  used path is dropped.
+ *  <br>
+ *  The cached paths are shared, they must not be changed.
+ *
+ *@created    18 october 2026
+ */
+class PathCache {
+	/**
+	 *  The default number of paths that is kept, can be changed with the
+	 *  iSpecies.pathCacheSize system property
+	 */
+	public final static int DEFAULT_SIZE = Integer.getInteger("iSpecies.pathCacheSize", 256).intValue();
+
+	/**
+	 *  Is cached for a target that can't be reached from a start
+	 */
+	public final static int NO_PATH[] = new int[0];
+
+	LinkedHashMap mPaths;		// Long (start and target Parcel) -> int[], in order of use
+	long mlVersion = -1;		// the cost version of the cached paths
+	long mlHits = 0;
+	long mlMisses = 0;
+
+
+	/**
+	 *  Constructor for the PathCache object
+	 *
+	 *@param  _size  The number of paths that is kept
+	 */
+	PathCache(final int _size) {
+		mPaths =
+			new LinkedHashMap(_size, 0.75f, true) {
+				protected boolean removeEldestEntry(java.util.Map.Entry _eldest) {
+					return size() > _size;
+				}
+			};
+	}
+
+
+	// The key of the path from the start to the target Parcel (as y * width + x)
+	static Long getKey(int _start, int _target) {
+		return Long.valueOf(((long)_start << 32) | (_target & 0xffffffffL));
+	}
+
+
+	/**
+	 *  Gets a path from the cache
+	 *
+	 *@param  _start    The start Parcel (as y * width + x)
+	 *@param  _target   The target Parcel (as y * width + x)
+	 *@param  _version  The current cost version of the map
+	 *@return           The path, NO_PATH if the target can't be reached, or null if it isn't cached
+	 */
+	public synchronized int[] get(int _start, int _target, long _version) {
+		if (_version > mlVersion) {
+			mPaths.clear();
+			mlVersion = _version;
+		}
+		int path[] = (_version == mlVersion) ? (int[])mPaths.get(getKey(_start, _target)) : null;
+		if (path == null) {
+			mlMisses++;
+		} else {
+			mlHits++;
+		}
+		return path;
+	}
+
+
+	/**
+	 *  Puts a path in the cache, unless it was found with costs that are out of date
+	 *
+	 *@param  _start    The start Parcel (as y * width + x)
+	 *@param  _target   The target Parcel (as y * width + x)
+	 *@param  _version  The cost version of the map the path was found with
+	 *@param  _path     The path, null if the target can't be reached
+	 */
+	public void put(int _start, int _target, long _version, int _path[]) {
+		put(getKey(_start, _target), _version, _path);
+	}
+
+
+	/**
+	 *  Puts a path in the cache, unless it was found with costs that are out of date
+	 *
+	 *@param  _key      The key of the start and target Parcel, see getKey()
+	 *@param  _version  The cost version of the map the path was found with
+	 *@param  _path     The path, null if the target can't be reached
+	 */
+	synchronized void put(Long _key, long _version, int _path[]) {
+		if (_version < mlVersion) {
+			return;
+		}
+		if (_version > mlVersion) {
+			mPaths.clear();
+			mlVersion = _version;
+		}
+		mPaths.put(_key, (_path != null) ? _path : NO_PATH);
+	}
+
+
+	/**
+	 *  Gets the number of times a path was found in the cache
+	 *
+	 *@return    The number of hits
+	 */
+	public synchronized long getHitCount() {
+		return mlHits;
+	}
+
+
+	/**
+	 *  Gets the number of times a path wasn't found in the cache
+	 *
+	 *@return    The number of misses
+	 */
+	public synchronized long getMissCount() {
+		return mlMisses;
+	}
+}
@@ -17,22 +17,31 @@ public class PathFinder extends BaseGameObject implements Targettable, TimerRece
 	private TimerTrigger mTrigger;
 	private int mSpeed = 5;
 	//Director mDirector = new OneStepLookAheadDirector();
-	public Director mDirector = new PathFinderDirector();
+	public Director mDirector = null;
 
 	/** Creates a new instance of PathFinder */
 	public PathFinder(GameMap _map, Universe _game, Point _position) {
+		//this(_map, _game, _position, new OneStepLookAheadDirector());
+		//this(_map, _game, _position, new PathFinderDirector());
+		//this(_map, _game, _position, new GridPathDirector());
+		this(_map, _game, _position, new AsyncPathDirector(_game.getPathRequests()));
+	}
+
+	/** Creates a new instance of PathFinder that is directed by [_director] */
+	public PathFinder(GameMap _map, Universe _game, Point _position, Director _director) {
 		super(_map, _position);
 		mGame = _game;
 		// add to heartbeat
 		mTrigger = new TimerTrigger(this);
 		mTrigger.setRepeat(true);
+		mTrigger.setConcurrent(true);
 		_game.heartBeat.addRel ( mTrigger, 1 );
 		// give this object a director
-		//OneStepLookAheadDirector dir = new OneStepLookAheadDirector();
-		PathFinderDirector dir = new PathFinderDirector();
-		mDirector = dir;
+		mDirector = _director;
 		// notify the director of object events
-		addObjectListener(dir);
+		if (_director instanceof ObjectListener) {
+			addObjectListener((ObjectListener)_director);
+		}
 	}
 
 	/** Creates a new instance of PathFinder */
@@ -40,6 +49,12 @@ public class PathFinder extends BaseGameObject implements Targettable, TimerRece
 		this(_map, _game, _position);
 		super.setName(_name);
 	}
+
+	/** Creates a new instance of PathFinder that is directed by [_director] */
+	public PathFinder(String _name, GameMap _map, Universe _game, Point _position, Director _director) {
+		this(_map, _game, _position, _director);
+		super.setName(_name);
+	}
 	
 	public Point getTarget() {
 		return mTarget;
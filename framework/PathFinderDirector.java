@@ -9,31 +9,62 @@ import util.*;
 /**
  * This class finds the path for it's associated path finder.
  * <br>
+ * The nodes of the search come from a NodeArena, so the search never uses
+ * more than a fixed number of nodes and doesn't allocate new ones once the
+ * arena has been filled. The number of nodes that is expanded per tick is
+ * limited by the SearchBudget of the Universe. When all nodes are used up
+ * before the target is found, the object takes the first step towards the
+ * node that got closest to the target, and starts a new search from there.
+ * <br>
  * @version $Revision: 1.5 $
  */
 public class PathFinderDirector implements Director, ObjectListener {
 	/** The version number of this file as determined by the RCS. */
 	public static final String RCS_VERSION = "$Revision: 1.5 $";
 	
-	public static int[][] FLAGMAP = null;
+	/** The default number of nodes a search may use, can be changed with the iSpecies.nodeBudget system property */
+	public static final int DEFAULT_NODE_BUDGET = Integer.getInteger("iSpecies.nodeBudget", 1000).intValue();
+	/** The maximum number of nodes that is expanded per tick */
+	public static final int MAX_EXPANSIONS_PER_TICK = 500;
 
-	public static synchronized int[][] getFLAGMAP(GameMap _map) {
-		// initialize flag map
-		if (FLAGMAP == null) {
-			FLAGMAP = new int[_map.mParcelMapWidth][_map.mParcelMapHeight];
-		}
-		return FLAGMAP;
-	}
-	
 	public PathNode mStartNode = null;
 	public PathNode mLatestNode = null;
-	java.util.Map mNodePositionMap = new java.util.HashMap();
-	PriorityQueue mNodesByCost = new PriorityQueue();
+	// the node that got closest to the target so far
+	PathNode mBestNode = null;
+	NodeArena mArena;
+	SearchBudget mBudget;
+	// whether this Director is one of those that share the budget
+	boolean mbInBudget = false;
+	long mPartialPathCount = 0;
+	// the number of nodes that were expanded, by all searches together
+	long mExpandedCount = 0;
+
+	/** Creates a PathFinderDirector that isn't limited by a SearchBudget */
+	public PathFinderDirector() {
+		this(null, DEFAULT_NODE_BUDGET);
+	}
+
+	/** Creates a PathFinderDirector that expands no more nodes per tick than [_budget] allows */
+	public PathFinderDirector(SearchBudget _budget) {
+		this(_budget, DEFAULT_NODE_BUDGET);
+	}
+
+	/** Creates a PathFinderDirector that uses at most [_nodeBudget] nodes per search */
+	public PathFinderDirector(SearchBudget _budget, int _nodeBudget) {
+		mBudget = _budget;
+		mArena = new NodeArena(_nodeBudget);
+		joinBudget();
+	}
 
 	public static final int SEGMENT_COUNT = 8;
-	public class PathNode {
+	// The angle between two segments, and its cosine and sine
+	static final int SEGMENT_ANGLE = 360 / SEGMENT_COUNT;
+	static final double SEGMENT_COS = Math.cos(Math.toRadians(SEGMENT_ANGLE));
+	static final double SEGMENT_SIN = Math.sin(Math.toRadians(SEGMENT_ANGLE));
+
+	public static class PathNode {
 		// The position this node represents.
-		FloatPoint mPosition;
+		FloatPoint mPosition = new FloatPoint();
 		// The node from which we reached this node
 		PathNode mPreviousNode;
 		// The cost with which we can reach this node (from the start position via mPreviousNode)
@@ -46,11 +77,22 @@ public class PathFinderDirector implements Director, ObjectListener {
 		// 1    o    5
 		//   0     6
 		PathNode mNextNodes[] = new PathNode[SEGMENT_COUNT-1];
-		double mNextCosts[] = new double[SEGMENT_COUNT-1];
 		// indicates if the node has been evaluated already
 		boolean mIsEvaluated = false;
 		// whether this node is on the cheapest path
 		boolean mIsMarked = false;
+		// the index of this node in its NodeArena
+		int mnIndex;
+
+		// Makes the node like new, so that the NodeArena can reuse it
+		void clear() {
+			mPreviousNode = null;
+			mCost = 0;
+			mPotentialCost = 0;
+			java.util.Arrays.fill(mNextNodes, null);
+			mIsEvaluated = false;
+			mIsMarked = false;
+		}
 	}
 	
 	// Returns the lowest possible cost to get from [_p] to [_target]
@@ -61,8 +103,8 @@ public class PathFinderDirector implements Director, ObjectListener {
 	// Returns the leaf node with the lowest potential cost for reaching [_target] from [_startNode]
 	PathNode findNodeWithLowestPotentialCost(PathNode _startNode, FloatPoint _target) {
 		PathNode result = _startNode;
-		if (mNodesByCost.size() > 0) {
-			result = (PathNode) mNodesByCost.get();
+		if (mArena.getQueueSize() > 0) {
+			result = mArena.peek();
 		}
 		else if (_startNode != null) {			
 			double minCost = Float.POSITIVE_INFINITY;
@@ -85,20 +127,16 @@ public class PathFinderDirector implements Director, ObjectListener {
 		return result;
 	}
 
-	// Returns true if a node with [_nextPoint] is on the path back from [_node]
-	boolean isPositionOnPath(Point _point, PathNode _node) {
-		if (_node == null) {
-			// arrived at start of path without a match
-			return false;
-		}
-		else if (_point.equals(_node.mPosition.toPoint())) {
-			// found a match
-			return true;
-		}
-		else {
-			// search backwards
-			return isPositionOnPath(_point, _node.mPreviousNode);
+	// Returns true if a node at [_x], [_y] (rounded down) is on the path back from [_node]
+	boolean isPositionOnPath(int _x, int _y, PathNode _node) {
+		// search backwards, until we arrive at the start of the path without a match
+		for (PathNode node = _node; node != null; node = node.mPreviousNode) {
+			if ((_x == (int)node.mPosition.x) && (_y == (int)node.mPosition.y)) {
+				// found a match
+				return true;
+			}
 		}
+		return false;
 	}
 
 
@@ -106,20 +144,16 @@ public class PathFinderDirector implements Director, ObjectListener {
 	long mRedundantNodesNotCreatedCount = 0;
 	long mExpensiveNodesNotCreatedCount=0;
 	long mNodesCutCount = 0;
-	PathNode createNode(FloatPoint _pos, PathNode _previous, double _cost) {
-		if (mNodeCount++ % 1000 == 0) {
+	// Returns a new node from the arena, or null if the arena is full
+	PathNode createNode(double _x, double _y, PathNode _previous, double _cost) {
+		if (mNodeCount++ % 1000 == 0 && Logger.isEnabled()) {
 			log("createNode   : "+mNodeCount+" created");
 			log("\tnodes cut  : "+mNodesCutCount);
 			log("\tnodes left : "+countNodes(mStartNode));
 			log("\tnot created: "+mRedundantNodesNotCreatedCount+" already on path + "+mExpensiveNodesNotCreatedCount+" more expensive than existing path to point");
 		}
 			
-		//log("createNode: pos="+StringHelper.toString(_pos)+" cost="+StringHelper.toString(_cost));
-		PathNode result = new PathNode();
-		result.mPosition = _pos;
-		result.mPreviousNode = _previous;
-		result.mCost = _cost;
-		return result;
+		return mArena.create(_x, _y, _previous, _cost);
 	}
 	
 	// counts the nodes that can be reached from [_node]
@@ -167,25 +201,31 @@ public class PathFinderDirector implements Director, ObjectListener {
 			distance = direction.distance(0.0, 0.0);
 		}
 		// rotate left to get to point 0
-		int angle = 360 / SEGMENT_COUNT;
-		
-		direction = MathHelper.rotate(direction,  -angle * (int)Math.floor((SEGMENT_COUNT-1) / 2));
+		FloatPoint floatTarget = new FloatPoint(_target);
+		direction = MathHelper.rotate(direction,  -SEGMENT_ANGLE * (int)Math.floor((SEGMENT_COUNT-1) / 2));
+		double dx = direction.x;
+		double dy = direction.y;
+		FloatPoint nextPosition = new FloatPoint();
 		for (int d = 0; d < SEGMENT_COUNT-1; d++) {
 			// determine next position in this direction
-			FloatPoint nextPosition = new FloatPoint(_node.mPosition.x + direction.x, _node.mPosition.y + direction.y);
-			if ( ! isPositionOnPath(nextPosition.toPoint(), _node) ) {
+			nextPosition.setLocation(_node.mPosition.x + dx, _node.mPosition.y + dy);
+			int nextX = (int)nextPosition.x;
+			int nextY = (int)nextPosition.y;
+			if ( ! isPositionOnPath(nextX, nextY, _node) ) {
 				// determine cost to get to next position in this direction
 				double nextCost = _node.mCost + getCostForMove(_node.mPosition, nextPosition, _map);
 				// if a node already exists on the next position
-				if (mNodePositionMap.get(nextPosition.toPoint()) != null) {
-					PathNode existingNode = (PathNode)mNodePositionMap.get(nextPosition.toPoint());
+				PathNode existingNode = mArena.get(nextX, nextY);
+				if (existingNode != null) {
 					// if this route is cheaper than the current route to nextPosition
 					if (existingNode.mCost > nextCost) {
 						// clear the 'next' reference of the old previous node
 						for (int d2=0; d2 < SEGMENT_COUNT-1; d2++) {
 							if (existingNode.mPreviousNode.mNextNodes[d2] == existingNode) {
 								existingNode.mPreviousNode.mNextNodes[d2] = null;
-								mNodesCutCount += countNodes(existingNode);
+								if (Logger.isEnabled()) {
+									mNodesCutCount += countNodes(existingNode);
+								}
 								//log("Cutting "+countNodes(existingNode)+" more expensive nodes at "+StringHelper.toString(nextPosition.toPoint()));
 							}
 						}
@@ -197,26 +237,36 @@ public class PathFinderDirector implements Director, ObjectListener {
 				}
 				else {
 					// put the values into a new node and store it
-					_node.mNextNodes[d] = createNode(nextPosition, _node, nextCost);
-					_node.mNextNodes[d].mPotentialCost = nextCost + getLowestPotentialCost(nextPosition, new FloatPoint(_target));
+					PathNode next = createNode(nextPosition.x, nextPosition.y, _node, nextCost);
+					if (next == null) {
+						// the arena is full
+						break;
+					}
+					_node.mNextNodes[d] = next;
+					next.mPotentialCost = nextCost + getLowestPotentialCost(next.mPosition, floatTarget);
 					// put the new node in the map
-					mNodePositionMap.put(nextPosition.toPoint(), _node.mNextNodes[d]);
+					mArena.put(nextX, nextY, next);
 					// put the new node in the cost map
-					mNodesByCost.add(_node.mNextNodes[d], (long)(1000*_node.mNextNodes[d].mPotentialCost));
-					//System.out.println("mNodesByCost now contains "+mNodesByCost.size()+" nodes, the cheapest of which has potential cost of "+mNodesByCost.getPriority());
+					mArena.enqueue(next);
+					// remember the node that got closest to the target
+					if (mBestNode == null || next.mPotentialCost - next.mCost < mBestNode.mPotentialCost - mBestNode.mCost) {
+						mBestNode = next;
+					}
 				}
 			}
 			else {
 				mRedundantNodesNotCreatedCount++;
 				//log("Encountered point "+StringHelper.toString(nextPosition.toPoint())+" that's already on this path. Ignoring the new instance...");
 			}
-			// rotate right for nedt step
-			direction = MathHelper.rotate(direction, angle);
+			// rotate right for nedt step, like MathHelper.rotate() without the garbage
+			double rotatedX = dx * SEGMENT_COS + dy * SEGMENT_SIN;
+			dy = dy * SEGMENT_COS - dx * SEGMENT_SIN;
+			dx = rotatedX;
 		}
 		// mark the node as having been evaluated
 		_node.mIsEvaluated = true;
-		// TODO: remote the evaluated node from the cost map
-		mNodesByCost.remove(_node);
+		// remove the evaluated node from the cost map
+		mArena.dequeue(_node);
 	}
 
 	boolean bFoundTarget = false;
@@ -229,15 +279,16 @@ public class PathFinderDirector implements Director, ObjectListener {
 		Profiler.startProfiling("PathFinderDirector.determineDirection()"); 
 		try {
 			FloatPoint floatTarget = new FloatPoint(_target);
-			// if this is the first time we're called, create a start node
+			// if this is the first time we're called (or the last search ran out of nodes), create a start node
 			if (mStartNode == null) {
-				mStartNode = createNode(_pos, null, 0);
+				mStartNode = createNode(_pos.x, _pos.y, null, 0);
 			}
 			// find the node that currently has the lowest potential cost to reach _target
 			PathNode currentNode = findNodeWithLowestPotentialCost(mStartNode, floatTarget);
-			if (currentNode.mPosition.toPoint().equals(_target)) {
+			if (currentNode != null && currentNode.mPosition.toPoint().equals(_target)) {
 				if ( ! bFoundTarget ) {
 					bFoundTarget = true;
+					leaveBudget();
 					log("Found target!");
 					log("Nodes created: "+mNodeCount);
 					log("  not created: "+mRedundantNodesNotCreatedCount);
@@ -252,36 +303,75 @@ public class PathFinderDirector implements Director, ObjectListener {
 				mStartNode = currentNode;
 			}
 			else {
-				mLatestNode = currentNode;
-				// determine where we can go from the cheapest node so far
-				calculateDirections(currentNode, _target, _map, _maxSpeed);
-				// <TEMP> Speed up calculation
-				for (int i=0; i < 500; i++) {
+				// expand as many nodes as the budgets allow
+				int expansions = MAX_EXPANSIONS_PER_TICK;
+				if (mBudget != null) {
+					joinBudget();
+					expansions = Math.min(expansions, mBudget.getShare());
+				}
+				for (int i=0; i < expansions && currentNode != null && !mArena.isFull(); i++) {
+					mLatestNode = currentNode;
+					mExpandedCount++;
+					// determine where we can go from the cheapest node so far
+					calculateDirections(currentNode, _target, _map, _maxSpeed);
 					// find the node that currently has the lowest potential cost to reach _target
 					currentNode = findNodeWithLowestPotentialCost(mStartNode, floatTarget);
-					if ( ! currentNode.mPosition.toPoint().equals(_target)) {
-						mLatestNode = currentNode;
-						// determine where we can go from the cheapest node so far
-						calculateDirections(currentNode, _target, _map, _maxSpeed);
-					}
-					else {
+					if (currentNode != null && currentNode.mPosition.toPoint().equals(_target)) {
 						break;
 					}
 				}
-				// </TEMP>
+				if (currentNode == null || (mArena.isFull() && !currentNode.mPosition.toPoint().equals(_target))) {
+					// out of nodes, make do with the best partial path
+					result = followPartialPath();
+				}
 			} // else
 		} finally { Profiler.endProfiling(); }
 		// return the direction from the current _pos to the first next node on the path
 		return result;
 	}
 	
+	// Returns the direction of the first step to the node that got closest to the target, and starts a new search
+	FloatPoint followPartialPath() {
+		FloatPoint result = new FloatPoint(0, 0);
+		PathNode node = mBestNode;
+		if (node != null && node != mStartNode) {
+			// track back from the best node to the start node
+			while (node.mPreviousNode != null && node.mPreviousNode != mStartNode) {
+				node = node.mPreviousNode;
+			}
+			result = new FloatPoint(node.mPosition.x - mStartNode.mPosition.x, node.mPosition.y - mStartNode.mPosition.y);
+		}
+		mPartialPathCount++;
+		log("Used "+mArena.size()+" nodes without finding the target, following partial path "+mPartialPathCount);
+		// the next search starts from where this step leads
+		mArena.reset();
+		mStartNode = null;
+		mLatestNode = null;
+		mBestNode = null;
+		return result;
+	}
+
+	// Shares the budget with the other searching Directors, from the next tick on
+	void joinBudget() {
+		if (mBudget != null && !mbInBudget) {
+			mBudget.join();
+			mbInBudget = true;
+		}
+	}
+
+	// Leaves the budget to the Directors that are still searching
+	void leaveBudget() {
+		if (mbInBudget) {
+			mBudget.leave();
+			mbInBudget = false;
+		}
+	}
+
 	// Called to indicate that the game object has died
 	public void died(ObjectEvent _e) {
 		BaseGameObject src = (BaseGameObject)_e.getSource();
-		Point point = src.getPosition().toPoint();
-		GameMap map = src.getMap();
-		Point parcelposition = map.gameXYToParcelXY(point.x, point.y);
-		getFLAGMAP(map)[parcelposition.x][parcelposition.y]++;
+		MapCellCost.addDeath(src.getMap(), src.getPosition());
+		leaveBudget();
 	}
 
 	// determines the cost for an object at [_pos] to move in [_dst]
@@ -291,24 +381,8 @@ public class PathFinderDirector implements Director, ObjectListener {
 		cost += _pos.distance(_dst);
 		// determine the cost for the new position
 		Point parcelindex = _map.gameXYToParcelXY((int)_dst.x, (int)_dst.y);
-		if (
-			parcelindex.x >= 0 && 
-			parcelindex.x < getFLAGMAP(_map).length &&
-			parcelindex.y >= 0 &&
-			parcelindex.y < getFLAGMAP(_map)[parcelindex.x].length
-		) {
-			cost += getFLAGMAP(_map)[parcelindex.x][parcelindex.y] * 1000;
-			// <TEMP>
-			Parcel aNewParcel = _map.getParcel(_dst);
-			if (aNewParcel.getTerrain() instanceof WaterTerrain) {
-				cost += 1000;
-			}
-			// </TEMP>
-		}
-		else {
-			// hit boundary of map
-			cost += 100000;
-		}
+		// the boundary of the map and Parcels that can't be entered get a high, but finite, cost
+		cost += MapCellCost.getFiniteCost(_map, parcelindex.x, parcelindex.y);
 		// return accumulated cost
 		return cost;
 	}
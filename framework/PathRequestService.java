@@ -0,0 +1,385 @@
+/*
+ *  PathRequestService.java
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import util.*;
+
+/**
+ *  Receives the paths found for it by the PathRequestService
+ *
+ *@created    18 october 2026
+ */
+interface PathListener {
+	/**
+	 *  Gets called on the ticking thread when the path of a request was found
+	 *
+	 *@param  _request  The request, see PathRequest.getPath()
+	 */
+	void pathFound(PathRequest _request);
+}
+
+
+/**
+ *  The cost of entering the Parcels of a GameMap at one moment, copied so
+ *  that it can be used while the game goes on
+ *
+ *@created    18 october 2026
+ */
+class CellCostSnapshot implements CellCost {
+	int mnWidth;
+	double mvCosts[];
+
+
+	/**
+	 *  Constructor for the CellCostSnapshot object
+	 *
+	 *@param  _map  The map to copy the costs of
+	 */
+	CellCostSnapshot(GameMap _map) {
+		ParcelMap parcels = _map.getParcelMap();
+		mnWidth = parcels.getWidth();
+		mvCosts = new double[parcels.getWidth() * parcels.getHeight()];
+		for (int y = 0; y < parcels.getHeight(); y++) {
+			for (int x = 0; x < mnWidth; x++) {
+				mvCosts[y * mnWidth + x] = MapCellCost.getCost(_map, x, y);
+			}
+		}
+	}
+
+
+	public double getCost(int _x, int _y) {
+		return mvCosts[_y * mnWidth + _x];
+	}
+}
+
+
+/**
+ *  A request for a path between two Parcels
+ *
+ *@created    18 october 2026
+ */
+class PathRequest implements Runnable {
+	GameMap mMap;
+	int mnStartX, mnStartY;
+	int mnGoalX, mnGoalY;
+	int mnWidth, mnHeight;
+	double mnStepLength;
+	CellCost mCost;
+	PathListener mListener;
+	long mlTick;			// the game time at which the request was submitted
+	long mlCostVersion;		// the cost version of the map when the snapshot was taken
+	Future mFuture;
+	int mvPath[];
+	boolean mbFailed = false;	// whether the search threw an exception
+	PathRequest mSame;		// an earlier request for the same path, whose search is shared
+
+
+	/**
+	 *  Constructor for the PathRequest object
+	 *
+	 *@param  _map       The map to find the path on
+	 *@param  _startX    The x coordinate of the start Parcel
+	 *@param  _startY    The y coordinate of the start Parcel
+	 *@param  _goalX     The x coordinate of the goal Parcel
+	 *@param  _goalY     The y coordinate of the goal Parcel
+	 *@param  _listener  Receives the path
+	 */
+	PathRequest(GameMap _map, int _startX, int _startY, int _goalX, int _goalY, PathListener _listener) {
+		mMap = _map;
+		mnStartX = _startX;
+		mnStartY = _startY;
+		mnGoalX = _goalX;
+		mnGoalY = _goalY;
+		mnWidth = _map.getParcelMap().getWidth();
+		mnHeight = _map.getParcelMap().getHeight();
+		mnStepLength = Math.min(_map.mParcelWidth, _map.mParcelHeight);
+		mListener = _listener;
+	}
+
+
+	/**
+	 *  Finds the path, on a worker thread
+	 */
+	public void run() {
+		GridAStar engine = GridAStar.getInstance(mnWidth, mnHeight);
+		// the cost snapshot is all the search may look at, the map changes while it runs
+		mvPath = engine.findPath(mnStartX, mnStartY, mnGoalX, mnGoalY, mCost, mnStepLength);
+	}
+
+
+	/**
+	 *  Gets the path that was found
+	 *
+	 *@return    The Parcels (as y * width + x) from start to goal, or null if the goal can't be reached
+	 */
+	public int[] getPath() {
+		return (mSame != null) ? mSame.mvPath : mvPath;
+	}
+
+
+	/**
+	 *  Gets whether the search failed, then there is no path but the goal may
+	 *  still be reachable
+	 *
+	 *@return    True if the search failed
+	 */
+	public boolean isFailed() {
+		return mbFailed;
+	}
+
+
+	// The key of the path in the PathCache and the PathRequestService
+	Long getKey() {
+		return PathCache.getKey(mnStartY * mnWidth + mnStartX, mnGoalY * mnWidth + mnGoalX);
+	}
+}
+
+
+/**
+ *  Finds paths on a pool of worker threads, so that long searches don't
+ *  hold up the tick. The searches of one tick all use the same snapshot of
+ *  the costs, taken at the start of the tick before any trigger runs (or,
+ *  in the first tick a map is searched, at its first request; deaths only
+ *  count at the end of a tick, so that is the same). The paths are handed
+ *  to their PathListeners from the next tick on, always in the order in
+ *  which the requests were submitted.
+ *  <br>
+ *  By default a tick only delivers the paths whose search is done, up to
+ *  the first one that isn't; that one and the ones after it wait for a
+ *  later tick. So a long search never holds up the tick, but when a path
+ *  arrives depends on how fast the workers are, and two runs of the same
+ *  game can differ. With setWaiting(true) (or the iSpecies.pathWait system
+ *  property) the tick waits for every search of the previous ticks
+ *  instead, then the game plays out the same no matter how many workers
+ *  there are or how busy the machine is.
+ *  <br>
+ *  A search that failed is delivered without a path and marked as failed
+ *  (see PathRequest.isFailed()), so that its listener can ask again.
+ *  <br>
+ *  Requests for a path that is being searched already share that search,
+ *  the paths that were delivered end up in the PathCache of the map.
+ *
+ *@created    18 october 2026
+ */
+class PathRequestService implements TimerReceiver, TickListener {
+	/**
+	 *  The default number of worker threads, can be changed with the
+	 *  iSpecies.pathThreads system property
+	 */
+	public final static int DEFAULT_THREADS = Integer.getInteger("iSpecies.pathThreads", Math.max(1, Runtime.getRuntime().availableProcessors() - 1)).intValue();
+
+	TimerTriggerPool mHeartBeat;
+	ExecutorService mWorkers;
+	TimerTrigger mTrigger;
+	Vector mRequests = new Vector();	// the requests that haven't been delivered, in order of submission
+	Hashtable mSearches = new Hashtable();	// Long (start and goal Parcel) -> the request whose search runs for it
+	GameMap mSnapshotMap;
+	CellCostSnapshot mSnapshot;
+	long mlSnapshotVersion;
+	long mlDeliveredCount = 0;
+	boolean mbWaiting = Boolean.getBoolean("iSpecies.pathWait");
+	boolean mbShutdown = false;
+
+
+	/**
+	 *  Constructor for the PathRequestService object
+	 *
+	 *@param  _heartBeat  The pool whose ticks deliver the paths
+	 *@param  _nThreads   The number of worker threads
+	 */
+	PathRequestService(TimerTriggerPool _heartBeat, int _nThreads) {
+		mHeartBeat = _heartBeat;
+		mWorkers =
+			Executors.newFixedThreadPool(_nThreads,
+				new ThreadFactory() {
+					int mnCount = 0;
+
+					public synchronized Thread newThread(Runnable _r) {
+						Thread thread = new Thread(_r, "PathRequestService-" + (++mnCount));
+						// the workers shouldn't keep the game alive
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		mTrigger = new TimerTrigger(this);
+		mTrigger.setRepeat(true);
+		_heartBeat.addRel(mTrigger, 1);
+		_heartBeat.addTickListener(this);
+	}
+
+
+	/**
+	 *  Sets whether a tick waits for the searches that aren't done, see the
+	 *  class description
+	 *
+	 *@param  _waiting  True to wait, for a game that plays out the same every time
+	 */
+	public synchronized void setWaiting(boolean _waiting) {
+		mbWaiting = _waiting;
+	}
+
+
+	/**
+	 *  Submits a request for a path. During a parallel tick the request is
+	 *  deferred, so that the requests are submitted in the order of the
+	 *  triggers. After shutdown() the request is dropped.
+	 *
+	 *@param  _request  The request
+	 */
+	public void submit(final PathRequest _request) {
+		if (TimerTriggerPool.defer(
+			new Runnable() {
+				public void run() {
+					submit(_request);
+				}
+			})) {
+			return;
+		}
+		synchronized (this) {
+			if (mbShutdown) {
+				Logger.log("PathRequestService: dropped a request after shutdown");
+				return;
+			}
+			_request.mlTick = mHeartBeat.mlGametime;
+			_request.mCost = getSnapshot(_request.mMap);
+			_request.mlCostVersion = mlSnapshotVersion;
+			Long key = _request.getKey();
+			PathRequest same = (PathRequest)mSearches.get(key);
+			if ((same != null) && (same.mMap == _request.mMap) && (same.mlCostVersion == _request.mlCostVersion)) {
+				_request.mSame = same;
+				_request.mFuture = same.mFuture;
+			} else {
+				_request.mFuture = mWorkers.submit(_request);
+				mSearches.put(key, _request);
+			}
+			mRequests.addElement(_request);
+		}
+	}
+
+
+	// The costs to search with, the snapshot of the start of the tick
+	CellCostSnapshot getSnapshot(GameMap _map) {
+		if ((mSnapshot == null) || (_map != mSnapshotMap)) {
+			takeSnapshot(_map);
+		}
+		return mSnapshot;
+	}
+
+
+	void takeSnapshot(GameMap _map) {
+		mlSnapshotVersion = _map.getCostVersion();
+		mSnapshot = new CellCostSnapshot(_map);
+		mSnapshotMap = _map;
+	}
+
+
+	/**
+	 *  Takes the snapshot of the costs for the tick, if they changed since the last one
+	 *
+	 *@param  _tick  The tick that starts
+	 */
+	public synchronized void tickStarted(long _tick) {
+		if ((mSnapshotMap != null) && (mSnapshotMap.getCostVersion() != mlSnapshotVersion)) {
+			takeSnapshot(mSnapshotMap);
+		}
+	}
+
+
+	public void tickEnded(long _tick) {
+	}
+
+
+	/**
+	 *  Hands the paths of the requests from the previous ticks to their
+	 *  listeners, in order, up to the first search that isn't done (unless
+	 *  the tick waits for it). When the ticking thread is interrupted while
+	 *  waiting for a search, the remaining requests are delivered at the
+	 *  next tick.
+	 *
+	 *@param  _tt  The trigger of the service
+	 */
+	public void doTimer(TimerTrigger _tt) {
+		long tick = mHeartBeat.mlGametime;
+		while (true) {
+			PathRequest request;
+			synchronized (this) {
+				if (mRequests.isEmpty() || (((PathRequest)mRequests.firstElement()).mlTick >= tick)) {
+					return;
+				}
+				request = (PathRequest)mRequests.firstElement();
+				if (!mbWaiting && !request.mFuture.isDone()) {
+					// the later paths wait for this one, to keep the order
+					return;
+				}
+			}
+			boolean found = true;
+			try {
+				request.mFuture.get();
+			} catch (InterruptedException e) {
+				// the search may still be writing the path, so it's left for later
+				Logger.log("PathRequestService: interrupted while waiting for a path, " + e);
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				Logger.log("PathRequestService: search failed, " + e.getCause());
+				found = false;
+			}
+			synchronized (this) {
+				if (!mRequests.removeElement(request)) {
+					// dropped by shutdown()
+					return;
+				}
+				if (mSearches.get(request.getKey()) == request) {
+					mSearches.remove(request.getKey());
+				}
+				mlDeliveredCount++;
+			}
+			if (found) {
+				request.mMap.getPathCache().put(request.getKey(), request.mlCostVersion, request.getPath());
+			} else {
+				// not in the PathCache, so that the listener's next request searches again
+				request.mbFailed = true;
+			}
+			request.mListener.pathFound(request);
+		}
+	}
+
+
+	/**
+	 *  Gets the number of requests that are waiting for their path
+	 *
+	 *@return    The number of requests
+	 */
+	public synchronized int getPendingCount() {
+		return mRequests.size();
+	}
+
+
+	/**
+	 *  Gets the number of paths that were delivered
+	 *
+	 *@return    The number of paths
+	 */
+	public synchronized long getDeliveredCount() {
+		return mlDeliveredCount;
+	}
+
+
+	/**
+	 *  Stops the worker threads, the requests that are waiting are dropped,
+	 *  and so are the ones that are submitted later
+	 */
+	public void shutdown() {
+		mHeartBeat.remove(mTrigger);
+		mHeartBeat.removeTickListener(this);
+		synchronized (this) {
+			mbShutdown = true;
+			mRequests.removeAllElements();
+			mSearches.clear();
+		}
+		mWorkers.shutdownNow();
+	}
+}
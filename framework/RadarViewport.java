@@ -155,9 +155,10 @@ public class RadarViewport extends Viewport {
 	/**
 	 *  Description of the Method
 	 *
-	 *@param  _g  Description of the Parameter
+	 *@param  _g         Description of the Parameter
+	 *@param  _snapshot  The objects on the map
 	 */
-	public void paint(Graphics _g) {
+	public void paint(Graphics _g, WorldSnapshot _snapshot) {
 		_g.setColor(BG_COLOR);
 		_g.fillRect(0, 0, _g.getClipBounds().width, _g.getClipBounds().height);
 		drawOutline(_g);
@@ -165,19 +166,16 @@ public class RadarViewport extends Viewport {
 		synchronized(this) {
 			radar = mRadar;
 		}
-		if (radar != null) {
-			// for every GameObject within the radar's bounding box
-			for (Enumeration e = mRadar.getRadarMap().getObjectEnumeration(); e.hasMoreElements();) {
-				Logger.info("############");
-				GameObject object = (GameObject)e.nextElement();
-				if (object.getPosition() != null) {
-					FloatPoint p = new FloatPoint(object.getPosition());
-					p.x -= mRadar.getPosition().x;
-					p.y -= mRadar.getPosition().y;
-					drawObject(_g, p.toPoint(), 2);
-				}
+		if ((radar != null) && (radar.getMap() != null)) {
+			// for every GameObject within reach of the radar
+			int objects[] = _snapshot.getObjectsInRadius(radar.getPosition().x, radar.getPosition().y, radar.getRadius());
+			for (int i = 0; i < objects.length; i++) {
+				FloatPoint p = new FloatPoint(_snapshot.getX(objects[i]), _snapshot.getY(objects[i]));
+				p.x -= radar.getPosition().x;
+				p.y -= radar.getPosition().y;
+				drawObject(_g, p.toPoint(), 2);
 			}
-			drawSegment(_g, mRadar.getAngle(), mRadar.getRotationSpeed());
+			drawSegment(_g, radar.getAngle(), radar.getRotationSpeed());
 		}
 	}
 }
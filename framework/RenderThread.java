@@ -0,0 +1,133 @@
+/*
+ *  RenderThread.java
+ */
+
+import java.util.*;
+
+/**
+ *  Draws the views of a Universe on a thread of its own, so that the time
+ *  spent drawing doesn't add to the time of a tick. The views draw the
+ *  WorldSnapshots of a SnapshotPublisher, every view at its own interval
+ *  in ticks. When drawing takes longer than the ticks, the views simply
+ *  skip to the latest snapshot.
+ *  <br>
+ *  Snapshots are only taken while there are views, see Universe.getRenderer().
+ *
+ *@created    18 october 2026
+ */
+class RenderThread extends Thread {
+	SnapshotPublisher mPublisher;
+	Vector mReceivers = new Vector();	// the Receivers of the views
+	WorldSnapshot mLastSnapshot = null;
+
+
+	/**
+	 *  A view and when it was drawn
+	 */
+	static class Receiver {
+		SnapshotReceiver mReceiver;
+		int mnInterval;
+		long mlLastTick;
+
+
+		Receiver(SnapshotReceiver _receiver, int _interval) {
+			mReceiver = _receiver;
+			mnInterval = _interval;
+			// drawn at the first snapshot
+			mlLastTick = -_interval;
+		}
+	}
+
+
+	/**
+	 *  Constructor for the RenderThread object, the thread still has to be started
+	 *
+	 *@param  _game  The Universe whose views are drawn
+	 */
+	RenderThread(Universe _game) {
+		super("RenderThread");
+		// the views shouldn't keep the game alive
+		setDaemon(true);
+		mPublisher = new SnapshotPublisher(_game);
+	}
+
+
+	/**
+	 *  Gets the publisher of the snapshots
+	 *
+	 *@return    The publisher
+	 */
+	public SnapshotPublisher getPublisher() {
+		return mPublisher;
+	}
+
+
+	/**
+	 *  Adds a view, snapshots are taken as long as there are views
+	 *
+	 *@param  _receiver  The view
+	 *@param  _interval  The number of ticks between two drawings of the view
+	 */
+	public synchronized void add(SnapshotReceiver _receiver, int _interval) {
+		if (mReceivers.isEmpty()) {
+			mPublisher.start();
+		}
+		mReceivers.addElement(new Receiver(_receiver, _interval));
+	}
+
+
+	/**
+	 *  Removes a view. A view that is being drawn at the moment is drawn to the end.
+	 *
+	 *@param  _receiver  The view
+	 */
+	public synchronized void remove(SnapshotReceiver _receiver) {
+		for (int i = 0; i < mReceivers.size(); i++) {
+			if (((Receiver)mReceivers.elementAt(i)).mReceiver == _receiver) {
+				mReceivers.removeElementAt(i);
+				if (mReceivers.isEmpty()) {
+					mPublisher.stop();
+				}
+				return;
+			}
+		}
+	}
+
+
+	/**
+	 *  Main processing method for the RenderThread object. Waits for a new
+	 *  snapshot and gives it to the views whose interval has passed.
+	 */
+	public void run() {
+		while (true) {
+			try {
+				WorldSnapshot snapshot;
+				synchronized (mPublisher) {
+					while (((snapshot = mPublisher.getSnapshot()) == null) || (snapshot == mLastSnapshot)) {
+						mPublisher.wait();
+					}
+				}
+				mLastSnapshot = snapshot;
+				Object receivers[];
+				synchronized (this) {
+					receivers = mReceivers.toArray();
+				}
+				for (int i = 0; i < receivers.length; i++) {
+					Receiver receiver = (Receiver)receivers[i];
+					if (snapshot.getTick() - receiver.mlLastTick >= receiver.mnInterval) {
+						receiver.mlLastTick = snapshot.getTick();
+						try {
+							receiver.mReceiver.render(snapshot);
+						} catch (RuntimeException e) {
+							// one broken view shouldn't stop the others
+							Logger.log("RenderThread: could not draw " + receiver.mReceiver + ", " + e);
+							e.printStackTrace(System.err);
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				Logger.log("RenderThread: somebody woke me, " + e);
+			}
+		}
+	}
+}
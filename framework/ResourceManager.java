@@ -3,6 +3,8 @@ import java.io.*;
 import java.net.*;
 import java.util.*;
 import java.awt.*;
+import java.awt.image.*;
+import javax.imageio.*;
 
 /**
  *  Handles the loading and management of the resources (like Images) used in the application.
@@ -15,6 +17,7 @@ public class ResourceManager {
 	Dictionary dictTileNames;
 	Dictionary dictTileMaps;
 	Dictionary dictTiles;
+	Dictionary dictTerrains;
 
 
 	/**
@@ -26,6 +29,7 @@ public class ResourceManager {
 		dictTileNames = new Hashtable();
 		dictTileMaps = new Hashtable();
 		dictTiles = new Hashtable();
+		dictTerrains = new Hashtable();
 	}
 
 
@@ -45,7 +49,9 @@ public class ResourceManager {
 
 
 	/**
-	 *  Gets an Image using the standard JDK mechanism
+	 *  Gets an Image, decoded right away into the format of the screen so that
+	 *  drawing it is fast. If it can't be decoded it's loaded in the background
+	 *  using the standard JDK mechanism.
 	 *
 	 *@param  _sName  The path/name of the image to get
 	 *@return         An Image object
@@ -53,6 +59,14 @@ public class ResourceManager {
 	protected static Image readImage(String _sName) {
 		Image img;
 		URL url = ResourceManager.class.getResource(_sName);
+		try {
+			BufferedImage decoded = (url != null) ? ImageIO.read(url) : ImageIO.read(new File(_sName));
+			if (decoded != null) {
+				return toCompatibleImage(decoded);
+			}
+		} catch (IOException e) {
+			Logger.log("Could not decode image '" + _sName + "': " + e);
+		}
 		if (url != null) {
 			img = Toolkit.getDefaultToolkit().createImage(url);
 		} else {
@@ -62,6 +76,29 @@ public class ResourceManager {
 	}
 
 
+	/**
+	 *  Copies an image into the format of the screen, the format Java2D can
+	 *  draw without converting it
+	 *
+	 *@param  _img  The image
+	 *@return       The image in the format of the screen, or the image itself if there is no screen
+	 */
+	protected static BufferedImage toCompatibleImage(BufferedImage _img) {
+		if (GraphicsEnvironment.isHeadless()) {
+			return _img;
+		}
+		GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+		if (_img.getColorModel().equals(gc.getColorModel(_img.getTransparency()))) {
+			return _img;
+		}
+		BufferedImage result = gc.createCompatibleImage(_img.getWidth(), _img.getHeight(), _img.getTransparency());
+		Graphics2D g = result.createGraphics();
+		g.drawImage(_img, 0, 0, null);
+		g.dispose();
+		return result;
+	}
+
+
 	/**
 	 *  Registers an Image by Id with the resource manager
 	 *
@@ -118,13 +155,17 @@ public class ResourceManager {
 	 *@param  _sName  The path/name of the tile set to register
 	 */
 	public void registerTileSet(int _nId, String _sName) {
-		Image tileMap = readImage("res/Tiles/" + _sName + "Tiles_65x65.gif");
+		Image tileMap = readImage("res/tiles/" + _sName + "Tiles_65x65.gif");
 		ImageStrip tiles = new ImageStrip(tileMap, 65, 65);
 
 		Integer i = new Integer(_nId);
 		dictTileNames.put(i, _sName);
 		dictTileMaps.put(i, tileMap);
 		dictTiles.put(i, tiles);
+		// the Terrains still refer to the old tiles
+		synchronized (dictTerrains) {
+			((Hashtable)dictTerrains).clear();
+		}
 
 		Logger.info("Registered tileset '" + _sName + "' (#" + _nId + ")");
 	}
@@ -162,6 +203,53 @@ public class ResourceManager {
 	}
 
 
+	/**
+	 *  Checks whether the Images of all tile sets have been loaded
+	 *
+	 *@return    True if drawing the tiles won't change anymore
+	 */
+	public boolean isTileSetsLoaded() {
+		for (Enumeration e = dictTiles.elements(); e.hasMoreElements(); ) {
+			if (!((ImageStrip)e.nextElement()).isLoaded()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 *  Retrieves the shared Terrain for a tile set and shape
+	 *
+	 *@param  _nTileSet  The Id of the tile set of the Terrain
+	 *@param  _nShape    The shape of the Terrain
+	 *@return            The Terrain, or null if it hasn't been registered yet
+	 */
+	public Terrain getTerrain(int _nTileSet, int _nShape) {
+		return (Terrain)dictTerrains.get(new Integer((_nTileSet << 16) | _nShape));
+	}
+
+
+	/**
+	 *  Registers a Terrain, so that it can be shared by all Parcels with the same tile set and shape.
+	 *  If one was registered already for the same tile set and shape, that one is kept.
+	 *
+	 *@param  _terrain  The Terrain to register
+	 *@return           The Terrain that is registered for its tile set and shape
+	 */
+	public Terrain registerTerrain(Terrain _terrain) {
+		Integer key = new Integer((_terrain.getTileSet() << 16) | _terrain.getShape());
+		synchronized (dictTerrains) {
+			Terrain t = (Terrain)dictTerrains.get(key);
+			if (t == null) {
+				dictTerrains.put(key, _terrain);
+				t = _terrain;
+			}
+			return t;
+		}
+	}
+
+
 	/**
 	 *  Returns the width for all the tiles that are managed by this object
 	 *
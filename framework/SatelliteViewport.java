@@ -1,5 +1,6 @@
 
 import java.awt.*;
+import java.awt.image.*;
 import java.util.*;
 
 import util.*;
@@ -7,6 +8,12 @@ import util.*;
 public class SatelliteViewport extends Viewport {
 	Satellite mSatellite;
 	Dimension mPreferredSize;
+	// the terrain of the map, only drawn again where Parcels change
+	BufferedImage mTerrainImg = null;
+	ParcelMap mTerrainParcels = null;
+	DirtyRegion mTerrainRegion = null;
+	// the colors of the Terrains for every base height
+	Hashtable mHeightColors = new Hashtable();
 	
 	// class constants
 	public final static int PREFERRED_SCALE = 32; // size of a parcel in pixels
@@ -34,6 +41,10 @@ public class SatelliteViewport extends Viewport {
 
 	public void terminate() {
 		super.terminate();
+		if (mTerrainParcels != null) {
+			mTerrainParcels.removeParcelListener(mTerrainRegion);
+			mTerrainParcels = null;
+		}
 		mSatellite.terminate();
 	}
 
@@ -53,27 +64,77 @@ public class SatelliteViewport extends Viewport {
 		return mPreferredSize;
 	}
 	
+	// the color of a Terrain at a base height, every unit of height makes it darker
+	Color getHeightColor(Terrain terrain, int h) {
+		h = Math.max(0, h);
+		Long key = Long.valueOf(((long)terrain.color.getRGB() << 32) | h);
+		Color aColor = (Color)mHeightColors.get(key);
+		if (aColor == null) {
+			aColor = new java.awt.Color(terrain.color.getRGB());
+			for (int i=0; i < h; i++) {
+				aColor = aColor.darker();
+			}
+			mHeightColors.put(key, aColor);
+		}
+		return aColor;
+	}
+	
 	// draws the terrain of a parcel
 	void drawParcelTerrain(Graphics g, int x, int y, int h, Terrain terrain) {
-		// determine color
-		Color aColor = new java.awt.Color(terrain.color.getRGB());
-		for (int i=0; i < h; i++) {
-			aColor = aColor.darker();
+		if (terrain == null) {
+			return;
 		}
-		g.setColor(aColor);
+		g.setColor(getHeightColor(terrain, h));
 		// draw rectangle
-		float fScaleX = g.getClipBounds().width / mSatellite.getMap().getParcelMap().getWidth();
-		float fScaleY = g.getClipBounds().height / mSatellite.getMap().getParcelMap().getHeight();
+		float fScaleX = mTerrainImg.getWidth() / mSatellite.getMap().getParcelMap().getWidth();
+		float fScaleY = mTerrainImg.getHeight() / mSatellite.getMap().getParcelMap().getHeight();
 		g.fillRect(
 			(int)(x * fScaleX),
 			(int)(y * fScaleY),
-			(int)((x+1) * fScaleX) - 1,
-			(int)((y+1) * fScaleY) - 1
+			(int)((x+1) * fScaleX) - (int)(x * fScaleX) - 1,
+			(int)((y+1) * fScaleY) - (int)(y * fScaleY) - 1
 		);
 	}
 	
-	void drawObject(Graphics g, Point gp, GameObject obj) {
-		Point sp = gameToScreenCoords(gp);
+	// draws the terrain layer again where parcels changed, or completely if it doesn't fit the view anymore
+	void updateTerrain(int _width, int _height) {
+		ParcelMap pm = mSatellite.getMap().getParcelMap();
+		if (pm != mTerrainParcels) {
+			if (mTerrainParcels != null) {
+				mTerrainParcels.removeParcelListener(mTerrainRegion);
+			}
+			mTerrainParcels = pm;
+			mTerrainRegion = new DirtyRegion(pm.getWidth(), pm.getHeight());
+			pm.addParcelListener(mTerrainRegion);
+			mTerrainImg = null;
+		}
+		if ((mTerrainImg == null) || (mTerrainImg.getWidth() != _width) || (mTerrainImg.getHeight() != _height)) {
+			mTerrainImg = new BufferedImage(_width, _height, BufferedImage.TYPE_INT_RGB);
+			mTerrainRegion.invalidateAll();
+		}
+		int cells[] = mTerrainRegion.take();
+		Graphics g = mTerrainImg.getGraphics();
+		if (cells == null) {
+			g.setColor(BG_COLOR);
+			g.fillRect(0, 0, _width, _height);
+			for (int x=0; x < pm.getWidth(); x++) {
+				for (int y=0; y < pm.getHeight(); y++) {
+					drawParcelTerrain(g, x, y, pm.getBaseHeight(x, y), pm.getTerrain(x, y));
+				} // for y
+			} // for x
+		} else {
+			for (int i=0; i < cells.length; i++) {
+				int x = cells[i] % pm.getWidth();
+				int y = cells[i] / pm.getWidth();
+				drawParcelTerrain(g, x, y, pm.getBaseHeight(x, y), pm.getTerrain(x, y));
+			}
+		}
+		g.dispose();
+	}
+	
+	void drawObject(Graphics g, WorldSnapshot snapshot, int index) {
+		GameObject obj = snapshot.getObject(index);
+		Point sp = gameToScreenCoords(new FloatPoint(snapshot.getX(index), snapshot.getY(index)).toPoint());
 		
 		if (obj instanceof Radar) {
 			g.setColor(Color.black);
@@ -85,7 +146,7 @@ public class SatelliteViewport extends Viewport {
 		}
 		if (obj instanceof Targettable) {
 			g.setColor(Color.white);
-			Point target = ((Targettable)obj).getTarget();
+			Point target = snapshot.getTarget(index);
 			if (target != null) {
 				Point tsp = gameToScreenCoords(target);
 				g.drawLine(sp.x, sp.y, tsp.x, tsp.y);
@@ -93,39 +154,55 @@ public class SatelliteViewport extends Viewport {
 		}
 		if (obj instanceof PathFinder) {
 			PathFinder pf = (PathFinder)obj;
+			if (pf.mDirector instanceof GridPathDirector) {
+				// draw the planned path through the centers of the parcels
+				Point path[] = snapshot.getPath(index);
+				if (path != null) {
+					g.setColor(Color.magenta);
+					for (int i=1; i < path.length; i++) {
+						Point from = gameToScreenCoords(path[i-1]);
+						Point to = gameToScreenCoords(path[i]);
+						g.drawLine(from.x, from.y, to.x, to.y);
+					}
+				}
+			}
 			if (pf.mDirector instanceof PathFinderDirector) {
+				// REMARK: the search tree isn't in the snapshot, it's read while the
+				// search goes on. That's good enough for debugging the path finding.
 				PathFinderDirector director = (PathFinderDirector)pf.mDirector;
-				if (director.mLatestNode != null) {
+				PathFinderDirector.PathNode latestNode = director.mLatestNode;
+				if (latestNode != null) {
 					g.setColor(Color.magenta);
-					Point current = gameToScreenCoords(director.mLatestNode.mPosition.toPoint());
+					Point current = gameToScreenCoords(latestNode.mPosition.toPoint());
 					g.drawOval(current.x-1, current.y-1, 2, 2);
 				}
 				// recursively draw all path nodes
 				drawPathNode(g, director.mStartNode);
-				if (director.mLatestNode != null) {
+				Point target = snapshot.getTarget(index);
+				if ((latestNode != null) && (target != null)) {
 					// draw the point that was evaluated last
 					g.setColor(Color.magenta);
-					Point current = gameToScreenCoords(director.mLatestNode.mPosition.toPoint());
+					Point current = gameToScreenCoords(latestNode.mPosition.toPoint());
 					g.drawOval(current.x-1, current.y-1, 2, 2);
 					// draw the min cost for the node evaluated
 					g.drawString(
-						StringHelper.toString(director.mLatestNode.mCost),
-						obj.getPosition().toPoint().x+10, 
-						obj.getPosition().toPoint().y
+						StringHelper.toString(latestNode.mCost),
+						(int)snapshot.getX(index)+10, 
+						(int)snapshot.getY(index)
 					);
 					g.drawString(
-						StringHelper.toString(director.mLatestNode.mCost),
+						StringHelper.toString(latestNode.mCost),
 						current.x+10, 
 						current.y
 					);
 					// draw the potential cost to reach the target
 					g.drawString(
-						StringHelper.toString(director.mLatestNode.mPotentialCost), 
-						gameToScreenCoords(((Targettable)obj).getTarget()).x+10, 
-						gameToScreenCoords(((Targettable)obj).getTarget()).y+10
+						StringHelper.toString(latestNode.mPotentialCost), 
+						gameToScreenCoords(target).x+10, 
+						gameToScreenCoords(target).y+10
 					);
 					// draw the path from the start to the node that was evaluated last time
-					PathFinderDirector.PathNode currentBestNode = director.mLatestNode;
+					PathFinderDirector.PathNode currentBestNode = latestNode;
 					while (currentBestNode.mPreviousNode != null) {
 						Point from = gameToScreenCoords(currentBestNode.mPosition.toPoint());
 						Point to = gameToScreenCoords(currentBestNode.mPreviousNode.mPosition.toPoint());
@@ -160,19 +237,14 @@ public class SatelliteViewport extends Viewport {
 		}
 	}
 
-	public void paint(Graphics g) {
-		int x, y;
-		
-		for ( x=0; x < mSatellite.getMap().getParcelMap().getWidth(); x++) {
-			for ( y=0; y < mSatellite.getMap().getParcelMap().getHeight(); y++) {
-				Parcel p = mSatellite.getMap().getParcelMap().getParcel(x,y);
-				drawParcelTerrain(g, x, y, p.getBaseHeight(), p.getTerrain());
-			} // for y
-		} // for x
+	public void paint(Graphics g, WorldSnapshot snapshot) {
+		// the terrain hardly ever changes, copy it from the terrain layer
+		Rectangle clip = g.getClipBounds();
+		updateTerrain(clip.width, clip.height);
+		g.drawImage(mTerrainImg, 0, 0, null);
 		
-		for (Enumeration e = mSatellite.getMap().getRange().getObjectEnumeration(); e.hasMoreElements(); ) {
-			GameObject obj = (GameObject)e.nextElement();
-			drawObject(g, obj.getPosition().toPoint(), obj);
+		for (int i=0; i < snapshot.getObjectCount(); i++) {
+			drawObject(g, snapshot, i);
 		} // for objects
 	}
 	
@@ -182,9 +254,9 @@ public class SatelliteViewport extends Viewport {
 		Point p = screenToGameCoords(mouseToScreenCoords(event.getPoint()));
 		Point pp = mSatellite.getMap().gameXYToParcelXY(p.x, p.y);
 		Logger.log("MousePressed " + p + pp);
-		MapView v = mSatellite.getMap().getRange(p, 32, 32);
-		for (Enumeration e = v.getObjectEnumeration(); e.hasMoreElements(); ) {
-			GameObject obj = (GameObject)e.nextElement();
+		Vector objects = mSatellite.getMap().getObjectsInRect(p.x - 16, p.y - 16, 32, 32);
+		for (int i = 0; i < objects.size(); i++) {
+			GameObject obj = (GameObject)objects.elementAt(i);
 			Logger.log(obj.getName());
 			if (obj instanceof Targettable) {
 				Targettable to = (Targettable)obj;
@@ -0,0 +1,95 @@
+/*
+ *  SearchBudget.java
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  The number of nodes that all searching Directors together may expand
+ *  in a tick, so that a crowd of objects that can't find their target
+ *  doesn't slow down the game.
+ *  <br>
+ *  The budget is shared out evenly over the Directors that use it: a
+ *  Director joins when it is created and leaves when its search is done
+ *  or its object died. The share is worked out when a tick starts, before
+ *  any trigger of the tick runs, from the number of Directors at that
+ *  moment. So together the Directors never
+ *  expand more than the budget (unless there are more Directors than
+ *  expansions, everyone gets at least 1), and the share doesn't depend on
+ *  the order in which the objects of a parallel tick happen to run.
+ *
+ *@created    18 october 2026
+ */
+class SearchBudget implements TickListener {
+	/**
+	 *  The default number of expansions per tick, can be changed with the
+	 *  iSpecies.expansionsPerTick system property
+	 */
+	public final static int DEFAULT_EXPANSIONS = Integer.getInteger("iSpecies.expansionsPerTick", 5000).intValue();
+
+	int mnExpansions;
+	volatile int mnShare = 1;
+	AtomicInteger mnUsers = new AtomicInteger();	// the Directors that joined and didn't leave
+
+
+	/**
+	 *  Constructor for the SearchBudget object
+	 *
+	 *@param  _heartBeat   The pool whose ticks renew the budget
+	 *@param  _expansions  The number of expansions per tick
+	 */
+	SearchBudget(TimerTriggerPool _heartBeat, int _expansions) {
+		mnExpansions = _expansions;
+		_heartBeat.addTickListener(this);
+	}
+
+
+	/**
+	 *  Gets the number of expansions per tick
+	 *
+	 *@return    The number of expansions
+	 */
+	public int getExpansions() {
+		return mnExpansions;
+	}
+
+
+	/**
+	 *  Adds a Director to those that share the budget, from the next tick on
+	 */
+	public void join() {
+		mnUsers.incrementAndGet();
+	}
+
+
+	/**
+	 *  Removes a Director from those that share the budget, from the next tick on
+	 */
+	public void leave() {
+		mnUsers.decrementAndGet();
+	}
+
+
+	/**
+	 *  Gets the number of nodes a Director may expand in this tick
+	 *
+	 *@return    The number of expansions, at least 1
+	 */
+	public int getShare() {
+		return mnShare;
+	}
+
+
+	/**
+	 *  Shares out the budget of the tick
+	 *
+	 *@param  _tick  The tick that starts
+	 */
+	public void tickStarted(long _tick) {
+		mnShare = Math.max(1, mnExpansions / Math.max(1, mnUsers.get()));
+	}
+
+
+	public void tickEnded(long _tick) {
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ *  SnapshotPublisher.java
+ */
+
+import java.util.*;
+
+/**
+ *  Takes a WorldSnapshot of the map at the end of every tick, for the views that draw
+ *  it on the RenderThread. The snapshot that is being drawn and the one
+ *  that is being taken are never the same object: a new snapshot is taken
+ *  on the thread that runs the ticks and then replaces the published one
+ *  at once.
+ *  <br>
+ *  The publisher also tells the views which Parcels changed since the
+ *  previous snapshot, through DirtyRegions that only change when a snapshot
+ *  is published. To get Parcels and a snapshot that match, lock the
+ *  publisher while taking the DirtyRegion and getting the snapshot.
+ *  <br>
+ *  The snapshot is taken when the tick has ended (see TickListener), after
+ *  all its triggers have run. No snapshots are taken while the game is
+ *  catching up with real time, they count as skipped rendering activations
+ *  of the TimerTriggerPool.
+ *
+ *@created    18 october 2026
+ */
+class SnapshotPublisher implements TickListener {
+	Universe mGame;
+	WorldSnapshot mSnapshot = null;
+	// where objects moved on the map since the last snapshot
+	GameMap mMap = null;
+	DirtyRegion mMapRegion = null;
+	// the regions of the views, told about the moves at every snapshot
+	Vector mRegions = new Vector();
+
+
+	/**
+	 *  Constructor for the SnapshotPublisher object
+	 *
+	 *@param  _game  The Universe whose map is published
+	 */
+	SnapshotPublisher(Universe _game) {
+		mGame = _game;
+	}
+
+
+	/**
+	 *  Starts taking a snapshot at every tick
+	 */
+	public void start() {
+		mGame.heartBeat.addTickListener(this);
+	}
+
+
+	/**
+	 *  Stops taking snapshots
+	 */
+	public void stop() {
+		mGame.heartBeat.removeTickListener(this);
+		synchronized (this) {
+			if (mMap != null) {
+				mMap.removeDirtyRegion(mMapRegion);
+				mMap = null;
+			}
+			// a view that starts again has to draw everything
+			mSnapshot = null;
+		}
+	}
+
+
+	/**
+	 *  Gets the snapshot that was published last
+	 *
+	 *@return    The snapshot, or null if none was taken yet
+	 */
+	public synchronized WorldSnapshot getSnapshot() {
+		return mSnapshot;
+	}
+
+
+	/**
+	 *  Adds a DirtyRegion that is told which Parcels changed at every snapshot
+	 *
+	 *@param  _region  The region, for the map of the Universe
+	 */
+	public synchronized void addDirtyRegion(DirtyRegion _region) {
+		mRegions.addElement(_region);
+	}
+
+
+	/**
+	 *  Removes a DirtyRegion
+	 *
+	 *@param  _region  The region
+	 */
+	public synchronized void removeDirtyRegion(DirtyRegion _region) {
+		mRegions.removeElement(_region);
+	}
+
+
+	public void tickStarted(long _tick) {
+	}
+
+
+	/**
+	 *  Takes a snapshot of the map and publishes it, unless the game is
+	 *  catching up
+	 *
+	 *@param  _tick  The tick that ended
+	 */
+	public void tickEnded(long _tick) {
+		GameMap map = mGame.getMap();
+		if ((map == null) || mGame.heartBeat.skipRendering()) {
+			return;
+		}
+		synchronized (this) {
+			if (map != mMap) {
+				if (mMap != null) {
+					mMap.removeDirtyRegion(mMapRegion);
+				}
+				mMap = map;
+				mMapRegion = new DirtyRegion(map.getParcelMap().getWidth(), map.getParcelMap().getHeight());
+				map.addDirtyRegion(mMapRegion);
+			}
+		}
+		// taken outside of the lock, the views go on drawing the previous one
+		WorldSnapshot snapshot = new WorldSnapshot(_tick, map);
+		synchronized (this) {
+			int cells[] = mMapRegion.take();
+			for (int i = 0; i < mRegions.size(); i++) {
+				DirtyRegion region = (DirtyRegion)mRegions.elementAt(i);
+				if (cells == null) {
+					region.invalidateAll();
+				} else {
+					for (int j = 0; j < cells.length; j++) {
+						region.invalidate(cells[j] % mMapRegion.mnWidth, cells[j] / mMapRegion.mnWidth);
+					}
+				}
+			}
+			mSnapshot = snapshot;
+			// wake up the RenderThread
+			notifyAll();
+		}
+	}
+}
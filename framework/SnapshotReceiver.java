@@ -0,0 +1,19 @@
+/*
+ *  SnapshotReceiver.java
+ */
+
+/**
+ *  Describes the interface to implement by objects that want to draw the
+ *  WorldSnapshots of the RenderThread
+ *
+ *@created    18 october 2026
+ */
+interface SnapshotReceiver {
+
+	/**
+	 *  Called on the RenderThread with the latest snapshot
+	 *
+	 *@param  _snapshot  The snapshot
+	 */
+	public void render(WorldSnapshot _snapshot);
+}
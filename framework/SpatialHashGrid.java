@@ -0,0 +1,250 @@
+/*
+ *  SpatialHashGrid.java
+ */
+
+import java.util.*;
+
+import util.*;
+
+/**
+ *  Index of the GameObjects on a map in a grid of equally sized cells.
+ *  Unlike the Parcels, the size of the cells does not come from the
+ *  map file, so it can be tuned to the typical size of a query (e.g.
+ *  the radius of a radar). A query only looks at the cells it overlaps.
+ *  <br>
+ *  The grid remembers the position every object had when it was last
+ *  moved, the queries are answered with those positions. The GameMap
+ *  keeps the grid up to date from moveObject().
+ *
+ *@created    18 october 2026
+ */
+class SpatialHashGrid {
+	/**
+	 *  The default size of a cell in game units, can be changed with the
+	 *  iSpecies.gridCellSize system property
+	 */
+	public final static int DEFAULT_CELL_SIZE = Integer.getInteger("iSpecies.gridCellSize", 16).intValue();
+
+	/**
+	 *  Where the grid keeps an object
+	 */
+	static class Entry {
+		GameObject mObject;
+		double mX, mY;
+		int mnCell;
+
+		Entry(GameObject _object) {
+			mObject = _object;
+		}
+	}
+
+	long mlWidth, mlHeight;			// Size of the indexed area in game units
+	int mnCellSize;					// Size of a cell in game units
+	int mnColumns, mnRows;			// Size of the grid in cells
+	Vector mvCells[];				// Entries per cell, created when the first object enters it
+	Hashtable mEntries;				// GameObject -> Entry
+
+
+	/**
+	 *  Constructor for the SpatialHashGrid object
+	 *
+	 *@param  _width     Width of the indexed area in game units
+	 *@param  _height    Height of the indexed area in game units
+	 *@param  _cellSize  Size of a cell in game units
+	 */
+	SpatialHashGrid(long _width, long _height, int _cellSize) {
+		mlWidth = _width;
+		mlHeight = _height;
+		mEntries = new Hashtable();
+		setCellSize(_cellSize);
+	}
+
+
+	/**
+	 *  Gets the size of a cell
+	 *
+	 *@return    The size of a cell in game units
+	 */
+	public int getCellSize() {
+		return mnCellSize;
+	}
+
+
+	/**
+	 *  Changes the size of the cells and puts all objects in their new cell
+	 *
+	 *@param  _cellSize  The new size of a cell in game units
+	 */
+	public synchronized void setCellSize(int _cellSize) {
+		if (_cellSize <= 0) {
+			throw new IllegalArgumentException("Cell size must be positive: " + _cellSize);
+		}
+		mnCellSize = _cellSize;
+		mnColumns = (int)Math.max(1, (mlWidth + _cellSize - 1) / _cellSize);
+		mnRows = (int)Math.max(1, (mlHeight + _cellSize - 1) / _cellSize);
+		mvCells = new Vector[mnColumns * mnRows];
+		for (Enumeration e = mEntries.elements(); e.hasMoreElements(); ) {
+			Entry entry = (Entry)e.nextElement();
+			entry.mnCell = cellOf(entry.mX, entry.mY);
+			cell(entry.mnCell).addElement(entry);
+		}
+	}
+
+
+	/**
+	 *  Gets the number of objects in the grid
+	 *
+	 *@return    The number of objects
+	 */
+	public int size() {
+		return mEntries.size();
+	}
+
+
+	/**
+	 *  Puts an object at a new position, or removes it from the grid
+	 *
+	 *@param  _obj  The object that moved
+	 *@param  _to   The new position of the object, null to remove it
+	 */
+	public synchronized void move(GameObject _obj, FloatPoint _to) {
+		Entry entry = (Entry)mEntries.get(_obj);
+		if (_to == null) {
+			if (entry != null) {
+				mEntries.remove(_obj);
+				mvCells[entry.mnCell].removeElement(entry);
+			}
+			return;
+		}
+		int nCell = cellOf(_to.x, _to.y);
+		if (entry == null) {
+			entry = new Entry(_obj);
+			mEntries.put(_obj, entry);
+			cell(nCell).addElement(entry);
+		} else if (entry.mnCell != nCell) {
+			mvCells[entry.mnCell].removeElement(entry);
+			cell(nCell).addElement(entry);
+		}
+		entry.mnCell = nCell;
+		entry.mX = _to.x;
+		entry.mY = _to.y;
+	}
+
+
+	/**
+	 *  Finds the objects within a circle
+	 *
+	 *@param  _x       X coordinate of the center in game units
+	 *@param  _y       Y coordinate of the center in game units
+	 *@param  _radius  Radius of the circle in game units
+	 *@param  _result  The Vector the objects are added to
+	 *@return          The _result Vector
+	 */
+	public synchronized Vector queryRadius(double _x, double _y, double _radius, Vector _result) {
+		double r2 = _radius * _radius;
+		int left = column(_x - _radius);
+		int right = column(_x + _radius);
+		int top = row(_y - _radius);
+		int bottom = row(_y + _radius);
+		for (int y = top; y <= bottom; y++) {
+			for (int x = left; x <= right; x++) {
+				Vector cell = mvCells[y * mnColumns + x];
+				if (cell != null) {
+					for (int i = 0; i < cell.size(); i++) {
+						Entry entry = (Entry)cell.elementAt(i);
+						double dx = entry.mX - _x;
+						double dy = entry.mY - _y;
+						if (dx * dx + dy * dy <= r2) {
+							_result.addElement(entry.mObject);
+						}
+					}
+				}
+			}
+		}
+		return _result;
+	}
+
+
+	/**
+	 *  Finds the objects within a circle
+	 *
+	 *@param  _x       X coordinate of the center in game units
+	 *@param  _y       Y coordinate of the center in game units
+	 *@param  _radius  Radius of the circle in game units
+	 *@return          A new Vector with the objects
+	 */
+	public Vector queryRadius(double _x, double _y, double _radius) {
+		return queryRadius(_x, _y, _radius, new Vector());
+	}
+
+
+	/**
+	 *  Finds the objects within a rectangle
+	 *
+	 *@param  _left    Left side of the rectangle in game units
+	 *@param  _top     Top side of the rectangle in game units
+	 *@param  _width   Width of the rectangle in game units
+	 *@param  _height  Height of the rectangle in game units
+	 *@param  _result  The Vector the objects are added to
+	 *@return          The _result Vector
+	 */
+	public synchronized Vector queryRect(double _left, double _top, double _width, double _height, Vector _result) {
+		double right = _left + _width;
+		double bottom = _top + _height;
+		for (int y = row(_top); y <= row(bottom); y++) {
+			for (int x = column(_left); x <= column(right); x++) {
+				Vector cell = mvCells[y * mnColumns + x];
+				if (cell != null) {
+					for (int i = 0; i < cell.size(); i++) {
+						Entry entry = (Entry)cell.elementAt(i);
+						if ((entry.mX >= _left) && (entry.mX < right) && (entry.mY >= _top) && (entry.mY < bottom)) {
+							_result.addElement(entry.mObject);
+						}
+					}
+				}
+			}
+		}
+		return _result;
+	}
+
+
+	/**
+	 *  Finds the objects within a rectangle
+	 *
+	 *@param  _left    Left side of the rectangle in game units
+	 *@param  _top     Top side of the rectangle in game units
+	 *@param  _width   Width of the rectangle in game units
+	 *@param  _height  Height of the rectangle in game units
+	 *@return          A new Vector with the objects
+	 */
+	public Vector queryRect(double _left, double _top, double _width, double _height) {
+		return queryRect(_left, _top, _width, _height, new Vector());
+	}
+
+
+	// Column of the cell with the given x coordinate, objects outside the grid are kept in the border cells
+	int column(double _x) {
+		int x = (int)Math.floor(_x / mnCellSize);
+		return (x < 0) ? 0 : (x >= mnColumns) ? mnColumns - 1 : x;
+	}
+
+
+	// Row of the cell with the given y coordinate, objects outside the grid are kept in the border cells
+	int row(double _y) {
+		int y = (int)Math.floor(_y / mnCellSize);
+		return (y < 0) ? 0 : (y >= mnRows) ? mnRows - 1 : y;
+	}
+
+
+	int cellOf(double _x, double _y) {
+		return row(_y) * mnColumns + column(_x);
+	}
+
+
+	Vector cell(int _nCell) {
+		if (mvCells[_nCell] == null) {
+			mvCells[_nCell] = new Vector();
+		}
+		return mvCells[_nCell];
+	}
+}
@@ -17,53 +17,59 @@ public class Terrain {
 	public static final int VERY_ROUGH = 4;			// Very large obstacles
 	public static final int IMPOSSIBLE = 5;			// No movement possible
 
-	protected int m_nSupport;
+	protected final int m_nSupport;
 
-	protected int m_nObstacles;
+	protected final int m_nObstacles;
 	
-	protected Visual m_visual;
-	protected ResourceManager m_rm;
-	protected ImageStrip m_tiles;
-	protected int m_nShape;
-	protected int m_nTileSet;
+	// A Terrain can't be changed once it's created, so a single instance
+	// can be shared by all Parcels with the same tile set and shape.
+	// To change a Parcel, give it another Terrain.
+	protected final Visual m_visual;
+	protected final ImageStrip m_tiles;
+	protected final int m_nShape;
+	protected final int m_nTileSet;
 	
-	public Color color = Color.black;
+	public final Color color;
 	
 	public Visual getVisual() { return m_visual; }
-	public void setVisual(Visual _visual) { m_visual = _visual; }
 
 	public int getShape() { return m_nShape; }
-	public void setShape(int _nShape) {
-		m_nShape = _nShape;
-		((IndexedVisual)m_visual).setIndex(_nShape);
-	}
 
 	public int getTileSet() { return m_nTileSet; }
-	public void setTileSet(int _nTileSet) {
-		m_nTileSet = _nTileSet;
-		m_tiles = m_rm.getTileSet(_nTileSet);
-		m_visual = new IndexedVisual(m_tiles, m_nShape);
-	}
+
+	public int getSupport() { return m_nSupport; }
+
+	public int getObstacles() { return m_nObstacles; }
 	
-	Terrain(ResourceManager _rm, int _nTileSet, int _nShape) {
-		m_rm = _rm;
+	Terrain(ResourceManager _rm, int _nTileSet, int _nShape, Color _color, int _nSupport, int _nObstacles) {
+		m_nSupport = _nSupport;
+		m_nObstacles = _nObstacles;
 		m_nShape = _nShape;
-		setTileSet(_nTileSet);
+		m_nTileSet = _nTileSet;
+		m_tiles = _rm.getTileSet(_nTileSet);
+		m_visual = new IndexedVisual(m_tiles, m_nShape);
+		color = _color;
 	}
 
+	// Returns the shared Terrain for the tile set and shape, null if there is no such tile set
 	static public Terrain getShapedTerrain(ResourceManager rm, int nTileSet, int nShape) {
-		Terrain t = null;
+		Terrain t = rm.getTerrain(nTileSet, nShape);
 		
-		switch (nTileSet) {
-			case 0:
-				t = new GrassTerrain(rm, 0, nShape);
-				break;
-			case 1:
-				t = new WaterTerrain(rm, 1, nShape);
-				break;
-			case 2:
-				t = new DesertTerrain(rm, 2, nShape);
-				break;
+		if (t == null) {
+			switch (nTileSet) {
+				case 0:
+					t = new GrassTerrain(rm, 0, nShape);
+					break;
+				case 1:
+					t = new WaterTerrain(rm, 1, nShape);
+					break;
+				case 2:
+					t = new DesertTerrain(rm, 2, nShape);
+					break;
+			}
+			if (t != null) {
+				t = rm.registerTerrain(t);
+			}
 		}
 		
 		return t;
@@ -73,24 +79,21 @@ public class Terrain {
 class GrassTerrain extends Terrain {
 
 	GrassTerrain(ResourceManager _rm, int _nTileSet, int _nShape) {
-		super(_rm, _nTileSet, _nShape);
-		color = Color.green;
+		super(_rm, _nTileSet, _nShape, Color.green, HARD, SMOOTH);
 	}
 }
 
 class WaterTerrain extends Terrain {
 
 	WaterTerrain(ResourceManager _rm, int _nTileSet, int _nShape) {
-		super(_rm, _nTileSet, _nShape);
-		color = Color.blue;
+		super(_rm, _nTileSet, _nShape, Color.blue, VERY_SOFT, IMPOSSIBLE);
 	}
 }
 
 class DesertTerrain extends Terrain {
 
 	DesertTerrain(ResourceManager _rm, int _nTileSet, int _nShape) {
-		super(_rm, _nTileSet, _nShape);
-		color = Color.yellow;
+		super(_rm, _nTileSet, _nShape, Color.yellow, SOFT, SMOOTH);
 	}
 }
 
@@ -0,0 +1,139 @@
+/*
+ *  TerrainChunkCache.java
+ */
+
+import java.awt.image.*;
+import java.util.*;
+
+/**
+ *  The terrain of a view, cut into square chunks of a fixed size that are
+ *  drawn when they are first needed. Only a limited number of bytes is
+ *  spent on the chunks: when the cache is full the least recently used
+ *  chunk is dropped, so the memory of a view depends on the size of its
+ *  window and not on the size of the map.
+ *  <br>
+ *  The chunks that are on screen at the same time are always kept, even
+ *  when they take more than the limit.
+ *
+ *@created    18 october 2026
+ */
+class TerrainChunkCache {
+	/**
+	 *  The default number of bytes spent on chunks, can be changed with the
+	 *  iSpecies.terrainCacheBytes system property
+	 */
+	public final static int DEFAULT_BYTES = Integer.getInteger("iSpecies.terrainCacheBytes", 16 << 20).intValue();
+
+	int mnChunkSize;
+	long mlMaxBytes;
+	int mnMinChunks = 1;
+	LinkedHashMap mChunks;		// Long (chunk column and row) -> BufferedImage, in order of use
+
+
+	/**
+	 *  Constructor for the TerrainChunkCache object
+	 *
+	 *@param  _chunkSize  The width and height of a chunk in pixels
+	 *@param  _maxBytes   The number of bytes that may be spent on chunks
+	 */
+	TerrainChunkCache(int _chunkSize, long _maxBytes) {
+		mnChunkSize = _chunkSize;
+		mlMaxBytes = _maxBytes;
+		mChunks =
+			new LinkedHashMap(16, 0.75f, true) {
+				protected boolean removeEldestEntry(java.util.Map.Entry _eldest) {
+					return size() > getMaxChunks();
+				}
+			};
+	}
+
+
+	/**
+	 *  Gets the width and height of a chunk
+	 *
+	 *@return    The size in pixels
+	 */
+	public int getChunkSize() {
+		return mnChunkSize;
+	}
+
+
+	/**
+	 *  Gets the number of bytes a chunk takes
+	 *
+	 *@return    The number of bytes
+	 */
+	public long getChunkBytes() {
+		// a chunk is an image with an int per pixel
+		return 4L * mnChunkSize * mnChunkSize;
+	}
+
+
+	/**
+	 *  Sets the number of chunks that is kept whatever they take, the ones
+	 *  that fit in the window of the view
+	 *
+	 *@param  _chunks  The number of chunks
+	 */
+	public synchronized void setMinChunks(int _chunks) {
+		mnMinChunks = Math.max(1, _chunks);
+	}
+
+
+	/**
+	 *  Gets the number of chunks that is kept
+	 *
+	 *@return    The number of chunks
+	 */
+	public int getMaxChunks() {
+		return (int)Math.max(mnMinChunks, mlMaxBytes / getChunkBytes());
+	}
+
+
+	// The key of the chunk at column _x and row _y
+	static Long getKey(int _x, int _y) {
+		return Long.valueOf(((long)_x << 32) | (_y & 0xffffffffL));
+	}
+
+
+	/**
+	 *  Gets a chunk from the cache
+	 *
+	 *@param  _x  The column of the chunk, the chunk starts at _x * chunk size
+	 *@param  _y  The row of the chunk, the chunk starts at _y * chunk size
+	 *@return     The chunk, or null if it isn't cached
+	 */
+	public synchronized BufferedImage get(int _x, int _y) {
+		return (BufferedImage)mChunks.get(getKey(_x, _y));
+	}
+
+
+	/**
+	 *  Adds a chunk to the cache, which may drop the least recently used chunk
+	 *
+	 *@param  _x      The column of the chunk
+	 *@param  _y      The row of the chunk
+	 *@param  _chunk  The chunk
+	 */
+	public synchronized void put(int _x, int _y, BufferedImage _chunk) {
+		mChunks.put(getKey(_x, _y), _chunk);
+	}
+
+
+	/**
+	 *  Drops all chunks
+	 */
+	public synchronized void clear() {
+		mChunks.clear();
+	}
+
+
+	/**
+	 *  Gets the number of chunks in the cache
+	 *
+	 *@return    The number of chunks
+	 */
+	public synchronized int size() {
+		return mChunks.size();
+	}
+}
@@ -0,0 +1,18 @@
+/*
+ *  TickListener.java
+ */
+
+import java.util.EventListener;
+
+/**
+ *  Is told when a TimerTriggerPool starts and ends a tick, before the first
+ *  and after the last TimerTrigger of the tick is activated. The listeners
+ *  are called on the thread that calls tick().
+ *
+ *@created    18 october 2026
+ */
+interface TickListener extends EventListener {
+	void tickStarted(long _tick);
+
+	void tickEnded(long _tick);
+}
@@ -132,7 +132,9 @@ public class TopPanel extends java.awt.Panel {
 			"finder_"+mFinderIndex++,
 			game.getMap(),
 			game,
-			new Point(10, 10)
+			new Point(10, 10),
+			// all finders go to the same target, so they can share a flow field
+			new FlowFieldDirector()
 		);
 		mover.setTarget(new Point(400, 400));
 	}//GEN-LAST:event_addPathFinderBtnActionPerformed
@@ -166,17 +168,26 @@ public class TopPanel extends java.awt.Panel {
 				}
 			}
 		}
+		else if ("stats".equals(action)) {
+			// timing of the main loop, compared to the budget of a tick
+			Logger.info("ticks      = "+game.getTickCount());
+			Logger.info("last tick  = "+game.getLastTickDuration() / 1000+" usec");
+			Logger.info("avg tick   = "+game.getAverageTickDuration() / 1000+" usec");
+			Logger.info("max tick   = "+game.getMaxTickDuration() / 1000+" usec");
+			Logger.info("budget     = "+Universe.TICK_NANOS / 1000+" usec");
+			Logger.info("lag        = "+game.getLag() / 1000+" usec");
+			Logger.info("dropped    = "+game.getDroppedTicks()+" ticks, "+game.getDroppedFrames()+" frames");
+		}
 		else if ("fm".equals(action)) {
-			/*
-			mLogger.info("Flag map for PathFinder class:");
-			mLogger.info("FLAGMAP = "+PathFinder.FLAGMAP.length+" x "+PathFinder.FLAGMAP[0].length);
-			for (int y=0; y < PathFinder.FLAGMAP[1].length; y++) {
-				for (int x=0; x < PathFinder.FLAGMAP.length; x++) {
-					System.out.print(PathFinder.FLAGMAP[x][y]);
+			DangerMap dangers = game.getMap().getDangerMap();
+			Logger.info("Danger map = "+dangers.getWidth()+" x "+dangers.getHeight());
+			for (int y=0; y < dangers.getHeight(); y++) {
+				StringBuffer line = new StringBuffer();
+				for (int x=0; x < dangers.getWidth(); x++) {
+					line.append(dangers.get(x, y));
 				}
-				mLogger.info("");
+				Logger.info(line.toString());
 			}
-			*/
 		}
 	}//GEN-LAST:event_goBtnActionPerformed
 
@@ -1,5 +1,7 @@
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  *@author     Tako
@@ -117,6 +119,22 @@ class TimerTrigger implements Trigger {
 	int mnCount;
 	int mnCurrcount;
 
+	// Bookkeeping for the TimerTriggerPool, the slot of the TimerWheel this
+	// trigger is waiting in and its neighbours within that slot
+	TimerSlot mSlot;
+	TimerTrigger mPrevInSlot;
+	TimerTrigger mNextInSlot;
+	// When the trigger was scheduled, triggers of the same tick are activated in this order
+	long mlSequence;
+	// True while the TimerTriggerPool is activating this trigger
+	boolean mbActive;
+	// Whether the receiver may be called in parallel with other receivers
+	boolean mbConcurrent = false;
+	// Actions deferred during a parallel activation, see TimerTriggerPool.defer()
+	Vector mDeferred;
+	// Whether the receiver only draws, so it can be skipped when the game falls behind
+	boolean mbRendering = false;
+
 
 	/**
 	 *  Constructor for the TimerTrigger object
@@ -149,6 +167,26 @@ class TimerTrigger implements Trigger {
 	}
 	
 
+	/**
+	 *  Returns the number of ticks between two activations of a repeating trigger
+	 *
+	 *@return    The period
+	 */
+	public int getPeriod() {
+		return mnPeriod;
+	}
+
+
+	/**
+	 *  Sets the number of ticks between two activations of a repeating trigger
+	 *
+	 *@param  _period  The new period, at least 1
+	 */
+	public void setPeriod(int _period) {
+		mnPeriod = Math.max(1, _period);
+	}
+
+
 	/**
 	 *  Returns the current value for the repeat mode. It's a number
 	 *  indicating the number of times this TimerTrigger will be
@@ -193,6 +231,53 @@ class TimerTrigger implements Trigger {
 	}
 
 
+	/**
+	 *  Returns a boolean indicating if the receiver of this trigger can be
+	 *  activated in parallel with the receivers of other concurrent triggers.
+	 *
+	 *@return    True if concurrent, otherwise False
+	 */
+	public boolean isConcurrent() {
+		return mbConcurrent;
+	}
+
+
+	/**
+	 *  Marks the receiver of this trigger as being independent of other
+	 *  receivers, so that a parallel TimerTriggerPool can activate it on
+	 *  any thread. Such a receiver may only change the map and the pool
+	 *  through GameMap.moveObject() and the add/remove methods of the pool,
+	 *  which are deferred until all concurrent triggers of the tick are done.
+	 *
+	 *@param  _concurrent  The new concurrent value
+	 */
+	public void setConcurrent(boolean _concurrent) {
+		mbConcurrent = _concurrent;
+	}
+
+
+	/**
+	 *  Returns a boolean indicating if the receiver of this trigger only
+	 *  renders the game (as opposed to changing it).
+	 *
+	 *@return    True if rendering, otherwise False
+	 */
+	public boolean isRendering() {
+		return mbRendering;
+	}
+
+
+	/**
+	 *  Marks the receiver of this trigger as only rendering the game. The
+	 *  TimerTriggerPool skips such triggers while the game is catching up.
+	 *
+	 *@param  _rendering  The new rendering value
+	 */
+	public void setRendering(boolean _rendering) {
+		mbRendering = _rendering;
+	}
+
+
 	/**
 	 *  Resets the current repeat count to the value of 'count' as it
 	 *  was set on construction of this TimerTrigger or as it was set
@@ -212,6 +297,16 @@ class TimerTrigger implements Trigger {
 	 */
 	public void activate() {
 		mReceiver.doTimer(this);
+		skip();
+	}
+
+
+	/**
+	 *  Skips an activation of this TimerTrigger. The 'currcount' and
+	 *  'triggertime' are updated as if it was activated, but its
+	 *  receiving object isn't called.
+	 */
+	public void skip() {
 		if (isRepeating()) {
 			mlTriggertime += mnPeriod;
 			if (mnCurrcount > 0) {
@@ -233,92 +328,782 @@ class TimerTrigger implements Trigger {
 }
 
 /**
- *  A TriggerPool for TimeTriggers.
+ *  A list of TimerTriggers that are due at the same time. The list is
+ *  linked through the triggers themselves so they can be added and
+ *  removed in constant time.
+ */
+class TimerSlot {
+	TimerTrigger mHead;
+	TimerTrigger mTail;
+	// Whether a trigger was appended after one that was scheduled later, see sort()
+	boolean mbUnsorted = false;
+
+
+	/**
+	 *  Returns a boolean indicating if there are no triggers in this slot
+	 *
+	 *@return    True if the slot is empty, otherwise False
+	 */
+	public boolean isEmpty() {
+		return mHead == null;
+	}
+
+
+	/**
+	 *  Adds a TimerTrigger to the end of this slot
+	 *
+	 *@param  _t  The TimerTrigger to add
+	 */
+	public void append(TimerTrigger _t) {
+		if ((mTail != null) && (mTail.mlSequence > _t.mlSequence)) {
+			mbUnsorted = true;
+		}
+		_t.mSlot = this;
+		_t.mNextInSlot = null;
+		_t.mPrevInSlot = mTail;
+		if (mTail != null) {
+			mTail.mNextInSlot = _t;
+		} else {
+			mHead = _t;
+		}
+		mTail = _t;
+	}
+
+
+	/**
+	 *  Removes a TimerTrigger from this slot
+	 *
+	 *@param  _t  The TimerTrigger to remove, it must be in this slot
+	 */
+	public void unlink(TimerTrigger _t) {
+		if (_t.mPrevInSlot != null) {
+			_t.mPrevInSlot.mNextInSlot = _t.mNextInSlot;
+		} else {
+			mHead = _t.mNextInSlot;
+		}
+		if (_t.mNextInSlot != null) {
+			_t.mNextInSlot.mPrevInSlot = _t.mPrevInSlot;
+		} else {
+			mTail = _t.mPrevInSlot;
+		}
+		_t.mSlot = null;
+		_t.mPrevInSlot = null;
+		_t.mNextInSlot = null;
+	}
+
+
+	/**
+	 *  Removes all triggers from this slot
+	 *
+	 *@return    The first of the removed triggers, the others can be reached
+	 *           through its mNextInSlot (which is left intact for that reason)
+	 */
+	public TimerTrigger detach() {
+		TimerTrigger head = mHead;
+		for (TimerTrigger t = head; t != null; t = t.mNextInSlot) {
+			t.mSlot = null;
+		}
+		mHead = null;
+		mTail = null;
+		mbUnsorted = false;
+		return head;
+	}
+
+
+	/**
+	 *  Puts the triggers of this slot back in the order in which they were
+	 *  scheduled, if a cascade appended older triggers after newer ones
+	 */
+	public void sort() {
+		if (!mbUnsorted) {
+			return;
+		}
+		int count = 0;
+		for (TimerTrigger t = mHead; t != null; t = t.mNextInSlot) {
+			count++;
+		}
+		TimerTrigger triggers[] = new TimerTrigger[count];
+		count = 0;
+		for (TimerTrigger t = mHead; t != null; t = t.mNextInSlot) {
+			triggers[count++] = t;
+		}
+		Arrays.sort(triggers,
+			new Comparator() {
+				public int compare(Object _a, Object _b) {
+					long a = ((TimerTrigger)_a).mlSequence;
+					long b = ((TimerTrigger)_b).mlSequence;
+					return (a < b) ? -1 : ((a > b) ? 1 : 0);
+				}
+			});
+		mHead = null;
+		mTail = null;
+		mbUnsorted = false;
+		for (int i = 0; i < count; i++) {
+			append(triggers[i]);
+		}
+	}
+}
+
+/**
+ *  A hierarchical timing wheel (as described by Varghese and Lauck) that holds
+ *  TimerTriggers by their trigger time. The root wheel has a slot for each of
+ *  the next ROOT_SIZE ticks, every following level has LEVEL_SIZE slots that
+ *  each cover an entire turn of the level below it. When the root wheel wraps
+ *  around, the slot of the next level that has come due is "cascaded" into the
+ *  lower levels. This way scheduling and removing a trigger is O(1), no matter
+ *  how many triggers are waiting.
+ *  <br>
+ *  Triggers that are due at the same time come out in the order in which
+ *  they were scheduled. Cascaded triggers can end up behind triggers that
+ *  were scheduled later, straight into the same slot, so a slot that was
+ *  mixed up like that is sorted once before its triggers come out.
+ */
+class TimerWheel {
+	public static final int ROOT_BITS = 8;
+	public static final int LEVEL_BITS = 6;
+	public static final int LEVELS = 4;
+
+	static final int ROOT_SIZE = 1 << ROOT_BITS;
+	static final int ROOT_MASK = ROOT_SIZE - 1;
+	static final int LEVEL_SIZE = 1 << LEVEL_BITS;
+	static final int LEVEL_MASK = LEVEL_SIZE - 1;
+	// Triggers further in the future are parked in the highest level and
+	// rescheduled each time that slot gets cascaded
+	static final long MAX_DELTA = (1L << (ROOT_BITS + LEVELS * LEVEL_BITS)) - 1;
+
+	TimerSlot mRoot[] = new TimerSlot[ROOT_SIZE];
+	TimerSlot mLevels[][] = new TimerSlot[LEVELS][LEVEL_SIZE];
+	// The time of the slot that is (or will next be) processed
+	long mlTime;
+	int mnSize = 0;
+	// The sequence number of the next trigger that is scheduled
+	long mlNextSequence = 0;
+
+
+	/**
+	 *  Constructor for the TimerWheel object
+	 *
+	 *@param  _time  The first time that will be processed
+	 */
+	TimerWheel(long _time) {
+		mlTime = _time;
+		for (int i = 0; i < ROOT_SIZE; i++) {
+			mRoot[i] = new TimerSlot();
+		}
+		for (int level = 0; level < LEVELS; level++) {
+			for (int i = 0; i < LEVEL_SIZE; i++) {
+				mLevels[level][i] = new TimerSlot();
+			}
+		}
+	}
+
+
+	/**
+	 *  Returns the number of triggers waiting in the wheel
+	 *
+	 *@return    The number of triggers
+	 */
+	public int size() {
+		return mnSize;
+	}
+
+
+	/**
+	 *  Puts a TimerTrigger into the slot for its trigger time. Triggers whose
+	 *  time has already passed end up in the slot that is processed next.
+	 *
+	 *@param  _t  The TimerTrigger to schedule, it must not be in any slot
+	 */
+	public void schedule(TimerTrigger _t) {
+		_t.mlSequence = mlNextSequence++;
+		place(_t);
+	}
+
+
+	// Puts a TimerTrigger into the slot for its trigger time, keeping its sequence number
+	void place(TimerTrigger _t) {
+		long expires = _t.getTriggertime();
+		if (expires < mlTime) {
+			expires = mlTime;
+		}
+		long delta = expires - mlTime;
+		if (delta > MAX_DELTA) {
+			delta = MAX_DELTA;
+			expires = mlTime + MAX_DELTA;
+		}
+		TimerSlot slot;
+		if (delta < ROOT_SIZE) {
+			slot = mRoot[(int)(expires & ROOT_MASK)];
+		} else {
+			int level = 0;
+			long limit = 1L << (ROOT_BITS + LEVEL_BITS);
+			while (delta >= limit) {
+				level++;
+				limit <<= LEVEL_BITS;
+			}
+			slot = mLevels[level][(int)((expires >> (ROOT_BITS + level * LEVEL_BITS)) & LEVEL_MASK)];
+		}
+		slot.append(_t);
+		mnSize++;
+	}
+
+
+	/**
+	 *  Takes a TimerTrigger out of the wheel
+	 *
+	 *@param  _t  The TimerTrigger to remove, it must be in one of the slots
+	 */
+	public void unschedule(TimerTrigger _t) {
+		_t.mSlot.unlink(_t);
+		mnSize--;
+	}
+
+
+	/**
+	 *  Returns the slot with the triggers that are due at the current time,
+	 *  cascading the higher levels first if the root wheel has wrapped around.
+	 *  Must be called exactly once per time, before advance().
+	 *
+	 *@return    The slot for the current time
+	 */
+	public TimerSlot currentSlot() {
+		int index = (int)(mlTime & ROOT_MASK);
+		if (index == 0) {
+			for (int level = 0; level < LEVELS; level++) {
+				int i = (int)((mlTime >> (ROOT_BITS + level * LEVEL_BITS)) & LEVEL_MASK);
+				cascade(mLevels[level][i]);
+				if (i != 0) {
+					break;
+				}
+			}
+		}
+		mRoot[index].sort();
+		return mRoot[index];
+	}
+
+
+	/**
+	 *  Takes the first trigger out of the given slot
+	 *
+	 *@param  _slot  The slot
+	 *@return        The first trigger, or null if the slot is empty
+	 */
+	public TimerTrigger poll(TimerSlot _slot) {
+		TimerTrigger t = _slot.mHead;
+		if (t != null) {
+			unschedule(t);
+		}
+		return t;
+	}
+
+
+	/**
+	 *  Moves the wheel on to the next time
+	 */
+	public void advance() {
+		mlTime++;
+	}
+
+
+	/**
+	 *  Reschedules all triggers of a slot of one of the higher levels, which
+	 *  moves them down to the lower levels.
+	 *
+	 *@param  _slot  The slot to cascade
+	 */
+	void cascade(TimerSlot _slot) {
+		TimerTrigger t = _slot.detach();
+		while (t != null) {
+			TimerTrigger next = t.mNextInSlot;
+			mnSize--;
+			place(t);
+			t = next;
+		}
+	}
+
+
+	/**
+	 *  Copies all triggers in the wheel into a Vector (in no particular order)
+	 *
+	 *@param  _result  The Vector to add the triggers to
+	 */
+	public void copyInto(Vector _result) {
+		for (int i = 0; i < ROOT_SIZE; i++) {
+			copyInto(mRoot[i], _result);
+		}
+		for (int level = 0; level < LEVELS; level++) {
+			for (int i = 0; i < LEVEL_SIZE; i++) {
+				copyInto(mLevels[level][i], _result);
+			}
+		}
+	}
+
+
+	void copyInto(TimerSlot _slot, Vector _result) {
+		for (TimerTrigger t = _slot.mHead; t != null; t = t.mNextInSlot) {
+			_result.addElement(t);
+		}
+	}
+}
+
+/**
+ *  A TriggerPool for TimeTriggers. The triggers are kept in a TimerWheel,
+ *  so adding, removing and activating them takes constant time no matter how
+ *  many triggers are in the pool. Triggers that are due in the same tick are
+ *  activated in the order in which they were added.
  *
  *@author     Tako
  *@created    5 november 2002
  */
 class TimerTriggerPool extends TriggerPool {
 	long mlGametime = 0;
+	TimerWheel mWheel = new TimerWheel(mlGametime + 1);
+
+	// The trigger that is being activated by a parallel tick on the current thread
+	static final ThreadLocal CURRENT_CONCURRENT = new ThreadLocal();
+	// Runs the concurrent triggers, null when ticking serially
+	ForkJoinPool mForkJoinPool = null;
+	// Maximum number of triggers activated by one task of the ForkJoinPool
+	int mnBatchSize = 64;
+	TimerTrigger mBatch[] = new TimerTrigger[64];
+	// Whether the ticks are run to catch up with real time
+	boolean mbCatchingUp = false;
+	// The number of activations of rendering triggers that were skipped
+	long mlSkippedCount = 0;
+	// Told when a tick starts and ends
+	Vector mTickListeners = new Vector();
+
+
+	/**
+	 *  Sets whether the ticks are run to catch up with real time. While
+	 *  catching up the activations of rendering triggers are skipped.
+	 *
+	 *@param  _catchingUp  The new catching up value
+	 */
+	public synchronized void setCatchingUp(boolean _catchingUp) {
+		mbCatchingUp = _catchingUp;
+	}
+
+
+	/**
+	 *  Returns the number of activations of rendering triggers that were
+	 *  skipped because the game was catching up, i.e. the dropped frames.
+	 *
+	 *@return    The number of skipped activations
+	 */
+	public synchronized long getSkippedCount() {
+		return mlSkippedCount;
+	}
+
+
+	/**
+	 *  Tells whether rendering work that isn't done by a rendering trigger
+	 *  (like that of a TickListener) has to be skipped because the game is
+	 *  catching up, and counts it as skipped if so
+	 *
+	 *@return    True if the work has to be skipped
+	 */
+	public synchronized boolean skipRendering() {
+		if (mbCatchingUp) {
+			mlSkippedCount++;
+		}
+		return mbCatchingUp;
+	}
+
+
+	/**
+	 *  Sets the number of threads that activate concurrent TimerTriggers.
+	 *  A value of 1 or less makes the pool activate all triggers serially
+	 *  on the thread that calls tick().
+	 *
+	 *@param  _nThreads  The number of threads
+	 */
+	public synchronized void setParallelism(int _nThreads) {
+		if (mForkJoinPool != null) {
+			mForkJoinPool.shutdown();
+			mForkJoinPool = null;
+		}
+		if (_nThreads > 1) {
+			mForkJoinPool = new ForkJoinPool(_nThreads);
+		}
+	}
+
+
+	/**
+	 *  Returns a boolean indicating if concurrent triggers are activated in parallel
+	 *
+	 *@return    True if ticking in parallel, otherwise False
+	 */
+	public synchronized boolean isParallel() {
+		return mForkJoinPool != null;
+	}
+
+
+	/**
+	 *  Sets the maximum number of triggers that is activated by a single
+	 *  task when ticking in parallel.
+	 *
+	 *@param  _nBatchSize  The new batch size
+	 */
+	public synchronized void setBatchSize(int _nBatchSize) {
+		mnBatchSize = Math.max(1, _nBatchSize);
+	}
+
+
+	/**
+	 *  Adds a TickListener, the listeners are told about the ticks in the
+	 *  order in which they were added
+	 *
+	 *@param  _listener  The listener
+	 */
+	public void addTickListener(final TickListener _listener) {
+		if (isDeferring()) {
+			defer(new Runnable() {
+				public void run() {
+					addTickListener(_listener);
+				}
+			});
+			return;
+		}
+		synchronized (this) {
+			mTickListeners.addElement(_listener);
+		}
+	}
+
+
+	/**
+	 *  Removes a TickListener
+	 *
+	 *@param  _listener  The listener
+	 */
+	public void removeTickListener(final TickListener _listener) {
+		if (isDeferring()) {
+			defer(new Runnable() {
+				public void run() {
+					removeTickListener(_listener);
+				}
+			});
+			return;
+		}
+		synchronized (this) {
+			mTickListeners.removeElement(_listener);
+		}
+	}
+
+
+	/**
+	 *  Returns a boolean indicating if the current thread is activating a
+	 *  concurrent TimerTrigger, in which case changes to shared state must
+	 *  be passed to defer().
+	 *
+	 *@return    True if changes must be deferred, otherwise False
+	 */
+	public static boolean isDeferring() {
+		return CURRENT_CONCURRENT.get() != null;
+	}
+
+
+	/**
+	 *  Defers an action until all concurrent triggers of the current tick have
+	 *  been activated. The deferred actions are then run on the ticking thread
+	 *  in the order of the triggers that deferred them, which is the same
+	 *  order in which a serial tick would have run them.
+	 *
+	 *@param  _action  The action to defer
+	 *@return          True if the action was deferred, False if the current
+	 *                 thread isn't activating a concurrent trigger (in which
+	 *                 case the caller should perform the action itself)
+	 */
+	public static boolean defer(Runnable _action) {
+		TimerTrigger t = (TimerTrigger)CURRENT_CONCURRENT.get();
+		if (t == null) {
+			return false;
+		}
+		if (t.mDeferred == null) {
+			t.mDeferred = new Vector();
+		}
+		t.mDeferred.addElement(_action);
+		return true;
+	}
 
 
 	/**
-	 *  Adds a new TimerTrigger to this TimerTriggerPool's SimpleList of
-	 *  TimerTriggers. The new TimerTrigger will be activated when
-	 *  'gametime' reaches the value indicated by 'time', if 'time'
-	 *  is smaller than 'gametime' the TimerTrigger will be activated
-	 *  at the first possible call to tick().
+	 *  Adds a new TimerTrigger to this TimerTriggerPool. The new
+	 *  TimerTrigger will be activated when 'gametime' reaches the value
+	 *  indicated by 'time', if 'time' is smaller than 'gametime' the
+	 *  TimerTrigger will be activated at the first possible call to tick().
 	 *
 	 *@param  _t     The Trigger to add
 	 *@param  _time  The absolute time when the Trigger will be activated
 	 */
-	public void addAbs(TimerTrigger _t, long _time) {
-		_t.reset();
-		_t.setTriggertime(_time);
-		insert(_t);
+	public void addAbs(final TimerTrigger _t, final long _time) {
+		if (isDeferring()) {
+			defer(new Runnable() {
+				public void run() {
+					addAbs(_t, _time);
+				}
+			});
+			return;
+		}
+		synchronized (this) {
+			_t.reset();
+			_t.setTriggertime(_time);
+			insert(_t);
+		}
 	}
 
 	/**
-	 *  Adds a new TimerTrigger to this TimerTriggerPool's SimpleList of
-	 *  TimerTriggers. The new TimerTrigger will be activated when
-	 *  as many calls to tick() have been made as indicated by 'period'.
+	 *  Adds a new TimerTrigger to this TimerTriggerPool. The new
+	 *  TimerTrigger will be activated when as many calls to tick() have
+	 *  been made as indicated by 'period'.
 	 *
 	 *@param  _t       The Trigger to add
 	 *@param  _period  The number of ticks to wait before the Trigger will be activated
 	 */
 	public void addRel(TimerTrigger _t, int _period) {
-		_t.reset();
-		_t.setTriggertime(mlGametime + _period);
-		insert(_t);
+		if (isDeferring()) {
+			// the game time doesn't change during a tick
+			addAbs(_t, mlGametime + _period);
+			return;
+		}
+		synchronized (this) {
+			_t.reset();
+			_t.setTriggertime(mlGametime + _period);
+			insert(_t);
+		}
+	}
+
+
+	/**
+	 *  Removes a Trigger from the pool. A trigger that is being activated
+	 *  at the moment will not be put back into the pool afterwards.
+	 *
+	 *@param  _t  The Trigger to remove
+	 */
+	public void remove(final Trigger _t) {
+		if (isDeferring()) {
+			defer(new Runnable() {
+				public void run() {
+					remove(_t);
+				}
+			});
+			return;
+		}
+		synchronized (this) {
+			TimerTrigger t = (TimerTrigger)_t;
+			if (t.mSlot != null) {
+				mWheel.unschedule(t);
+			} else if (t.mbActive) {
+				mRemoved.addElement(t);
+			}
+		}
 	}
 
 
 	/**
-	 *  Increases the 'gametime' tick counter by one and looks if any
-	 *  of the TimerTriggers at the front of the trigger SimpleList need to
-	 *  be activated (the 'gametime' will be greater than or at least
-	 *  equal to their 'triggertime').
+	 *  Increases the 'gametime' tick counter by one and activates all
+	 *  the TimerTriggers that are due (the 'gametime' will be greater
+	 *  than or at least equal to their 'triggertime').
+	 *  When ticking in parallel, each run of consecutive concurrent triggers
+	 *  is split into batches that are activated on the ForkJoinPool.
+	 *  The TickListeners are told before the first and after the last trigger.
 	 */
 	public synchronized void tick() {
 		mlGametime++;
-		Vector triggers = getTriggers();
-		while (!triggers.isEmpty() && mlGametime >= ((TimerTrigger)triggers.firstElement()).getTriggertime()) {
-			trigger();
+		for (int i = 0; i < mTickListeners.size(); i++) {
+			((TickListener)mTickListeners.elementAt(i)).tickStarted(mlGametime);
+		}
+		TimerSlot slot = mWheel.currentSlot();
+		if (mForkJoinPool == null) {
+			TimerTrigger t;
+			while ((t = mWheel.poll(slot)) != null) {
+				activate(t);
+			}
+		} else {
+			while (!slot.isEmpty()) {
+				if (!slot.mHead.isConcurrent()) {
+					activate(mWheel.poll(slot));
+				} else {
+					int count = 0;
+					while (!slot.isEmpty() && slot.mHead.isConcurrent()) {
+						if (count == mBatch.length) {
+							TimerTrigger old[] = mBatch;
+							mBatch = new TimerTrigger[2 * old.length];
+							System.arraycopy(old, 0, mBatch, 0, old.length);
+						}
+						mBatch[count++] = mWheel.poll(slot);
+					}
+					activateConcurrently(mBatch, count);
+				}
+			}
+		}
+		mWheel.advance();
+		for (int i = 0; i < mTickListeners.size(); i++) {
+			((TickListener)mTickListeners.elementAt(i)).tickEnded(mlGametime);
+		}
+	}
+
+
+	/**
+	 *  Activates a TimerTrigger that has been taken out of the wheel and puts
+	 *  it back if it is repeating (and wasn't removed while it was active).
+	 *  Rendering triggers are skipped instead while catching up.
+	 *
+	 *@param  _t  The TimerTrigger to activate
+	 */
+	protected void activate(TimerTrigger _t) {
+		if (mbCatchingUp && _t.isRendering()) {
+			_t.skip();
+			mlSkippedCount++;
+		} else {
+			_t.mbActive = true;
+			try {
+				_t.activate();
+			} finally {
+				_t.mbActive = false;
+			}
+		}
+		if (_t.isRepeating()) {
+			if (!mRemoved.removeElement(_t)) {
+				insert(_t);
+			}
 		}
 	}
 
 
+	/**
+	 *  Activates a number of concurrent TimerTriggers on the ForkJoinPool.
+	 *  Afterwards the actions they deferred are run and the triggers are put
+	 *  back, both in the order of the triggers so that the result is the same
+	 *  as when they would have been activated serially.
+	 *
+	 *@param  _triggers  The TimerTriggers to activate
+	 *@param  _count     The number of TimerTriggers in _triggers
+	 */
+	protected void activateConcurrently(TimerTrigger _triggers[], int _count) {
+		for (int i = 0; i < _count; i++) {
+			_triggers[i].mbActive = true;
+		}
+		try {
+			mForkJoinPool.invoke(new TimerActivationTask(_triggers, 0, _count, mnBatchSize));
+			for (int i = 0; i < _count; i++) {
+				TimerTrigger t = _triggers[i];
+				if (t.mDeferred != null) {
+					for (int j = 0; j < t.mDeferred.size(); j++) {
+						((Runnable)t.mDeferred.elementAt(j)).run();
+					}
+					t.mDeferred = null;
+				}
+				t.mbActive = false;
+				if (t.isRepeating()) {
+					if (!mRemoved.removeElement(t)) {
+						insert(t);
+					}
+				}
+				_triggers[i] = null;
+			}
+		} finally {
+			for (int i = 0; i < _count; i++) {
+				if (_triggers[i] != null) {
+					_triggers[i].mbActive = false;
+					_triggers[i].mDeferred = null;
+					_triggers[i] = null;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 *  Returns the number of TimerTriggers that are waiting in this pool
+	 *
+	 *@return    The number of TimerTriggers
+	 */
+	public synchronized int size() {
+		return mWheel.size();
+	}
+
+
+	/**
+	 *  Returns a Vector with all the TimerTriggers that are waiting in this
+	 *  pool. This is a copy, changing it has no effect on the pool.
+	 *
+	 *@return    A Vector
+	 */
+	public synchronized Vector getTriggers() {
+		Vector triggers = new Vector(mWheel.size());
+		mWheel.copyInto(triggers);
+		return triggers;
+	}
+
+
 	/**
 	 *  (Maybe the hierarchy should change because this works but it's a bit of a kludge)
 	 *
 	 *@param  _t  The trigger to add
 	 */
-	public void add(Trigger _t) {
+	public synchronized void add(Trigger _t) {
 		insert((TimerTrigger)_t);
 	}
 
 
 	/**
-	 *  Inserts a TimerTrigger at the proper place in the trigger SimpleList.
-	 *  The list of TimerTriggers is sorted on increasing 'triggertime'.
+	 *  Puts a TimerTrigger into the TimerWheel at the slot for its 'triggertime'.
+	 *  If the trigger was already waiting in the pool it is moved.
 	 *
 	 *@param  _t  The Trigger to add
 	 */
 	protected void insert(TimerTrigger _t) {
-		Vector triggers = getTriggers();
-		if (!triggers.isEmpty()) {
-			int i = 0;
-			int sz = triggers.size();
-			while (i < sz && ((TimerTrigger)getTriggers().elementAt(i)).getTriggertime() < _t.getTriggertime()) {
-				i++;
-			}
-			if (i < sz) {
-				triggers.insertElementAt(_t, i);
-			} else {
-				triggers.addElement(_t);
+		if (_t.mSlot != null) {
+			mWheel.unschedule(_t);
+		}
+		mWheel.schedule(_t);
+	}
+}
+
+/**
+ *  Activates a range of concurrent TimerTriggers, splitting it in halves
+ *  until the ranges are no larger than the batch size.
+ */
+class TimerActivationTask extends RecursiveAction {
+	TimerTrigger mTriggers[];
+	int mnFrom;
+	int mnTo;
+	int mnBatchSize;
+
+
+	/**
+	 *  Constructor for the TimerActivationTask object
+	 *
+	 *@param  _triggers    The TimerTriggers
+	 *@param  _nFrom       The index of the first TimerTrigger to activate
+	 *@param  _nTo         The index after the last TimerTrigger to activate
+	 *@param  _nBatchSize  The maximum number of triggers to activate without splitting
+	 */
+	TimerActivationTask(TimerTrigger _triggers[], int _nFrom, int _nTo, int _nBatchSize) {
+		mTriggers = _triggers;
+		mnFrom = _nFrom;
+		mnTo = _nTo;
+		mnBatchSize = _nBatchSize;
+	}
+
+
+	protected void compute() {
+		if (mnTo - mnFrom <= mnBatchSize) {
+			for (int i = mnFrom; i < mnTo; i++) {
+				TimerTriggerPool.CURRENT_CONCURRENT.set(mTriggers[i]);
+				try {
+					mTriggers[i].activate();
+				} finally {
+					TimerTriggerPool.CURRENT_CONCURRENT.set(null);
+				}
 			}
 		} else {
-			triggers.addElement(_t);
+			int middle = (mnFrom + mnTo) >>> 1;
+			invokeAll(
+				new TimerActivationTask(mTriggers, mnFrom, middle, mnBatchSize),
+				new TimerActivationTask(mTriggers, middle, mnTo, mnBatchSize)
+			);
 		}
 	}
 }
@@ -3,6 +3,7 @@
 */
 
 import java.io.*;
+import java.util.Random;
 
 /**
  *  Umbrella object for all game-related objects and data
@@ -32,15 +33,64 @@ class Universe extends Thread {
 	public TimerTriggerPool heartBeat;
 	// counts game ticks, not real-time
 
+	/**
+	 *  The source of randomness for the game objects, seed it to make a game reproducible
+	 */
+	public Random random = new Random();
+
+	/**
+	 *  Finds paths on worker threads, created when the first path is asked for
+	 */
+	protected PathRequestService pathRequests;
+
+	/**
+	 *  The expansions that the searching Directors may do per tick, created when first asked for
+	 */
+	protected SearchBudget searchBudget;
+
+	/**
+	 *  Draws the views on a thread of its own, created when the first view is opened
+	 */
+	protected RenderThread renderer;
+
+	/**
+	 *  The real time between two ticks: 50 msec per tick = 20 ticks per sec
+	 */
+	public final static long TICK_NANOS = 50 * 1000000L;
+
+	/**
+	 *  The maximum number of ticks that is run in a row to catch up with real time
+	 */
+	public final static int MAX_CATCH_UP_TICKS = 5;
+
+	// Timing statistics of the main loop, see the getters
+	volatile long mlLastTickNanos = 0;
+	volatile long mlMaxTickNanos = 0;
+	volatile long mlTotalTickNanos = 0;
+	volatile long mlTickCount = 0;
+	volatile long mlLagNanos = 0;
+	volatile long mlDroppedTicks = 0;
+
 
 	/**
 	 *  Constructor for the Universe object
 	 */
 	Universe() {
+		this("Terrain.map");
+	}
+
+
+	/**
+	 *  Constructor for a Universe object with the given map
+	 *
+	 *@param  _mapFilename  The name of the Map to read
+	 */
+	Universe(String _mapFilename) {
 		heartBeat = new TimerTriggerPool();
+		heartBeat.setParallelism(Integer.getInteger("iSpecies.tickThreads", 1).intValue());
 		rm = new ResourceManager();
 		rm.registerImage(IMG_DOT, "dot.gif");
-		map = readMap("Terrain.map");
+		setMap(readMap(_mapFilename));
 	}
 
 	/**
@@ -54,24 +104,91 @@ class Universe extends Thread {
 
 
 	/**
-	 *  Sets a new map for this Universe
+	 *  Returns the service that finds paths for the game objects, creates it
+	 *  (and its worker threads) when it's first needed
+	 *
+	 *@return    The path request service
+	 */
+	synchronized PathRequestService getPathRequests() {
+		if (pathRequests == null) {
+			pathRequests = new PathRequestService(heartBeat, PathRequestService.DEFAULT_THREADS);
+		}
+		return pathRequests;
+	}
+
+
+	/**
+	 *  Gets the expansions that the searching Directors may do per tick
+	 *
+	 *@return    The search budget
+	 */
+	synchronized SearchBudget getSearchBudget() {
+		if (searchBudget == null) {
+			searchBudget = new SearchBudget(heartBeat, SearchBudget.DEFAULT_EXPANSIONS);
+		}
+		return searchBudget;
+	}
+
+
+	/**
+	 *  Returns the thread that draws the views, creates and starts it (and
+	 *  starts taking snapshots of the map) when it's first needed
+	 *
+	 *@return    The render thread
+	 */
+	synchronized RenderThread getRenderer() {
+		if (renderer == null) {
+			renderer = new RenderThread(this);
+			renderer.start();
+		}
+		return renderer;
+	}
+
+
+	/**
+	 *  Stops the threads of the services of this Universe, when it is no
+	 *  longer used. The ticks and the render thread are left alone.
+	 */
+	synchronized void shutdown() {
+		if (pathRequests != null) {
+			pathRequests.shutdown();
+			pathRequests = null;
+		}
+	}
+
+
+	/**
+	 *  Sets a new map for this Universe. The path requests for the old map
+	 *  are dropped, the PathRequestService is created again for the new one.
 	 *
 	 *@param  _map  The new map
 	 */
 	void setMap(GameMap _map) {
+		if (map != null) {
+			map.getDangerMap().stopDecay(heartBeat);
+			heartBeat.removeTickListener(map);
+			shutdown();
+		}
 		map = _map;
+		if (map != null) {
+			// the deaths of a tick are counted at its end
+			heartBeat.addTickListener(map);
+			if (DangerMap.DEFAULT_HALF_LIFE > 0) {
+				map.getDangerMap().startDecay(heartBeat, DangerMap.DEFAULT_HALF_LIFE);
+			}
+		}
 	}
 
 
 	/**
 	 *  Reads the map from a file
 	 *
-	 *@param  _mapFilename  The name of the Map to read (ignored for now)
+	 *@param  _mapFilename  The name of the Map to read
 	 *@return               The Map that was read
 	 */
 	GameMap readMap(String _mapFilename) {
 		try {
-			return new MapBuilder(rm).readGameMap("Terrain.map");
+			return new MapBuilder(rm).readGameMap(_mapFilename);
 		} catch (IOException e) {
 			Logger.log("Could not read map: " + e.getMessage());
 			e.printStackTrace(System.err);
@@ -81,20 +198,136 @@ class Universe extends Thread {
 
 
 	/**
-	 *  Main processing method for the Universe object
+	 *  Main processing method for the Universe object. Runs a tick every
+	 *  TICK_NANOS of real time. When a tick takes too long the following
+	 *  ticks are run back to back (without rendering) until the game time has
+	 *  caught up, but never more than MAX_CATCH_UP_TICKS in a row. If the game
+	 *  is still behind after that, the missed ticks are dropped.
 	 */
 	public void run() {
+		long nextTick = System.nanoTime();
 		while (true) {
 			try {
-				sleep(50);
-				// 50 msec per tick = 20 frames per sec
-				heartBeat.tick();
+				long now = System.nanoTime();
+				if (now < nextTick) {
+					long wait = nextTick - now;
+					sleep(wait / 1000000, (int)(wait % 1000000));
+					continue;
+				}
+				int ticks = 0;
+				while (now >= nextTick && ticks < MAX_CATCH_UP_TICKS) {
+					// don't render if the next tick is due already as well
+					heartBeat.setCatchingUp(now - nextTick >= TICK_NANOS);
+					long start = System.nanoTime();
+					heartBeat.tick();
+					recordTick(System.nanoTime() - start);
+					nextTick += TICK_NANOS;
+					ticks++;
+					now = System.nanoTime();
+				}
+				heartBeat.setCatchingUp(false);
+				mlLagNanos = Math.max(0, now - nextTick);
+				if (now - nextTick >= TICK_NANOS) {
+					// still behind, give up on the backlog instead of falling further behind
+					long dropped = (now - nextTick) / TICK_NANOS;
+					mlDroppedTicks += dropped;
+					nextTick += dropped * TICK_NANOS;
+				}
 			} catch (InterruptedException e) {
 				Logger.log("ServerUniverse: somebody woke me, " + e);
 			}
 		}
 	}
 
+
+	/**
+	 *  Adds the duration of a tick to the timing statistics
+	 *
+	 *@param  _nanos  The time the tick took in nanoseconds
+	 */
+	void recordTick(long _nanos) {
+		mlLastTickNanos = _nanos;
+		if (_nanos > mlMaxTickNanos) {
+			mlMaxTickNanos = _nanos;
+		}
+		mlTotalTickNanos += _nanos;
+		mlTickCount++;
+	}
+
+
+	/**
+	 *  Returns the time the last tick took
+	 *
+	 *@return    The duration of the last tick in nanoseconds
+	 */
+	public long getLastTickDuration() {
+		return mlLastTickNanos;
+	}
+
+
+	/**
+	 *  Returns the longest time a tick has taken
+	 *
+	 *@return    The duration of the longest tick in nanoseconds
+	 */
+	public long getMaxTickDuration() {
+		return mlMaxTickNanos;
+	}
+
+
+	/**
+	 *  Returns the average time a tick takes
+	 *
+	 *@return    The average duration of a tick in nanoseconds
+	 */
+	public long getAverageTickDuration() {
+		long count = mlTickCount;
+		return (count > 0) ? mlTotalTickNanos / count : 0;
+	}
+
+
+	/**
+	 *  Returns the number of ticks that have been run by the main loop
+	 *
+	 *@return    The number of ticks
+	 */
+	public long getTickCount() {
+		return mlTickCount;
+	}
+
+
+	/**
+	 *  Returns how far the game time was behind real time after the last
+	 *  ticks were run
+	 *
+	 *@return    The lag in nanoseconds
+	 */
+	public long getLag() {
+		return mlLagNanos;
+	}
+
+
+	/**
+	 *  Returns the number of ticks that were dropped because the game couldn't
+	 *  catch up with real time
+	 *
+	 *@return    The number of dropped ticks
+	 */
+	public long getDroppedTicks() {
+		return mlDroppedTicks;
+	}
+
+
+	/**
+	 *  Returns the number of times a view was not updated because the game
+	 *  was catching up with real time
+	 *
+	 *@return    The number of dropped frames
+	 */
+	public long getDroppedFrames() {
+		return heartBeat.getSkippedCount();
+	}
+
 }
 
 /*
@@ -84,11 +84,14 @@ public abstract class Viewport {
 	}
 	
 	/**
-	 *  Paint the Viewport contents to the specified Graphics context
+	 *  Paint the Viewport contents to the specified Graphics context. Called
+	 *  on the RenderThread, so the objects should be taken from the snapshot
+	 *  and not from the map.
 	 *
-	 *@param  g  Reference to the Graphics context the back buffer should be drawn in
+	 *@param  g          Reference to the Graphics context the back buffer should be drawn in
+	 *@param  _snapshot  The objects on the map at the end of the latest tick
 	 */
-	abstract public void paint(Graphics g);
+	abstract public void paint(Graphics g, WorldSnapshot _snapshot);
 	
 }
 
@@ -0,0 +1,255 @@
+/*
+ *  WorldSnapshot.java
+ */
+
+import java.awt.*;
+import util.*;
+
+/**
+ *  What the views need to know about the objects on a GameMap at the end of
+ *  a tick. A snapshot is built on the thread that runs the ticks (see
+ *  SnapshotPublisher) and never changes afterwards, so the views can draw
+ *  it on their own thread while the game goes on.
+ *  <br>
+ *  The objects are stored by Parcel, in the order of the Parcels in the
+ *  ParcelMap (y * width + x) and within a Parcel in the order of its
+ *  objects. An object is referred to by its index in the snapshot.
+ *  <br>
+ *  The terrain isn't part of the snapshot, the views keep their own copy
+ *  of it up to date with a ParcelListener.
+ *
+ *@created    18 october 2026
+ */
+class WorldSnapshot {
+	long mlTick;
+	GameMap mMap;
+	int mnWidth, mnHeight;
+	int mvFirst[];				// index of the first object of every Parcel, and the number of objects at the end
+	GameObject mvObjects[];
+	float mvX[], mvY[];			// the positions of the objects in game units
+	Point mvTargets[];			// the targets of Targettable objects, otherwise null
+	int mvPaths[][];			// the paths (Parcels as y * width + x) of objects with a GridPathDirector, otherwise null
+
+
+	/**
+	 *  Constructor for the WorldSnapshot object, takes the snapshot
+	 *
+	 *@param  _tick  The game time of the snapshot
+	 *@param  _map   The map to take the snapshot of, must not change while it's taken
+	 */
+	WorldSnapshot(long _tick, GameMap _map) {
+		mlTick = _tick;
+		mMap = _map;
+		ParcelMap parcels = _map.getParcelMap();
+		mnWidth = parcels.getWidth();
+		mnHeight = parcels.getHeight();
+		mvFirst = new int[mnWidth * mnHeight + 1];
+		int count = 0;
+		for (int i = 0; i < mnWidth * mnHeight; i++) {
+			mvFirst[i] = count;
+			count += countObjects(parcels, i % mnWidth, i / mnWidth);
+		}
+		mvFirst[mnWidth * mnHeight] = count;
+		mvObjects = new GameObject[count];
+		mvX = new float[count];
+		mvY = new float[count];
+		mvTargets = new Point[count];
+		mvPaths = new int[count][];
+		int n = 0;
+		for (int i = 0; i < mnWidth * mnHeight; i++) {
+			// same as the counting above, as the map doesn't change
+			for (int j = 0; (n < count); j++) {
+				GameObject obj = parcels.getObject(i % mnWidth, i / mnWidth, j);
+				if (obj == null) {
+					break;
+				}
+				FloatPoint position = obj.getPosition();
+				if (position == null) {
+					continue;
+				}
+				mvObjects[n] = obj;
+				mvX[n] = (float)position.x;
+				mvY[n] = (float)position.y;
+				if (obj instanceof Targettable) {
+					Point target = ((Targettable)obj).getTarget();
+					mvTargets[n] = (target != null) ? new Point(target) : null;
+				}
+				if ((obj instanceof PathFinder) && (((PathFinder)obj).mDirector instanceof GridPathDirector)) {
+					// the paths are shared and never changed, so there's no need to copy them
+					mvPaths[n] = ((GridPathDirector)((PathFinder)obj).mDirector).mvPath;
+				}
+				n++;
+			}
+		}
+	}
+
+
+	// The number of objects with a position on a Parcel
+	static int countObjects(ParcelMap _parcels, int _x, int _y) {
+		int count = 0;
+		GameObject obj;
+		for (int j = 0; (obj = _parcels.getObject(_x, _y, j)) != null; j++) {
+			if (obj.getPosition() != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+
+	/**
+	 *  Gets the game time of the snapshot
+	 *
+	 *@return    The tick
+	 */
+	public long getTick() {
+		return mlTick;
+	}
+
+
+	/**
+	 *  Gets the map the snapshot was taken of
+	 *
+	 *@return    The map
+	 */
+	public GameMap getMap() {
+		return mMap;
+	}
+
+
+	/**
+	 *  Gets the number of objects in the snapshot
+	 *
+	 *@return    The number of objects
+	 */
+	public int getObjectCount() {
+		return mvObjects.length;
+	}
+
+
+	/**
+	 *  Gets the index of the first object on a Parcel
+	 *
+	 *@param  _x  The x coordinate of the Parcel in the ParcelMap
+	 *@param  _y  The y coordinate of the Parcel in the ParcelMap
+	 *@return     The index
+	 */
+	public int getFirstObject(int _x, int _y) {
+		return mvFirst[_y * mnWidth + _x];
+	}
+
+
+	/**
+	 *  Gets the index after the last object on a Parcel
+	 *
+	 *@param  _x  The x coordinate of the Parcel in the ParcelMap
+	 *@param  _y  The y coordinate of the Parcel in the ParcelMap
+	 *@return     The index
+	 */
+	public int getEndObject(int _x, int _y) {
+		return mvFirst[_y * mnWidth + _x + 1];
+	}
+
+
+	/**
+	 *  Gets an object
+	 *
+	 *@param  _index  The index of the object
+	 *@return         The object, which may have changed since the snapshot
+	 */
+	public GameObject getObject(int _index) {
+		return mvObjects[_index];
+	}
+
+
+	/**
+	 *  Gets the x coordinate of an object
+	 *
+	 *@param  _index  The index of the object
+	 *@return         The x coordinate in game units
+	 */
+	public float getX(int _index) {
+		return mvX[_index];
+	}
+
+
+	/**
+	 *  Gets the y coordinate of an object
+	 *
+	 *@param  _index  The index of the object
+	 *@return         The y coordinate in game units
+	 */
+	public float getY(int _index) {
+		return mvY[_index];
+	}
+
+
+	/**
+	 *  Gets the target of an object
+	 *
+	 *@param  _index  The index of the object
+	 *@return         The target in game units, or null if it has none
+	 */
+	public Point getTarget(int _index) {
+		return (mvTargets[_index] != null) ? new Point(mvTargets[_index]) : null;
+	}
+
+
+	/**
+	 *  Gets the path an object follows
+	 *
+	 *@param  _index  The index of the object
+	 *@return         The path as points in game coordinates (the centers of the Parcels), or null if it has none
+	 */
+	public Point[] getPath(int _index) {
+		int path[] = mvPaths[_index];
+		if (path == null) {
+			return null;
+		}
+		Point result[] = new Point[path.length];
+		for (int i = 0; i < path.length; i++) {
+			result[i] = new Point(
+				(int)((path[i] % mnWidth + 0.5) * mMap.mParcelWidth),
+				(int)((path[i] / mnWidth + 0.5) * mMap.mParcelHeight)
+			);
+		}
+		return result;
+	}
+
+
+	/**
+	 *  Gets the objects within a distance of a point
+	 *
+	 *@param  _x       The x coordinate of the point in game units
+	 *@param  _y       The y coordinate of the point in game units
+	 *@param  _radius  The distance in game units
+	 *@return          The indices of the objects
+	 */
+	public int[] getObjectsInRadius(double _x, double _y, double _radius) {
+		int left = Math.max(0, (int)Math.floor((_x - _radius) / mMap.mParcelWidth));
+		int right = Math.min(mnWidth - 1, (int)Math.floor((_x + _radius) / mMap.mParcelWidth));
+		int top = Math.max(0, (int)Math.floor((_y - _radius) / mMap.mParcelHeight));
+		int bottom = Math.min(mnHeight - 1, (int)Math.floor((_y + _radius) / mMap.mParcelHeight));
+		int found[] = new int[8];
+		int count = 0;
+		for (int y = top; y <= bottom; y++) {
+			for (int x = left; x <= right; x++) {
+				for (int i = getFirstObject(x, y); i < getEndObject(x, y); i++) {
+					double dx = mvX[i] - _x;
+					double dy = mvY[i] - _y;
+					if (dx * dx + dy * dy <= _radius * _radius) {
+						if (count == found.length) {
+							int old[] = found;
+							found = new int[2 * old.length];
+							System.arraycopy(old, 0, found, 0, old.length);
+						}
+						found[count++] = i;
+					}
+				}
+			}
+		}
+		int result[] = new int[count];
+		System.arraycopy(found, 0, result, 0, count);
+		return result;
+	}
+}
@@ -0,0 +1,289 @@
+/*
+ *  IndexedIntHeap.java
+ */
+
+package util;
+
+/**
+ *  A binary min-heap of int ids (like the index of a cell in a grid), each
+ *  with a double key. The heap knows where every id is, so the key of an id
+ *  can be lowered without searching. Everything is kept in arrays of
+ *  primitives that are allocated once, for ids from 0 up to the capacity.
+ *  <br>
+ *  Ids can also get a second key, that decides between ids with the same
+ *  (first) key.
+ *
+ *@created    18 october 2026
+ */
+public class IndexedIntHeap {
+	int mvHeap[];			// the ids, in heap order
+	int mvPositions[];		// position of every id in mvHeap, -1 if it's not in the heap
+	double mvKeys[];		// key of every id
+	double mvKeys2[];		// second key of every id
+	int mnSize = 0;
+
+
+	/**
+	 *  Constructor for the IndexedIntHeap object
+	 *
+	 *@param  _capacity  The ids in the heap will be from 0 up to (but not including) this value
+	 */
+	public IndexedIntHeap(int _capacity) {
+		mvHeap = new int[_capacity];
+		mvPositions = new int[_capacity];
+		mvKeys = new double[_capacity];
+		mvKeys2 = new double[_capacity];
+		java.util.Arrays.fill(mvPositions, -1);
+	}
+
+
+	/**
+	 *  Gets the number of ids the heap can hold
+	 *
+	 *@return    The capacity
+	 */
+	public int getCapacity() {
+		return mvHeap.length;
+	}
+
+
+	/**
+	 *  Gets the number of ids in the heap
+	 *
+	 *@return    The number of ids
+	 */
+	public int size() {
+		return mnSize;
+	}
+
+
+	/**
+	 *  Checks whether the heap is empty
+	 *
+	 *@return    true if there are no ids in the heap
+	 */
+	public boolean isEmpty() {
+		return mnSize == 0;
+	}
+
+
+	/**
+	 *  Checks whether an id is in the heap
+	 *
+	 *@param  _id  The id
+	 *@return      true if the id is in the heap
+	 */
+	public boolean contains(int _id) {
+		return mvPositions[_id] >= 0;
+	}
+
+
+	/**
+	 *  Gets the key of an id in the heap
+	 *
+	 *@param  _id  The id
+	 *@return      The key of the id
+	 */
+	public double getKey(int _id) {
+		return mvKeys[_id];
+	}
+
+
+	/**
+	 *  Gets the second key of an id in the heap
+	 *
+	 *@param  _id  The id
+	 *@return      The second key of the id
+	 */
+	public double getKey2(int _id) {
+		return mvKeys2[_id];
+	}
+
+
+	/**
+	 *  Adds an id to the heap, or changes its key if it's in the heap already
+	 *
+	 *@param  _id   The id
+	 *@param  _key  The key of the id
+	 */
+	public void add(int _id, double _key) {
+		add(_id, _key, 0.0);
+	}
+
+
+	/**
+	 *  Adds an id to the heap with two keys, or changes its keys if it's in
+	 *  the heap already
+	 *
+	 *@param  _id    The id
+	 *@param  _key   The key of the id
+	 *@param  _key2  The second key of the id, for ids with the same key
+	 */
+	public void add(int _id, double _key, double _key2) {
+		int i = mvPositions[_id];
+		if (i < 0) {
+			mvKeys[_id] = _key;
+			mvKeys2[_id] = _key2;
+			i = mnSize++;
+			mvHeap[i] = _id;
+			mvPositions[_id] = i;
+			siftUp(i);
+		} else {
+			boolean smaller = (_key < mvKeys[_id]) || ((_key == mvKeys[_id]) && (_key2 < mvKeys2[_id]));
+			mvKeys[_id] = _key;
+			mvKeys2[_id] = _key2;
+			if (smaller) {
+				siftUp(i);
+			} else {
+				siftDown(i);
+			}
+		}
+	}
+
+
+	/**
+	 *  Lowers the key of an id in the heap
+	 *
+	 *@param  _id   The id
+	 *@param  _key  The new key, must not be larger than the current one
+	 */
+	public void decreaseKey(int _id, double _key) {
+		if (mvPositions[_id] < 0) {
+			throw new IllegalArgumentException("Id is not in the heap: " + _id);
+		}
+		if (_key > mvKeys[_id]) {
+			throw new IllegalArgumentException("New key " + _key + " is larger than " + mvKeys[_id]);
+		}
+		mvKeys[_id] = _key;
+		siftUp(mvPositions[_id]);
+	}
+
+
+	/**
+	 *  Gets the id with the smallest key, without removing it
+	 *
+	 *@return    The id
+	 */
+	public int peek() {
+		if (mnSize == 0) {
+			throw new java.util.NoSuchElementException();
+		}
+		return mvHeap[0];
+	}
+
+
+	/**
+	 *  Gets the smallest key in the heap
+	 *
+	 *@return    The key
+	 */
+	public double peekKey() {
+		return mvKeys[peek()];
+	}
+
+
+	/**
+	 *  Gets the second key of the id with the smallest key
+	 *
+	 *@return    The second key
+	 */
+	public double peekKey2() {
+		return mvKeys2[peek()];
+	}
+
+
+	/**
+	 *  Removes the id with the smallest key
+	 *
+	 *@return    The id
+	 */
+	public int poll() {
+		int id = peek();
+		removeAt(0);
+		return id;
+	}
+
+
+	/**
+	 *  Removes an id from the heap, if it's in there
+	 *
+	 *@param  _id  The id
+	 */
+	public void remove(int _id) {
+		int i = mvPositions[_id];
+		if (i >= 0) {
+			removeAt(i);
+		}
+	}
+
+
+	/**
+	 *  Removes all ids, in time proportional to the number of ids in the heap
+	 */
+	public void clear() {
+		for (int i = 0; i < mnSize; i++) {
+			mvPositions[mvHeap[i]] = -1;
+		}
+		mnSize = 0;
+	}
+
+
+	void removeAt(int _i) {
+		int id = mvHeap[_i];
+		mvPositions[id] = -1;
+		int last = mvHeap[--mnSize];
+		if (_i < mnSize) {
+			mvHeap[_i] = last;
+			mvPositions[last] = _i;
+			siftDown(_i);
+			if (mvPositions[last] == _i) {
+				siftUp(_i);
+			}
+		}
+	}
+
+
+	// Returns true if id [_a] goes before id [_b]
+	boolean less(int _a, int _b) {
+		return (mvKeys[_a] < mvKeys[_b]) || ((mvKeys[_a] == mvKeys[_b]) && (mvKeys2[_a] < mvKeys2[_b]));
+	}
+
+
+	void siftUp(int _i) {
+		int id = mvHeap[_i];
+		while (_i > 0) {
+			int parent = (_i - 1) >>> 1;
+			int parentId = mvHeap[parent];
+			if (!less(id, parentId)) {
+				break;
+			}
+			mvHeap[_i] = parentId;
+			mvPositions[parentId] = _i;
+			_i = parent;
+		}
+		mvHeap[_i] = id;
+		mvPositions[id] = _i;
+	}
+
+
+	void siftDown(int _i) {
+		int id = mvHeap[_i];
+		int half = mnSize >>> 1;
+		while (_i < half) {
+			int child = 2 * _i + 1;
+			int right = child + 1;
+			if ((right < mnSize) && less(mvHeap[right], mvHeap[child])) {
+				child = right;
+			}
+			int childId = mvHeap[child];
+			if (!less(childId, id)) {
+				break;
+			}
+			mvHeap[_i] = childId;
+			mvPositions[childId] = _i;
+			_i = child;
+		}
+		mvHeap[_i] = id;
+		mvPositions[id] = _i;
+	}
+}
@@ -3,7 +3,18 @@ package util;
 import java.util.*;
 
 /**
- * A collection which orders it's elements based on the priority assigned to them
+ * A collection which orders it's elements based on the priority assigned to them.
+ * The element with the lowest priority value comes first.
+ * <br>
+ * The elements are kept in a binary heap, so adding and removing take O(log n).
+ * Every element is wrapped in a QueueItem, which is returned by add(). The
+ * QueueItem can be used as a handle to change the priority of the element or
+ * to remove it, without searching the queue.
+ * <br>
+ * The index of an element (as used by get(int), getItem(int), remove(int) and
+ * removeItem(int)) is its position in the heap. Only index 0 has a meaning of
+ * its own: it holds the first element. The iterator also returns the elements
+ * in heap order.
  *
  * <br>
  * @version $Revision: 1.1 $
@@ -14,6 +25,8 @@ public class PriorityQueue extends java.lang.Object {
 	public class QueueItem  implements Comparable {
 		public Object m_aObject;
 		public long m_iPriority;
+		// position of this item in the heap, -1 if it's not in the queue
+		int m_iIndex = -1;
 		QueueItem(Object _aObject, long _iPriority) {
 			m_aObject = _aObject;
 			m_iPriority = _iPriority;
@@ -23,80 +36,78 @@ public class PriorityQueue extends java.lang.Object {
 		 */
 		public int compareTo(Object arg0) {
 			QueueItem aOther = (QueueItem) arg0;
-			return (int) (aOther.m_iPriority - this.m_iPriority); 
+			return (int) (aOther.m_iPriority - this.m_iPriority);
 		}
-		
+		// Returns true if this item is still in the queue.
+		public boolean isQueued() {
+			return m_iIndex >= 0;
+		}
+
 	} // class QueueItem
 
 
 	// Iterator implementation that iterates over the QueueItem.m_aObject, ie. the contents of the queue.
-	private class IteratorImpl implements Iterator {		
-		Iterator m_aIterator;
-		private IteratorImpl(Iterator _aMasterIterator) {
-			m_aIterator = _aMasterIterator;
-		}
-		public boolean hasNext() { return m_aIterator.hasNext(); }
-		public Object next() { return ((QueueItem)m_aIterator.next()).m_aObject; }
-		public void remove() { m_aIterator.remove(); }
-	}
-	
-	List m_aList = new LinkedList();
-	
+	// Works on a copy of the heap, so that remove() can reorder the queue.
+	private class IteratorImpl implements Iterator {
+		QueueItem m_aItems[];
+		int m_iNext = 0;
+		private IteratorImpl() {
+			m_aItems = new QueueItem[m_iSize];
+			System.arraycopy(m_aHeap, 0, m_aItems, 0, m_iSize);
+		}
+		public boolean hasNext() { return m_iNext < m_aItems.length; }
+		public Object next() {
+			if (m_iNext >= m_aItems.length) throw new NoSuchElementException();
+			return m_aItems[m_iNext++].m_aObject;
+		}
+		public void remove() {
+			if (m_iNext == 0) throw new IllegalStateException();
+			PriorityQueue.this.remove(m_aItems[m_iNext - 1]);
+		}
+	}
+
+	// The heap: the priorities are kept in their own array, so the comparisons don't have to touch the items
+	long m_aPriorities[];
+	QueueItem m_aHeap[];
+	int m_iSize = 0;
+	// Finds the item for an object, built by the first call to remove(Object)
+	Map m_aItemsByObject = null;
+
 	// Constructs a new priority queue.
 	public PriorityQueue() {
+		this(16);
+	}
+
+	// Constructs a new priority queue with room for [_iCapacity] objects before it has to grow.
+	public PriorityQueue(int _iCapacity) {
+		if (_iCapacity < 1) _iCapacity = 1;
+		m_aPriorities = new long[_iCapacity];
+		m_aHeap = new QueueItem[_iCapacity];
 	}
 
 	// Inserts [_aObject] into this queue with [_iPriority].
-	public void add(Object _aObject, long _iPriority) {
-		int i=0;
-		int stepcount = 0;
-		if (false) {
-			// perform a binary search to determine the insertion point
-			if (size() > 1) {
-				int step = size() / 2;
-				i = step;
-				while (true) {
-					stepcount++;
-					//System.out.println("i="+i);
-					if (
-						i < 1 || 
-						i >= size() || (
-							getItem(i - 1).m_iPriority <= _iPriority &&
-							getItem(i).m_iPriority >= _iPriority
-						)
-					) {
-						break;
-					}
-					else {
-						step /= 2;
-						if (step < 1) step = 1;
-						if (getItem(i).m_iPriority >= _iPriority) {
-							i = i - step;
-						}
-						else {
-							i = i + step;
-						}
-					}
-				}
-			}
+	// Returns the QueueItem that holds the object in the queue.
+	public QueueItem add(Object _aObject, long _iPriority) {
+		if (m_iSize == m_aHeap.length) {
+			int iCapacity = 2 * m_aHeap.length;
+			long aPriorities[] = new long[iCapacity];
+			QueueItem aHeap[] = new QueueItem[iCapacity];
+			System.arraycopy(m_aPriorities, 0, aPriorities, 0, m_iSize);
+			System.arraycopy(m_aHeap, 0, aHeap, 0, m_iSize);
+			m_aPriorities = aPriorities;
+			m_aHeap = aHeap;
 		}
-		else {
-			// perform a linear search for the insertion point			
-			for(java.util.Iterator itEntries = m_aList.iterator(); itEntries.hasNext(); ) {
-				stepcount++;
-				QueueItem aItem = (QueueItem)itEntries.next();
-				if(_iPriority <= aItem.m_iPriority ) {
-					break;
-				}
-				i++;
-			}
+		QueueItem aItem = new QueueItem(_aObject, _iPriority);
+		place(aItem, m_iSize++);
+		siftUp(aItem.m_iIndex);
+		if (m_aItemsByObject != null) {
+			m_aItemsByObject.put(_aObject, aItem);
 		}
-		System.out.println("i="+i);
-		m_aList.add(i, new QueueItem(_aObject, _iPriority));
+		return aItem;
 	}
-	
+
 	public Iterator iterator() {
-		return new IteratorImpl(m_aList.iterator());
+		return new IteratorImpl();
 	}
 
 	// Returns and removes the first (highest priority) object from this queue.
@@ -108,7 +119,7 @@ public class PriorityQueue extends java.lang.Object {
 	public Object get() {
 		return getItem(0).m_aObject;
 	}
-	
+
 	// Returns the priority of the first element in this queue.
 	public long getPriority() {
 		return getItem(0).m_iPriority;
@@ -116,35 +127,73 @@ public class PriorityQueue extends java.lang.Object {
 
 	// Returns the number of objects in this queue.
 	public int size() {
-		return m_aList.size();
+		return m_iSize;
 	}
 
 	// Returns the object at index [i] of this queue.
 	public Object get(int i) {
-		return ((QueueItem)m_aList.get(i)).m_aObject;
+		return getItem(i).m_aObject;
 	}
-	
+
 	// Returns the QueueItem at index [i] of this queue and removes it from the queue.
 	public Object remove(int i) {
-		return ((QueueItem)m_aList.remove(i)).m_aObject;
-	}	
-	
+		return removeItem(i).m_aObject;
+	}
+
 	// Removes the object [aObject] from this queue.
 	public void remove(Object aObject) {
-		int i=0;
-	
-		for(java.util.Iterator itEntries = m_aList.iterator(); itEntries.hasNext(); ) {
-			QueueItem aItem = (QueueItem)itEntries.next();
-			if(aObject == aItem.m_aObject ) {
-				break;
+		if (m_aItemsByObject == null) {
+			m_aItemsByObject = new IdentityHashMap();
+			for (int i=0; i < m_iSize; i++) {
+				m_aItemsByObject.put(m_aHeap[i].m_aObject, m_aHeap[i]);
 			}
-			i++;
 		}
-		if (i < m_aList.size()) {
-			m_aList.remove(i);
+		QueueItem aItem = (QueueItem)m_aItemsByObject.get(aObject);
+		if (aItem == null) {
+			// the object may have been added more than once, with its last item gone already
+			for (int i=0; i < m_iSize; i++) {
+				if (m_aHeap[i].m_aObject == aObject) {
+					aItem = m_aHeap[i];
+					break;
+				}
+			}
+		}
+		if (aItem != null) {
+			remove(aItem);
+		}
+	}
+
+	// Removes the item [_aItem] from this queue. Does nothing if it's not in the queue (anymore).
+	public void remove(QueueItem _aItem) {
+		if (_aItem.m_iIndex >= 0 && _aItem.m_iIndex < m_iSize && m_aHeap[_aItem.m_iIndex] == _aItem) {
+			removeItem(_aItem.m_iIndex);
+		}
+	}
+
+	// Lowers the priority value of [_aItem] to [_iPriority], which moves it towards the front of the queue.
+	public void decreaseKey(QueueItem _aItem, long _iPriority) {
+		if (_iPriority > _aItem.m_iPriority) {
+			throw new IllegalArgumentException("New priority "+_iPriority+" is larger than "+_aItem.m_iPriority);
 		}
+		setPriority(_aItem, _iPriority);
 	}
-	
+
+	// Changes the priority of [_aItem] to [_iPriority].
+	public void setPriority(QueueItem _aItem, long _iPriority) {
+		if (!_aItem.isQueued()) {
+			throw new NoSuchElementException("Item is not in the queue: "+_aItem.m_aObject);
+		}
+		long iOld = _aItem.m_iPriority;
+		_aItem.m_iPriority = _iPriority;
+		m_aPriorities[_aItem.m_iIndex] = _iPriority;
+		if (_iPriority < iOld) {
+			siftUp(_aItem.m_iIndex);
+		}
+		else {
+			siftDown(_aItem.m_iIndex);
+		}
+	}
+
 	// Returns true if this list contains no objects, false otherwise.
 	public boolean isEmpty() {
 		return (size() == 0);
@@ -157,68 +206,73 @@ public class PriorityQueue extends java.lang.Object {
 		}
 		return sResult;
 	}
-	
+
 	// Returns the QueueItem at index [i] of this queue and removes it from the queue.
 	public QueueItem removeItem(int i) {
-		return (QueueItem)m_aList.remove(i);
-	}	
+		QueueItem aItem = getItem(i);
+		QueueItem aLast = m_aHeap[--m_iSize];
+		m_aHeap[m_iSize] = null;
+		if (aLast != aItem) {
+			place(aLast, i);
+			siftDown(i);
+			if (aLast.m_iIndex == i) {
+				siftUp(i);
+			}
+		}
+		aItem.m_iIndex = -1;
+		if (m_aItemsByObject != null && m_aItemsByObject.get(aItem.m_aObject) == aItem) {
+			m_aItemsByObject.remove(aItem.m_aObject);
+		}
+		return aItem;
+	}
 
 	// Returns the QueueItem at index [i] of this queue.
 	public QueueItem getItem(int i) {
-		return (QueueItem)m_aList.get(i);
-	}
-
-	// Tester	
-	public static void main (String args[]) {
-		int lCheckSize = 2500;
-		try {
-			if(args.length > 1) {				
-				PriorityQueue q = null;
-				for(int x = 0 ; x < 5; x++) {
-					q = new PriorityQueue();
-					System.out.println("Run #" + x);
-					long lStart = System.currentTimeMillis();
-					for(int i = 0 ; i < lCheckSize ; i++) {
-						q.add("<dummy>", lStart + ((int) (Math.random() * 60000)));
-					}
-					long lIntermediate = System.currentTimeMillis();
-					System.out.println("Added " + lCheckSize + " entries in : " + (lIntermediate - lStart));
-					while(q.size() > 0 && q.getPriority() <= lIntermediate) {
-						q.remove();
-					}
-					long l2ndIntermediate = System.currentTimeMillis();
-					System.out.println("Removed entries in : " + (l2ndIntermediate - lIntermediate));
-					for(int i = 0 ; i < lCheckSize; i++) {
-						q.add("<dummy>", l2ndIntermediate + ((int)(Math.random() * 60000)));
-					}
-					long l3rdIntermediate = System.currentTimeMillis();
-					System.out.println("Added " + lCheckSize + " entries in : " + (l3rdIntermediate  - l2ndIntermediate));
-					System.out.println("Total cycle time " + (l3rdIntermediate - lStart));
-				}
-								
-			} else {
-				PriorityQueue q = new PriorityQueue();
-				System.out.println("Press <Enter> to test Queue");
-				while (System.in.read() != 'Q') {
-					for (int i=0; i < 16; i++) {
-						q.add(new byte[1024*1024], 100);
-						q.add(new byte[1024*1024], 10);
-					}
-					for (int i=0; i < 16; i++) {
-						q.remove();
-						q.remove();
-					}
-					System.gc();
-					System.runFinalization();
-					System.out.println("Queue: "+q);
-					System.out.println("Memory: "+(Runtime.getRuntime().totalMemory()-Runtime.getRuntime().freeMemory())+"/"+Runtime.getRuntime().totalMemory());
-				}
+		if (i < 0 || i >= m_iSize) {
+			throw new IndexOutOfBoundsException("Index: "+i+", Size: "+m_iSize);
+		}
+		return m_aHeap[i];
+	}
+
+	// Puts [_aItem] at index [i] of the heap.
+	private void place(QueueItem _aItem, int i) {
+		m_aHeap[i] = _aItem;
+		m_aPriorities[i] = _aItem.m_iPriority;
+		_aItem.m_iIndex = i;
+	}
+
+	// Moves the item at index [i] up until its parent has a lower or equal priority.
+	private void siftUp(int i) {
+		QueueItem aItem = m_aHeap[i];
+		long iPriority = m_aPriorities[i];
+		while (i > 0) {
+			int iParent = (i - 1) >>> 1;
+			if (m_aPriorities[iParent] <= iPriority) {
+				break;
 			}
+			place(m_aHeap[iParent], i);
+			i = iParent;
 		}
-		catch (Exception ex) {
-			System.err.println("Error" + ex.getMessage());
-			ex.printStackTrace();
+		place(aItem, i);
+	}
+
+	// Moves the item at index [i] down until its children have a higher or equal priority.
+	private void siftDown(int i) {
+		QueueItem aItem = m_aHeap[i];
+		long iPriority = m_aPriorities[i];
+		int iHalf = m_iSize >>> 1;
+		while (i < iHalf) {
+			int iChild = 2 * i + 1;
+			int iRight = iChild + 1;
+			if (iRight < m_iSize && m_aPriorities[iRight] < m_aPriorities[iChild]) {
+				iChild = iRight;
+			}
+			if (iPriority <= m_aPriorities[iChild]) {
+				break;
+			}
+			place(m_aHeap[iChild], i);
+			i = iChild;
 		}
-	}	
-	
+		place(aItem, i);
+	}
 }
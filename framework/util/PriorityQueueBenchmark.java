@@ -0,0 +1,232 @@
+/*
+ *  PriorityQueueBenchmark.java
+ */
+
+package util;
+
+import java.util.Random;
+
+/**
+ *  Measures the speed of the PriorityQueue. Every scenario is run a number
+ *  of times to warm up the JIT before it's measured, and the result of each
+ *  run is summed into a checksum so the JIT can't skip the work.
+ *  <br>
+ *  Usage: java util.PriorityQueueBenchmark [size] [warmup runs] [measured runs]
+ *
+ *@created    18 october 2026
+ */
+public class PriorityQueueBenchmark {
+	int mnSize;
+	int mnWarmup;
+	int mnRuns;
+	long mlChecksum = 0;
+	long mvPriorities[];
+
+
+	/**
+	 *  Constructor for the PriorityQueueBenchmark object
+	 *
+	 *@param  _size    The number of objects in the queue
+	 *@param  _warmup  The number of runs before measuring
+	 *@param  _runs    The number of measured runs
+	 */
+	PriorityQueueBenchmark(int _size, int _warmup, int _runs) {
+		mnSize = _size;
+		mnWarmup = _warmup;
+		mnRuns = _runs;
+		Random random = new Random(42);
+		mvPriorities = new long[_size];
+		for (int i = 0; i < _size; i++) {
+			mvPriorities[i] = random.nextInt(60000);
+		}
+	}
+
+
+	/**
+	 *  A scenario of the benchmark
+	 */
+	abstract class Scenario {
+		String mName;
+
+		Scenario(String _name) {
+			mName = _name;
+		}
+
+		// Runs the scenario once, returns the number of queue operations it did
+		abstract long run();
+	}
+
+
+	/**
+	 *  Fills the queue and then empties it again
+	 */
+	class FillAndDrain extends Scenario {
+		FillAndDrain() {
+			super("add all, then remove()");
+		}
+
+		long run() {
+			PriorityQueue q = new PriorityQueue();
+			for (int i = 0; i < mnSize; i++) {
+				q.add(null, mvPriorities[i]);
+			}
+			while (!q.isEmpty()) {
+				mlChecksum += q.getPriority();
+				q.remove();
+			}
+			return 2 * mnSize;
+		}
+	}
+
+
+	/**
+	 *  Does what a path finder does: takes the cheapest node and adds the
+	 *  nodes next to it, a bit more expensive than the node itself
+	 */
+	class Expand extends Scenario {
+		Expand() {
+			super("remove() + 7 x add()");
+		}
+
+		long run() {
+			PriorityQueue q = new PriorityQueue();
+			q.add(null, 0);
+			long ops = 1;
+			int i = 0;
+			while (i < mnSize) {
+				long priority = q.getPriority();
+				q.remove();
+				for (int d = 0; d < 7; d++) {
+					q.add(null, priority + mvPriorities[i++ % mnSize] % 100);
+				}
+				ops += 8;
+			}
+			mlChecksum += q.size();
+			return ops;
+		}
+	}
+
+
+	/**
+	 *  Removes the objects through their handles, in the order they were added
+	 */
+	class RemoveByHandle extends Scenario {
+		RemoveByHandle() {
+			super("add all, then remove(QueueItem)");
+		}
+
+		long run() {
+			PriorityQueue q = new PriorityQueue();
+			PriorityQueue.QueueItem items[] = new PriorityQueue.QueueItem[mnSize];
+			for (int i = 0; i < mnSize; i++) {
+				items[i] = q.add(null, mvPriorities[i]);
+			}
+			for (int i = 0; i < mnSize; i++) {
+				q.remove(items[i]);
+			}
+			mlChecksum += q.size();
+			return 2 * mnSize;
+		}
+	}
+
+
+	/**
+	 *  Removes the objects by looking them up, in the order they were added
+	 */
+	class RemoveByObject extends Scenario {
+		RemoveByObject() {
+			super("add all, then remove(Object)");
+		}
+
+		long run() {
+			PriorityQueue q = new PriorityQueue();
+			Object objects[] = new Object[mnSize];
+			for (int i = 0; i < mnSize; i++) {
+				objects[i] = new Object();
+				q.add(objects[i], mvPriorities[i]);
+			}
+			for (int i = 0; i < mnSize; i++) {
+				q.remove(objects[i]);
+			}
+			mlChecksum += q.size();
+			return 2 * mnSize;
+		}
+	}
+
+
+	/**
+	 *  Lowers the priority of every object, like a path finder does when it
+	 *  finds a cheaper way to a node
+	 */
+	class DecreaseKey extends Scenario {
+		DecreaseKey() {
+			super("add all, then decreaseKey()");
+		}
+
+		long run() {
+			PriorityQueue q = new PriorityQueue();
+			PriorityQueue.QueueItem items[] = new PriorityQueue.QueueItem[mnSize];
+			for (int i = 0; i < mnSize; i++) {
+				items[i] = q.add(null, mvPriorities[i]);
+			}
+			for (int i = 0; i < mnSize; i++) {
+				q.decreaseKey(items[i], items[i].m_iPriority / 2);
+			}
+			mlChecksum += q.getPriority();
+			return 2 * mnSize;
+		}
+	}
+
+
+	/**
+	 *  Warms up and then measures a scenario
+	 *
+	 *@param  _scenario  The scenario to measure
+	 */
+	void measure(Scenario _scenario) {
+		for (int i = 0; i < mnWarmup; i++) {
+			_scenario.run();
+		}
+		long ops = 0;
+		long best = Long.MAX_VALUE;
+		long start = System.nanoTime();
+		for (int i = 0; i < mnRuns; i++) {
+			long runStart = System.nanoTime();
+			ops += _scenario.run();
+			best = Math.min(best, System.nanoTime() - runStart);
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(
+			_scenario.mName +
+			"\t: " + Math.round((double)elapsed / ops) + " ns/op average" +
+			", best run " + best / 1000 + " usec"
+		);
+	}
+
+
+	/**
+	 *  Runs all scenarios
+	 */
+	void run() {
+		System.out.println("PriorityQueue with " + mnSize + " objects, " + mnWarmup + " warmup runs, " + mnRuns + " measured runs");
+		measure(new FillAndDrain());
+		measure(new Expand());
+		measure(new RemoveByHandle());
+		measure(new RemoveByObject());
+		measure(new DecreaseKey());
+		System.out.println("(checksum " + mlChecksum + ")");
+	}
+
+
+	/**
+	 *  Entry point of the benchmark
+	 *
+	 *@param  args  [size] [warmup runs] [measured runs]
+	 */
+	public static void main(String args[]) {
+		int size = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+		int warmup = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+		int runs = (args.length > 2) ? Integer.parseInt(args[2]) : 200;
+		new PriorityQueueBenchmark(size, warmup, runs).run();
+	}
+}
@@ -14,7 +14,12 @@ import java.util.*;
  * @author puf
  */
 public final class Profiler {
-	private static Stack m_ProfilerStack = new Stack();
+	// every thread has its own stack, so profiled code may run on several threads at once
+	private static ThreadLocal m_ProfilerStack = new ThreadLocal() {
+		protected Object initialValue() {
+			return new Stack();
+		}
+	};
 	private static class ProfilerStackEntry {
 		private String m_description;
 		private long m_starttime;
@@ -23,6 +28,7 @@ public final class Profiler {
 			m_starttime = System.currentTimeMillis();
 		}
 	}
+	private static boolean m_verbose = true;
 	private static Map m_ProfilerTotals = new HashMap();
 	private static class ProfilerTotalEntry {
 		private long m_callcount = 0;
@@ -37,35 +43,46 @@ public final class Profiler {
 		}
 	}
 	
+	// Turns printing the time of every profiled call on or off, the totals are gathered either way
+	public static final void setVerbose(boolean _verbose) {
+		m_verbose = _verbose;
+	}
+
 	public static final void startProfiling(String _description) {
-		m_ProfilerStack.push(new ProfilerStackEntry(_description));
+		((Stack)m_ProfilerStack.get()).push(new ProfilerStackEntry(_description));
 	}
 
 	 public static final void endProfiling() {
-		ProfilerStackEntry entry = (ProfilerStackEntry)m_ProfilerStack.pop();
+		ProfilerStackEntry entry = (ProfilerStackEntry)((Stack)m_ProfilerStack.get()).pop();
 		long time = System.currentTimeMillis() - entry.m_starttime;
-		System.out.println(entry.m_description+" took "+time+"ms");
-		if (m_ProfilerTotals.containsKey(entry.m_description)) {
-			ProfilerTotalEntry total = (ProfilerTotalEntry)m_ProfilerTotals.get(entry.m_description);
-			total.add(time);
+		if (m_verbose) {
+			System.out.println(entry.m_description+" took "+time+"ms");
 		}
-		else {
-			ProfilerTotalEntry total = new ProfilerTotalEntry(time);
-			m_ProfilerTotals.put(entry.m_description, total);
+		synchronized (m_ProfilerTotals) {
+			if (m_ProfilerTotals.containsKey(entry.m_description)) {
+				ProfilerTotalEntry total = (ProfilerTotalEntry)m_ProfilerTotals.get(entry.m_description);
+				total.add(time);
+			}
+			else {
+				ProfilerTotalEntry total = new ProfilerTotalEntry(time);
+				m_ProfilerTotals.put(entry.m_description, total);
+			}
 		}
 	 }
 	 
 	 public static final long query() {
-		ProfilerStackEntry entry = (ProfilerStackEntry)m_ProfilerStack.peek();
+		ProfilerStackEntry entry = (ProfilerStackEntry)((Stack)m_ProfilerStack.get()).peek();
 		return System.currentTimeMillis() - entry.m_starttime;	 	 
 	 }
 
 	 public static final void printTotals() {
-	 	Iterator keys = m_ProfilerTotals.keySet().iterator();
-	 	while (keys.hasNext()) {
-	 		String name = (String)keys.next();
-	 		ProfilerTotalEntry entry = (ProfilerTotalEntry) m_ProfilerTotals.get(name);
-	 		System.out.println(entry.m_callcount+" calls to '"+name+"' took "+entry.m_totaltime+" ms. Average = "+(entry.m_totaltime / entry.m_callcount)+" per call");
+	 	synchronized (m_ProfilerTotals) {
+	 		Iterator keys = m_ProfilerTotals.keySet().iterator();
+	 		while (keys.hasNext()) {
+	 			String name = (String)keys.next();
+	 			ProfilerTotalEntry entry = (ProfilerTotalEntry) m_ProfilerTotals.get(name);
+	 			System.out.println(entry.m_callcount+" calls to '"+name+"' took "+entry.m_totaltime+" ms. Average = "+(entry.m_totaltime / entry.m_callcount)+" per call");
+	 		}
 	 	}
 	 }
 }